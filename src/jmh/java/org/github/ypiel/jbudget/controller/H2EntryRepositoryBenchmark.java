@@ -0,0 +1,148 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.Granularity;
+
+/**
+ * Loads and searches of a database of ten years of entries: opening loads the recent years, a search only loads the
+ * cold years with a match, a chart sums the cold years in the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H2EntryRepositoryBenchmark {
+
+    private static final int YEARS = 10;
+    private static final Account[] ACCOUNTS = {
+            new Account("Bank", "Checking", "001", 0),
+            new Account("Bank", "Savings", "002", 100_000),
+            new Account("Other", "Card", "003", 0)
+    };
+
+    @Param({"100000", "500000"})
+    private int size;
+
+    private Path folder;
+    private EntryQuery rareLabel;
+    private EntryQuery accountRange;
+
+    // Opened before each invocation, with the recent years loaded
+    private EntryStore store;
+    private H2EntryRepository repository;
+
+    @Setup(Level.Trial)
+    public void createDatabase() throws IOException {
+        folder = Files.createTempDirectory("jbudget-bench");
+        Random random = new Random(42);
+        LocalDate first = LocalDate.now().minusYears(YEARS);
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LocalDate date = first.plusDays(random.nextInt(YEARS * 365));
+            long amount = random.nextInt(100_000);
+            boolean debit = random.nextInt(4) != 0;
+            // One label in a thousand is searched
+            String label = (i % 1000 == 0 ? "Refund " : "Payment ") + random.nextInt(500);
+            entries.add(new Entry(ACCOUNTS[random.nextInt(ACCOUNTS.length)], date, date.plusDays(random.nextInt(3)),
+                    label, "", debit ? amount : 0, debit ? 0 : amount,
+                    EntryCategory.values()[random.nextInt(EntryCategory.values().length)], false, false));
+        }
+        EntryStore initial = new EntryStore();
+        H2EntryRepository writer = new H2EntryRepository(folder, initial, UnaryOperator.identity());
+        writer.open();
+        initial.addAll(entries);
+        writer.save();
+        writer.close();
+
+        rareLabel = new EntryQuery(null, "refund", null, null, null, false, false, null, null);
+        accountRange = new EntryQuery(ACCOUNTS[2], "", EntryCategory.values()[1], first.plusYears(2),
+                first.plusYears(3), false, false, null, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDatabase() throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void open() throws IOException {
+        store = new EntryStore();
+        repository = new H2EntryRepository(folder, store, UnaryOperator.identity());
+        repository.open();
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() throws IOException {
+        repository.close();
+    }
+
+    @Benchmark
+    public int loadAll() throws IOException {
+        repository.ensureAllLoaded();
+        return store.size();
+    }
+
+    @Benchmark
+    public int searchLabel() throws IOException {
+        repository.ensureLoaded(rareLabel);
+        return rareLabel.compile(store.snapshot().columns()).execute().length;
+    }
+
+    @Benchmark
+    public int searchAccountRange() throws IOException {
+        repository.ensureLoaded(accountRange);
+        return accountRange.compile(store.snapshot().columns()).execute().length;
+    }
+
+    /**
+     * The range loaded as before the search in the database, for comparison.
+     */
+    @Benchmark
+    public int searchAccountRangeByYears() throws IOException {
+        repository.ensureLoaded(accountRange.from(), accountRange.to());
+        return accountRange.compile(store.snapshot().columns()).execute().length;
+    }
+
+    @Benchmark
+    public SortedMap<LocalDate, Long> coldSeries() throws IOException {
+        return repository.coldSeries(ACCOUNTS[0], Granularity.MONTH).totals();
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+
+/**
+ * Load test of the query API: concurrent clients sending authenticated requests to a ledger of a few years of
+ * entries, each request being served on its own virtual thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Threads(32)
+@Fork(1)
+public class QueryServerBenchmark {
+
+    private static final String TOKEN = "benchmark";
+    private static final Account ACCOUNT = new Account("Bank", "Checking", "001", 0);
+    private static final Account OTHER = new Account("Bank", "Savings", "002", 0);
+
+    @Param({"100000"})
+    private int size;
+
+    private Path folder;
+    private Ledger ledger;
+    private QueryServer server;
+    private HttpClient client;
+    private URI totals;
+    private URI monthly;
+    private URI entries;
+
+    @Setup
+    public void startServer() throws IOException {
+        folder = Files.createTempDirectory("jbudget-bench");
+        ledger = new Ledger("bench", folder.resolve("import"), folder.resolve("data"),
+                Map.of(ACCOUNT, EntryExporter.DEFAULT_CSV_FORMAT, OTHER, EntryExporter.DEFAULT_CSV_FORMAT), false,
+                e -> System.err.printf("Autosave failed: %s%n", e.getMessage()));
+        ledger.open();
+        Random random = new Random(42);
+        LocalDate first = LocalDate.now().minusYears(1);
+        List<Entry> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LocalDate date = first.plusDays(random.nextInt(365));
+            long amount = random.nextInt(100_000);
+            list.add(new Entry(random.nextBoolean() ? ACCOUNT : OTHER, date, date, "Payment " + random.nextInt(1000),
+                    "", amount, 0, EntryCategory.values()[random.nextInt(EntryCategory.values().length)], false,
+                    false));
+        }
+        ledger.store().addAll(list);
+
+        server = new QueryServer(0, TOKEN, List.of(ledger), (_, _) -> "");
+        server.start();
+        client = HttpClient.newHttpClient();
+        String base = "http://127.0.0.1:" + server.port();
+        totals = URI.create(base + "/totals?category=" + EntryCategory.values()[1].name());
+        monthly = URI.create(base + "/monthly?account=" + ACCOUNT.name());
+        entries = URI.create(base + "/entries?label=payment%2042&from=" + first.plusMonths(6));
+    }
+
+    @TearDown
+    public void stopServer() throws IOException {
+        server.close();
+        client.close();
+        ledger.close();
+        try (Stream<Path> files = Files.walk(folder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int totals() throws IOException, InterruptedException {
+        return get(totals);
+    }
+
+    @Benchmark
+    public int monthly() throws IOException, InterruptedException {
+        return get(monthly);
+    }
+
+    @Benchmark
+    public int entries() throws IOException, InterruptedException {
+        return get(entries);
+    }
+
+    private int get(final URI uri) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri)
+                .header("Authorization", "Bearer " + TOKEN)
+                .build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Status " + response.statusCode() + " for " + uri);
+        }
+        return response.body().length;
+    }
+
+}
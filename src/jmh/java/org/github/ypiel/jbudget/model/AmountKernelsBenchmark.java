@@ -0,0 +1,66 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scalar and vectorized aggregation loops over a column of amounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class AmountKernelsBenchmark {
+
+    @Param({"scalar", "vector"})
+    private String kernels;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private AmountKernels implementation;
+    private long[] values;
+    private long[] keys;
+
+    @Setup
+    public void setUp() {
+        implementation = kernels.equals("vector") ? new VectorAmountKernels() : new ScalarAmountKernels();
+        Random random = new Random(42);
+        values = new long[size];
+        keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(200_000) - 100_000;
+            keys[i] = random.nextInt(8);
+        }
+    }
+
+    @Benchmark
+    public long sum() {
+        return implementation.sum(values, 0, size);
+    }
+
+    @Benchmark
+    public long sumWhereEquals() {
+        return implementation.sumWhereEquals(values, keys, 3, 0, size);
+    }
+
+    @Benchmark
+    public long max() {
+        return implementation.max(values, 0, size);
+    }
+
+}
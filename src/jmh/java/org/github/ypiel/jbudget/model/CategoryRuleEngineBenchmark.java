@@ -0,0 +1,95 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Categorization of an import: each label is scanned once by the compiled rules, instead of being searched for the
+ * pattern of each rule in turn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CategoryRuleEngineBenchmark {
+
+    private static final Account ACCOUNT = new Account("Bank", "Checking", "001", 0);
+    private static final LocalDate DAY = LocalDate.of(2024, 1, 1);
+
+    @Param({"200"})
+    private int rules;
+
+    @Param({"100000"})
+    private int size;
+
+    private List<CategoryRule> ruleList;
+    private CategoryRuleEngine engine;
+    private List<Entry> entries;
+
+    @Setup
+    public void createEntries() {
+        Random random = new Random(42);
+        EntryCategory[] categories = EntryCategory.values();
+        ruleList = new ArrayList<>(rules);
+        for (int r = 0; r < rules; r++) {
+            ruleList.add(new CategoryRule("merchant " + r + " ", categories[1 + random.nextInt(categories.length - 1)]));
+        }
+        engine = CategoryRuleEngine.compile(ruleList);
+        entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // One label in four matches no rule
+            int merchant = random.nextInt(rules * 4 / 3);
+            entries.add(new Entry(ACCOUNT, DAY, DAY, "CB MERCHANT " + merchant + " " + random.nextInt(10_000), "",
+                    random.nextInt(100_000), 0, EntryCategory.MISC));
+        }
+    }
+
+    @Benchmark
+    public List<Entry> compiled() {
+        return engine.categorizeAll(entries);
+    }
+
+    /**
+     * The rules tried one by one, for comparison.
+     */
+    @Benchmark
+    public List<Entry> ruleByRule() {
+        List<Entry> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            String label = entry.label().toLowerCase(Locale.ROOT);
+            Entry categorized = entry;
+            for (CategoryRule rule : ruleList) {
+                if (label.contains(rule.labelPattern()) && rule.acceptsAccountAndAmount(entry)) {
+                    categorized = entry.withCategory(rule.category());
+                    break;
+                }
+            }
+            result.add(categorized);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public CategoryRuleEngine compile() {
+        return CategoryRuleEngine.compile(ruleList);
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Totals by account of a store: summed in cents over the amount column, compared to the streams over the entries,
+ * in cents and in boxed doubles as before the amounts were held in cents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CentsAggregationBenchmark {
+
+    private static final Account[] ACCOUNTS = {
+            new Account("Bank", "Checking", "001", 0),
+            new Account("Bank", "Savings", "002", 0),
+            new Account("Other", "Card", "003", 0)
+    };
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private List<Entry> entries;
+    private EntryColumns columns;
+    private int[] positions;
+
+    @Setup
+    public void createEntries() {
+        Random random = new Random(42);
+        entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            LocalDate date = START.plusDays(random.nextInt(3650));
+            long amount = random.nextInt(100_000);
+            boolean debit = random.nextInt(4) != 0;
+            entries.add(new Entry(ACCOUNTS[random.nextInt(ACCOUNTS.length)], date, date, "Payment", "",
+                    debit ? amount : 0, debit ? 0 : amount, EntryCategory.MISC));
+        }
+        EntryStore store = new EntryStore();
+        store.addAll(entries);
+        EntryStore.Snapshot snapshot = store.snapshot();
+        columns = snapshot.columns();
+        positions = columns.positions(snapshot.ids());
+    }
+
+    @Benchmark
+    public Map<Account, Long> columns() {
+        return columns.totalsByAccount(positions);
+    }
+
+    @Benchmark
+    public Map<Account, Long> streamOfCents() {
+        return entries.stream().collect(Collectors.groupingBy(Entry::account, Collectors.summingLong(Entry::value)));
+    }
+
+    @Benchmark
+    public Map<Account, Double> streamOfDoubles() {
+        return entries.stream().collect(Collectors.groupingBy(Entry::account,
+                Collectors.summingDouble(e -> Money.toDouble(e.value()))));
+    }
+
+}
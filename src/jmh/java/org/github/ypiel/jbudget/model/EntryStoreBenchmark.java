@@ -0,0 +1,100 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Edits of a large store: each one inserts or removes an id in the persistent order and produces a new version.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryStoreBenchmark {
+
+    private static final Account ACCOUNT = new Account("Bank", "Checking", "001", 0);
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private List<Entry> entries;
+    private EntryStore store;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void createEntries() {
+        random = new Random(42);
+        entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(entry(random));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void fillStore() {
+        store = new EntryStore();
+        store.addAll(entries);
+    }
+
+    /**
+     * An entry added then removed, the store keeps its size.
+     */
+    @Benchmark
+    public int addAndRemove() {
+        int id = store.add(entry(random));
+        store.remove(id);
+        return id;
+    }
+
+    /**
+     * An entry moved to another date.
+     */
+    @Benchmark
+    public Entry moveEntry() {
+        int id = store.snapshot().idAt(random.nextInt(size));
+        Entry moved = entry(random);
+        store.set(id, moved);
+        return moved;
+    }
+
+    /**
+     * A category changed, then the columns of the new version, derived from the previous ones.
+     */
+    @Benchmark
+    public EntryColumns columnsAfterEdit() {
+        int id = store.snapshot().idAt(random.nextInt(size));
+        store.set(id, store.get(id).withCategory(EntryCategory.values()[random.nextInt(EntryCategory.values().length)]));
+        return store.snapshot().columns();
+    }
+
+    @Benchmark
+    public int[] addAll() {
+        return new EntryStore().addAll(entries);
+    }
+
+    private static Entry entry(final Random random) {
+        LocalDate date = START.plusDays(random.nextInt(3650));
+        return new Entry(ACCOUNT, date, date, "Payment " + random.nextInt(1000), "", random.nextInt(100_000), 0,
+                EntryCategory.MISC);
+    }
+
+}
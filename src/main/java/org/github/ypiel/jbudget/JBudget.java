@@ -6,11 +6,16 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import org.github.ypiel.jbudget.controller.MainController;
+import org.github.ypiel.jbudget.metrics.StartupMilestones;
+
 import java.io.IOException;
 import java.net.URL;
 
 public class JBudget extends Application {
 
+    private MainController controller;
+
     @Override
     public void start(Stage primaryStage) {
         try {
@@ -27,10 +32,22 @@ public class JBudget extends Application {
 
             FXMLLoader loader = new FXMLLoader(fxmlUrl);
             Parent root = loader.load();
+            controller = loader.getController();
 
             primaryStage.setTitle("JBudget - Bank Transaction Manager");
-            primaryStage.setScene(new Scene(root, 1024, 768));
+            Scene scene = new Scene(root, 1024, 768);
+            scene.addPostLayoutPulseListener(new Runnable() {
+                @Override
+                public void run() {
+                    scene.removePostLayoutPulseListener(this);
+                    StartupMilestones.reached(StartupMilestones.FIRST_FRAME, 0);
+                }
+            });
+            primaryStage.setScene(scene);
             primaryStage.show();
+
+            // The window is shown empty, the entries are added as they are read
+            controller.loadFromJson();
         } catch (IOException e) {
             System.err.println("Failed to load FXML file:");
             e.printStackTrace();
@@ -42,7 +59,15 @@ public class JBudget extends Application {
         }
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
+        StartupMilestones.launched();
         launch(args);
     }
 }
@@ -1,40 +1,175 @@
 package org.github.ypiel.jbudget.controller;
 
 import java.time.LocalDate;
-import java.time.temporal.TemporalAdjusters;
-import java.util.Collection;
-import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
 
+import javafx.scene.Cursor;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.XYChart;
 
-import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ChartEvent;
+import org.github.ypiel.jbudget.model.Granularity;
+import org.github.ypiel.jbudget.model.Money;
+import org.github.ypiel.jbudget.model.PeriodRollups;
 
+/**
+ * Totals of an account by period. The period follows the zoom: years when the whole history is shown, down to days,
+ * so that the number of bars stays bounded by the width of the chart. The totals of all the periods are computed
+ * once, a zoom or a pan only selects the bars of the visible range.
+ */
 public class AccountBarChartController {
 
-    private final Collection<Entry> entries;
+    private static final double ZOOM_FACTOR = 1.25;
+    // Narrowest readable bar, in pixels
+    private static final double MIN_BAR_WIDTH = 12;
+    // Width used while the chart is not laid out yet
+    private static final double DEFAULT_WIDTH = 800;
+    private static final int MIN_VISIBLE_DAYS = 7;
+
     private final BarChart<String, Double>
             barChart;
+    private final BackgroundChart<PeriodRollups> background = new BackgroundChart<>("accountBar");
+
+    private PeriodRollups rollups;
+    // Visible range
+    private LocalDate from;
+    private LocalDate to;
+    private boolean isPanning = false;
+    private double lastPanX;
 
-    public AccountBarChartController(final Collection<Entry> entries, final BarChart<String, Double> barChart){
-        this.entries = entries;
+    public AccountBarChartController(final BarChart<String, Double> barChart){
         this.barChart = barChart;
+        // Categories change at each zoom step, an animation would show the previous ones meanwhile
+        barChart.setAnimated(false);
+        barChart.widthProperty().addListener((_, _, _) -> render());
+        setupZoomAndPan();
+    }
+
+    /**
+     * Computes the totals of all the periods in the background, then shows the whole history.
+     *
+     * @param dailyTotals Computes the sum in cents of each day. Called out of the FX thread.
+     */
+    public void computeGraph(final Callable<SortedMap<LocalDate, Long>> dailyTotals){
+        background.submit(() -> PeriodRollups.of(dailyTotals.call()), computed -> {
+            rollups = computed;
+            from = computed.first();
+            to = computed.last();
+            render();
+        });
     }
 
-    public void computeGraph(){
-        XYChart.Series<String, Double> series = new XYChart.Series<>();
+    private void render() {
+        if (rollups == null) {
+            return;
+        }
+        if (from == null) {
+            barChart.getData().clear();
+            return;
+        }
+        ChartEvent event = new ChartEvent("accountBar");
+        event.start();
+        double width = barChart.getWidth() > 0 ? barChart.getWidth() : DEFAULT_WIDTH;
+        PeriodRollups.Bars bars = rollups.bars(from, to, Math.max(1, (int) (width / MIN_BAR_WIDTH)));
+
+        Granularity granularity = bars.granularity();
+        List<XYChart.Data<String, Double>> points = new ArrayList<>(bars.ends().length);
+        for (int i = 0; i < bars.ends().length; i++) {
+            points.add(new XYChart.Data<>(granularity.label(bars.ends()[i]), Money.toDouble(bars.totals()[i])));
+        }
+        barChart.getData().setAll(List.of(BackgroundChart.series(granularity.name().charAt(0)
+                + granularity.name().substring(1).toLowerCase(), points)));
+        event.points = points.size();
+        event.finish();
+    }
 
-        Map<LocalDate, Double> collect = this.entries.stream()
-                .map(e -> new EntryMonthValue(e.dateValue().with(TemporalAdjusters.lastDayOfMonth()), e.value()))
-                .collect(Collectors.groupingBy(EntryMonthValue::month, TreeMap::new, Collectors.summingDouble(EntryMonthValue::value)));
+    private void setupZoomAndPan() {
+        barChart.setOnScroll(event -> {
+            if (from == null) {
+                return;
+            }
+            // The date under the mouse stays in place
+            double ratio = Math.clamp(event.getX() / Math.max(1, barChart.getWidth()), 0, 1);
+            zoom(event.getDeltaY() > 0 ? 1 / ZOOM_FACTOR : ZOOM_FACTOR, ratio);
+            event.consume();
+        });
 
-        collect.entrySet().stream().forEach(e -> series.getData().add(new XYChart.Data<>(String.valueOf(e.getKey()), e.getValue())));
+        barChart.setOnMousePressed(event -> {
+            if (event.isMiddleButtonDown()) {
+                isPanning = true;
+                lastPanX = event.getSceneX();
+                barChart.setCursor(Cursor.MOVE);
+                event.consume();
+            }
+        });
 
-        barChart.getData().setAll(series);
+        barChart.setOnMouseDragged(event -> {
+            if (isPanning && event.isMiddleButtonDown() && from != null) {
+                long days = ChronoUnit.DAYS.between(from, to) + 1;
+                long shift = Math.round((lastPanX - event.getSceneX()) / Math.max(1, barChart.getWidth()) * days);
+                if (shift != 0) {
+                    pan(shift);
+                    lastPanX = event.getSceneX();
+                }
+                event.consume();
+            }
+        });
+
+        barChart.setOnMouseReleased(event -> {
+            if (isPanning) {
+                isPanning = false;
+                barChart.setCursor(Cursor.DEFAULT);
+                event.consume();
+            }
+        });
+
+        // Double-click shows the whole history again
+        barChart.setOnMouseClicked(event -> {
+            if (event.getClickCount() == 2 && rollups != null) {
+                from = rollups.first();
+                to = rollups.last();
+                render();
+                event.consume();
+            }
+        });
     }
 
-    private record EntryMonthValue(LocalDate month, Double value){}
+    /**
+     * @param factor Ratio of the new visible days to the current ones, below 1 to zoom in.
+     * @param focus  Position of the fixed date in the visible range, from 0 to 1.
+     */
+    private void zoom(final double factor, final double focus) {
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        long maxDays = ChronoUnit.DAYS.between(rollups.first(), rollups.last()) + 1;
+        long newDays = Math.clamp(Math.round(days * factor), Math.min(MIN_VISIBLE_DAYS, maxDays), maxDays);
+        if (newDays == days) {
+            return;
+        }
+        LocalDate fixed = from.plusDays(Math.round((days - 1) * focus));
+        from = fixed.minusDays(Math.round((newDays - 1) * focus));
+        to = from.plusDays(newDays - 1);
+        pan(0);
+    }
+
+    /**
+     * Moves the visible range by the given days, kept within the history.
+     */
+    private void pan(final long days) {
+        long visible = ChronoUnit.DAYS.between(from, to);
+        from = from.plusDays(days);
+        if (from.isBefore(rollups.first())) {
+            from = rollups.first();
+        }
+        to = from.plusDays(visible);
+        if (to.isAfter(rollups.last())) {
+            to = rollups.last();
+            from = to.minusDays(visible);
+        }
+        render();
+    }
 
 }
@@ -2,12 +2,13 @@ package org.github.ypiel.jbudget.controller;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.TemporalAdjusters;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import javafx.scene.chart.Axis;
@@ -17,19 +18,40 @@ import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.input.KeyCode;
 
-import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ChartEvent;
+import org.github.ypiel.jbudget.model.AmountKernels;
+import org.github.ypiel.jbudget.model.Money;
 
 public class AccountLineChartController {
 
-    private final Collection<Entry> entries;
+    /**
+     * Inputs of the chart, computed out of the FX thread.
+     *
+     * @param openingBalance Balance in cents before the first month, e.g. the initial balance of the account.
+     * @param monthlyTotals  Sum in cents of each month, keyed by the last day of the month.
+     * @param forecast       Projected sum in cents of each following month, keyed the same way, may be empty.
+     */
+    public record Input(long openingBalance, SortedMap<LocalDate, Long> monthlyTotals,
+                        SortedMap<LocalDate, Long> forecast) {}
+
+    /**
+     * Balances of the chart, built out of the FX thread.
+     */
+    private record Balances(LinkedHashMap<String, Double> data, LinkedHashMap<String, Double> forecastData,
+                            List<String> categories, double minY, double maxY) {}
+
     private final LineChart<String, Double> lineChart;
     private final CategoryAxis xAxis;
     private final Axis<Double> yAxis; // Changed to Axis<Double>
+    private final BackgroundChart<Balances> background = new BackgroundChart<>("accountLine");
 
     // Store original data for zoom calculations
     private List<String> allCategories;
     private LinkedHashMap<String, Double> allData;
+    // Projected balances, starting at the last known month
+    private LinkedHashMap<String, Double> forecastData;
     private XYChart.Series<String, Double> originalSeries;
+    private XYChart.Series<String, Double> originalForecastSeries;
 
     // Zoom state
     private double minY = Double.MAX_VALUE;
@@ -39,53 +61,105 @@ public class AccountLineChartController {
 
     private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("MMM yyyy");
 
-    public AccountLineChartController(final Collection<Entry> entries, final LineChart<String, Double> lineChart) {
-        this.entries = entries;
+    public AccountLineChartController(final LineChart<String, Double> lineChart) {
         this.lineChart = lineChart;
         this.xAxis = (CategoryAxis) lineChart.getXAxis();
         this.yAxis = lineChart.getYAxis(); // Removed cast
         setupZoomAndPan();
     }
 
-    public void computeGraph() {
-        Map<LocalDate, Double> soldesParMois = this.entries.stream()
-                .collect(Collectors.groupingBy(
-                        e -> e.dateValue().with(TemporalAdjusters.lastDayOfMonth()),
-                        TreeMap::new,  // Pour garder l'ordre chronologique
-                        Collectors.summingDouble(Entry::value)
-                ));
+    /**
+     * Computes the balances in the background, the chart is updated once they are all known.
+     *
+     * @param input Computes the inputs of the chart. Called out of the FX thread.
+     */
+    public void computeGraph(final Callable<Input> input) {
+        background.submit(() -> balances(input.call()), this::show);
+    }
+
+    private static Balances balances(final Input input) {
+        ChartEvent event = new ChartEvent("accountLine");
+        event.start();
+        Map<LocalDate, Long> soldesParMois = input.monthlyTotals();
+        SortedMap<LocalDate, Long> forecast = input.forecast();
 
         // Create cumulative balance with formatted dates
-        allData = new LinkedHashMap<>();
-        double cumulativeBalance = 0.0;
+        LinkedHashMap<String, Double> allData = new LinkedHashMap<>();
+        long[] balances = new long[soldesParMois.size()];
+        long cumulativeBalance = input.openingBalance();
+        int i = 0;
 
-        for (Map.Entry<LocalDate, Double> entry : soldesParMois.entrySet()) {
+        for (Map.Entry<LocalDate, Long> entry : soldesParMois.entrySet()) {
             cumulativeBalance += entry.getValue();
             String formattedDate = entry.getKey().format(MONTH_FORMATTER);
-            allData.put(formattedDate, cumulativeBalance);
+            allData.put(formattedDate, Money.toDouble(cumulativeBalance));
+            balances[i++] = cumulativeBalance;
+        }
 
-            // Track min/max values
-            minY = Math.min(minY, cumulativeBalance);
-            maxY = Math.max(maxY, cumulativeBalance);
+        // Starts from the last known balance, so that both lines are joined
+        LinkedHashMap<String, Double> forecastData = new LinkedHashMap<>();
+        if (!allData.isEmpty() && !forecast.isEmpty()) {
+            forecastData.put(allData.lastEntry().getKey(), Money.toDouble(cumulativeBalance));
+            balances = Arrays.copyOf(balances, balances.length + forecast.size());
+            for (Map.Entry<LocalDate, Long> entry : forecast.entrySet()) {
+                cumulativeBalance += entry.getValue();
+                forecastData.put(entry.getKey().format(MONTH_FORMATTER), Money.toDouble(cumulativeBalance));
+                balances[i++] = cumulativeBalance;
+            }
+        }
+
+        // Track min/max values
+        double minY = Double.MAX_VALUE;
+        double maxY = Double.MIN_VALUE;
+        if (balances.length > 0) {
+            AmountKernels kernels = AmountKernels.instance();
+            minY = Money.toDouble(kernels.min(balances, 0, balances.length));
+            maxY = Money.toDouble(kernels.max(balances, 0, balances.length));
         }
 
         // Store all categories in order
-        allCategories = allData.keySet().stream().collect(Collectors.toList());
+        List<String> categories = allData.keySet().stream().collect(Collectors.toList());
+        forecastData.keySet().stream().skip(1).forEach(categories::add);
+        event.points = categories.size();
+        event.finish();
+        return new Balances(allData, forecastData, categories, minY, maxY);
+    }
+
+    private void show(final Balances balances) {
+        allData = balances.data();
+        forecastData = balances.forecastData();
+        allCategories = balances.categories();
+        minY = balances.minY();
+        maxY = balances.maxY();
 
         // Create original series
-        originalSeries = new XYChart.Series<>();
-        allData.entrySet().forEach(e ->
-                originalSeries.getData().add(new XYChart.Data<>(e.getKey(), e.getValue()))
-        );
+        originalSeries = BackgroundChart.series("Balance", points(allData, 0, allCategories.size() - 1));
+        originalForecastSeries = BackgroundChart.series("Forecast", points(forecastData, 0, allCategories.size() - 1));
 
         // Initialize zoom state
         startCategoryIndex = 0;
         endCategoryIndex = allCategories.size() - 1;
 
-        lineChart.getData().setAll(originalSeries);
+        lineChart.getData().setAll(List.of(originalSeries, originalForecastSeries));
         resetAxes();
     }
 
+    /**
+     * @return The points of the series with a value in the categories from first to last, included.
+     */
+    private List<XYChart.Data<String, Double>> points(final Map<String, Double> values, final int first,
+                                                      final int last) {
+        List<XYChart.Data<String, Double>> points = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            String category = allCategories.get(i);
+            Double value = values.get(category);
+            if (value != null) {
+                points.add(new XYChart.Data<>(category, value));
+            }
+        }
+        return points;
+    }
+
     private void setupZoomAndPan() {
         lineChart.setOnScroll(event -> {
             if (allCategories == null || allCategories.isEmpty()) return;
@@ -167,13 +241,10 @@ public class AccountLineChartController {
         xAxis.getCategories().setAll(visibleCategories);
 
         // Create filtered series maintaining line continuity
-        XYChart.Series<String, Double> filteredSeries = new XYChart.Series<>();
-
-        for (int i = startCategoryIndex; i <= endCategoryIndex; i++) {
-            String category = allCategories.get(i);
-            Double value = allData.get(category);
-            filteredSeries.getData().add(new XYChart.Data<>(category, value));
-        }
+        XYChart.Series<String, Double> filteredSeries = BackgroundChart.series(originalSeries.getName(),
+                points(allData, startCategoryIndex, endCategoryIndex));
+        XYChart.Series<String, Double> filteredForecastSeries = BackgroundChart.series(
+                originalForecastSeries.getName(), points(forecastData, startCategoryIndex, endCategoryIndex));
 
         // Update Y-axis range based on visible data (only if it's a NumberAxis)
         //if (yAxis instanceof NumberAxis numberAxis) {
@@ -194,14 +265,14 @@ public class AccountLineChartController {
             numberAxis.setUpperBound(visibleMaxY + yPadding);*/
         //}
 
-        lineChart.getData().setAll(filteredSeries);
+        lineChart.getData().setAll(List.of(filteredSeries, filteredForecastSeries));
     }
 
     private void resetZoom() {
         startCategoryIndex = 0;
         endCategoryIndex = allCategories.size() - 1;
         resetAxes();
-        lineChart.getData().setAll(originalSeries);
+        lineChart.getData().setAll(List.of(originalSeries, originalForecastSeries));
     }
 
     private void resetAxes() {
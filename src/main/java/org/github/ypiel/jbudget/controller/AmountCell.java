@@ -0,0 +1,18 @@
+package org.github.ypiel.jbudget.controller;
+
+import javafx.scene.control.TableCell;
+
+import org.github.ypiel.jbudget.model.Money;
+
+/**
+ * Shows an amount in cents as a decimal number of units.
+ */
+public class AmountCell<S> extends TableCell<S, Long> {
+
+    @Override
+    protected void updateItem(Long item, boolean empty) {
+        super.updateItem(item, empty);
+        setText((empty || item == null) ? null : Money.format(item));
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces files without ever leaving a partially written one: the content is written to a temporary file of the same
+ * folder, forced to the disk, then moved over the previous file in a single atomic rename. The previous versions are
+ * kept as rotating backups, file.1 being the most recent.
+ */
+public final class AtomicFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFiles() {
+        // Singleton using static
+    }
+
+    /**
+     * @param backups Number of previous versions to keep, 0 for none.
+     */
+    public static void write(final Path file, final int backups, final Content content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                // Writers like Jackson close their target: the channel must stay open to be forced
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE) {
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                };
+                content.writeTo(out);
+                out.flush();
+                channel.force(true);
+            }
+
+            rotateBackups(file, backups);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        forceFolder(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * @return The path of the given backup of the file, 1 being the most recent.
+     */
+    public static Path backup(final Path file, final int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private static void rotateBackups(final Path file, final int backups) throws IOException {
+        if (backups <= 0 || !Files.isRegularFile(file)) {
+            return;
+        }
+        for (int i = backups - 1; i >= 1; i--) {
+            Path backup = backup(file, i);
+            if (Files.isRegularFile(backup)) {
+                Files.move(backup, backup(file, i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        // Copied, not moved: the file must exist until it is replaced
+        Files.copy(file, backup(file, 1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Makes the rename durable. Not supported on all the platforms, the file content is durable anyway.
+     */
+    private static void forceFolder(final Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Folders cannot be opened on Windows
+        }
+    }
+
+}
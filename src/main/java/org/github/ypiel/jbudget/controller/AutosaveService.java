@@ -0,0 +1,115 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.EntryStoreChange;
+import org.github.ypiel.jbudget.model.EntryStoreListener;
+
+/**
+ * Saves the repository in a background thread, once the store has not been modified for {@link #QUIET_PERIOD}: a
+ * burst of mutations, like an import, gives a single save. A store modified continuously is still saved every
+ * {@link #MAX_DELAY}.
+ * <p>
+ * The repository saves a snapshot of the store, so the store can be modified during the save.
+ */
+public class AutosaveService implements EntryStoreListener, AutoCloseable {
+
+    public static final Duration QUIET_PERIOD = Duration.ofSeconds(3);
+    public static final Duration MAX_DELAY = Duration.ofSeconds(30);
+
+    private final EntryRepository repository;
+    private final Consumer<IOException> onFailure;
+    private final long quietPeriodNanos;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private ScheduledFuture<?> pending;
+    // Time of the first change not saved yet, 0 if none
+    private long firstChangeNanos;
+
+    /**
+     * @param onFailure Called by the autosave thread when a save fails, the changes are saved by the next one.
+     */
+    public AutosaveService(final EntryStore store, final EntryRepository repository,
+                           final Consumer<IOException> onFailure) {
+        this(store, repository, onFailure, QUIET_PERIOD, MAX_DELAY);
+    }
+
+    AutosaveService(final EntryStore store, final EntryRepository repository, final Consumer<IOException> onFailure,
+                    final Duration quietPeriod, final Duration maxDelay) {
+        this.repository = repository;
+        this.onFailure = onFailure;
+        this.quietPeriodNanos = quietPeriod.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        store.addListener(this);
+    }
+
+    @Override
+    public synchronized void onChange(final List<EntryStoreChange> changes) {
+        long now = System.nanoTime();
+        if (firstChangeNanos == 0) {
+            firstChangeNanos = now;
+        }
+        long delay = Math.min(quietPeriodNanos, firstChangeNanos + maxDelayNanos - now);
+        schedule(Math.max(delay, 0));
+    }
+
+    /**
+     * Saves as soon as possible, without waiting for the quiet period.
+     */
+    public synchronized void saveNow() {
+        schedule(0);
+    }
+
+    /**
+     * Saves the pending changes and stops the autosave thread, waiting for the end of the save.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            executor.execute(this::save);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void schedule(final long delayNanos) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = executor.schedule(this::save, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void save() {
+        synchronized (this) {
+            // Changes done from now on schedule another save
+            firstChangeNanos = 0;
+        }
+        try {
+            repository.save();
+        } catch (IOException e) {
+            onFailure.accept(e);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
+import javafx.scene.chart.XYChart;
+
+/**
+ * Computes the data of a chart in a virtual thread, then shows it in a single update of the FX thread. Only the last
+ * requested computation is shown: a new one cancels the previous one.
+ * <p>
+ * Must be used from the FX thread.
+ */
+final class BackgroundChart<T> {
+
+    private final String name;
+    private Task<T> task;
+
+    BackgroundChart(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param compute Computes the data, out of the FX thread. Can stop early when the thread is interrupted, see
+     *                {@link #checkCancelled()}.
+     * @param show    Shows the data, in the FX thread.
+     */
+    void submit(final Callable<T> compute, final Consumer<T> show) {
+        cancel();
+        Task<T> computation = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                return compute.call();
+            }
+        };
+        computation.setOnSucceeded(_ -> {
+            if (task == computation) {
+                task = null;
+                show.accept(computation.getValue());
+            }
+        });
+        computation.setOnFailed(_ -> {
+            if (task == computation) {
+                task = null;
+            }
+            System.err.printf("Failed to compute chart %s: %s%n", name, computation.getException());
+        });
+        task = computation;
+        Thread.ofVirtual().name("chart-" + name).start(computation);
+    }
+
+    void cancel() {
+        if (task != null) {
+            task.cancel(true);
+            task = null;
+        }
+    }
+
+    /**
+     * Stops a computation whose result will not be shown.
+     */
+    static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @return A series holding all the points, created at once: no change event is fired per point.
+     */
+    static XYChart.Series<String, Double> series(final String name, final List<XYChart.Data<String, Double>> points) {
+        return new XYChart.Series<>(name, FXCollections.observableArrayList(points));
+    }
+
+}
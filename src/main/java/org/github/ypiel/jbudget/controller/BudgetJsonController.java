@@ -0,0 +1,28 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.model.Budget;
+
+public class BudgetJsonController {
+
+    private BudgetJsonController() {
+        // Singleton using static
+    }
+
+    public static void saveBudgetsToFile(List<Budget> budgets, String filePath) throws IOException {
+        EntryJsonController.writeValue(Path.of(filePath), budgets);
+    }
+
+    public static List<Budget> loadBudgetsFromFile(String filePath) throws IOException {
+        ObjectMapper objectMapper = EntryJsonController.objectMapper();
+        return objectMapper.readValue(new File(filePath),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, Budget.class));
+    }
+
+}
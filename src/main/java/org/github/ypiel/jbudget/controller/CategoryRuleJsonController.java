@@ -0,0 +1,28 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.model.CategoryRule;
+
+public class CategoryRuleJsonController {
+
+    private CategoryRuleJsonController() {
+        // Singleton using static
+    }
+
+    public static void saveRulesToFile(List<CategoryRule> rules, String filePath) throws IOException {
+        EntryJsonController.writeValue(Path.of(filePath), rules);
+    }
+
+    public static List<CategoryRule> loadRulesFromFile(String filePath) throws IOException {
+        ObjectMapper objectMapper = EntryJsonController.objectMapper();
+        return objectMapper.readValue(new File(filePath),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, CategoryRule.class));
+    }
+
+}
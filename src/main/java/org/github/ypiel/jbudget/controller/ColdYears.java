@@ -0,0 +1,35 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.SortedMap;
+
+/**
+ * Aggregates of the years of a repository not loaded yet. Immutable, a repository publishes a new instance after each
+ * load or save, so that they are read without taking its lock.
+ *
+ * @param entryCount      Number of entries of the years not loaded.
+ * @param totals          Total in cents of each year not loaded.
+ * @param firstLoadedYear First loaded year, or the current one when nothing is loaded.
+ */
+record ColdYears(int entryCount, SortedMap<Integer, Long> totals, int firstLoadedYear) {
+
+    static final ColdYears NONE = new ColdYears(0, Collections.emptySortedMap(), LocalDate.now().getYear());
+
+    ColdYears {
+        totals = Collections.unmodifiableSortedMap(totals);
+    }
+
+    boolean isFullyLoaded() {
+        return totals.isEmpty();
+    }
+
+    long total() {
+        return totals.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    long totalBefore(final int year) {
+        return totals.headMap(year).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+}
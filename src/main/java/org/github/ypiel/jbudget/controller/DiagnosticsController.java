@@ -0,0 +1,123 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+
+import org.github.ypiel.jbudget.metrics.MetricSnapshot;
+import org.github.ypiel.jbudget.metrics.Metrics;
+
+/**
+ * Hidden tab showing the operation latencies, toggled with Ctrl+Shift+D.
+ */
+public class DiagnosticsController {
+
+    private static final KeyCombination TOGGLE = new KeyCodeCombination(KeyCode.D,
+            KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+    private static final DateTimeFormatter DUMP_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Path dumpFolder;
+    private final Tab tab = new Tab("Diagnostics");
+    private final TableView<MetricSnapshot> metricsTable = new TableView<>();
+    private final Label statusLabel = new Label();
+
+    public DiagnosticsController(final Path dumpFolder) {
+        this.dumpFolder = dumpFolder;
+        buildTab();
+    }
+
+    /**
+     * Registers the shortcut, the root of the scene must be the application TabPane.
+     */
+    public void install(final Scene scene) {
+        scene.getAccelerators().put(TOGGLE, () -> toggle((TabPane) scene.getRoot()));
+    }
+
+    private void toggle(final TabPane tabPane) {
+        if (tabPane.getTabs().remove(tab)) {
+            return;
+        }
+        tabPane.getTabs().add(tab);
+        tabPane.getSelectionModel().select(tab);
+        refresh();
+    }
+
+    private void buildTab() {
+        TableColumn<MetricSnapshot, String> nameColumn = new TableColumn<>("Metric");
+        nameColumn.setPrefWidth(250);
+        nameColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().name()));
+        TableColumn<MetricSnapshot, Long> countColumn = new TableColumn<>("Count");
+        countColumn.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().count()));
+
+        metricsTable.getColumns().add(nameColumn);
+        metricsTable.getColumns().add(countColumn);
+        metricsTable.getColumns().add(durationColumn("Total (ms)", MetricSnapshot::totalMs));
+        metricsTable.getColumns().add(durationColumn("p50 (ms)", MetricSnapshot::p50Ms));
+        metricsTable.getColumns().add(durationColumn("p99 (ms)", MetricSnapshot::p99Ms));
+        metricsTable.getColumns().add(durationColumn("Max (ms)", MetricSnapshot::maxMs));
+
+        Button refreshButton = new Button("Refresh");
+        refreshButton.setOnAction(_ -> refresh());
+        Button dumpButton = new Button("Dump to file");
+        dumpButton.setOnAction(_ -> dump());
+        Button resetButton = new Button("Reset");
+        resetButton.setOnAction(_ -> {
+            Metrics.reset();
+            refresh();
+        });
+
+        VBox content = new VBox(10, new HBox(10, refreshButton, dumpButton, resetButton), statusLabel, metricsTable);
+        content.setPadding(new Insets(10));
+        tab.setContent(content);
+    }
+
+    private TableColumn<MetricSnapshot, Double> durationColumn(final String title,
+                                                               final Function<MetricSnapshot, Double> value) {
+        TableColumn<MetricSnapshot, Double> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(value.apply(cellData.getValue())));
+        column.setCellFactory(_ -> new TableCell<>() {
+            @Override
+            protected void updateItem(Double item, boolean empty) {
+                super.updateItem(item, empty);
+                setText((empty || item == null) ? null : "%.3f".formatted(item));
+            }
+        });
+        return column;
+    }
+
+    private void refresh() {
+        metricsTable.setItems(FXCollections.observableArrayList(Metrics.snapshot()));
+    }
+
+    private void dump() {
+        try {
+            Files.createDirectories(dumpFolder);
+            Path file = dumpFolder.resolve("metrics-" + LocalDateTime.now().format(DUMP_FORMATTER) + ".json");
+            Metrics.dump(file);
+            statusLabel.setText("Metrics dumped to " + file);
+        } catch (IOException e) {
+            statusLabel.setText("Failed to dump metrics: " + e.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.exceptions.CsvValidationException;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ImportEvent;
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.AccountCSVFormat;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.Money;
+
+/**
+ * Reads the entries of a bank CSV file, laid out by the {@link AccountCSVFormat} of its account. The files written by
+ * {@link EntryExporter} are read the same way.
+ */
+public final class EntryCsvParser {
+
+    private EntryCsvParser() {
+        // Singleton using static
+    }
+
+    /**
+     * The first line is a header, skipped. Lines which cannot be parsed are counted as rejected in the event.
+     *
+     * @return The entries, new and in MISC.
+     */
+    public static List<Entry> parse(final Reader in, final Account account, final AccountCSVFormat format,
+                                    final ImportEvent event) throws IOException, CsvValidationException {
+        List<Entry> entries = new ArrayList<>();
+
+        try (CSVReader reader = new CSVReaderBuilder(in)
+                .withSkipLines(1) // Skip header
+                .withCSVParser(new CSVParserBuilder()
+                        .withSeparator(format.delimiter().charAt(0))
+                        .build())
+                .build()) {
+
+            String[] line;
+            while ((line = reader.readNext()) != null) {
+                event.lines++;
+                try {
+                    LocalDate dateOperation = LocalDate.parse(line[format.dateOperationIndex()],
+                            DateTimeFormatter.ofPattern(format.dateOperationFormat()));
+                    LocalDate dateValue = LocalDate.parse(line[format.dateValueIndex()],
+                            DateTimeFormatter.ofPattern(format.dateValueFormat()));
+
+                    String label = line[format.labelIndex()].trim();
+
+                    String sDebit = line[format.debitIndex()].trim();
+                    long debit = 0;
+                    if (!sDebit.isEmpty()) {
+                        debit = Money.toCents(format.decimalFormat().parse(sDebit));
+                    }
+
+                    String sCredit = line[format.creditIndex()].trim();
+                    long credit = 0;
+                    if (!sCredit.isEmpty()) {
+                        credit = Money.toCents(format.decimalFormat().parse(sCredit));
+                    }
+
+                    entries.add(new Entry(account, dateOperation, dateValue, label,
+                            "", debit, credit, EntryCategory.MISC, true, false));
+
+                } catch (Exception e) {
+                    event.rejectedLines++;
+                    System.err.println("Error parsing line: " + Arrays.toString(line));
+                    System.err.println("Error: " + e.getMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,250 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ExportEvent;
+import org.github.ypiel.jbudget.model.AccountCSVFormat;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.Money;
+import org.github.ypiel.jbudget.model.QueryPlan;
+
+/**
+ * Exports the result of a query to CSV or JSON Lines.
+ * <p>
+ * Rows are streamed from the {@link QueryPlan} to the file as they match: the result is never held, an export uses
+ * the same memory whatever its size. The file is replaced atomically, see {@link AtomicFiles}, so a failed or
+ * cancelled export leaves the previous file untouched.
+ */
+public final class EntryExporter {
+
+    // Progress is reported every PROGRESS_STEP matching rows
+    private static final int PROGRESS_STEP = 4096;
+
+    /**
+     * Layout used when no account gives one: ISO dates and amounts with a dot.
+     */
+    public static final AccountCSVFormat DEFAULT_CSV_FORMAT = new AccountCSVFormat(0, 1, 2, 3, 4,
+            "yyyy-MM-dd", "yyyy-MM-dd", new DecimalFormat("#0.00", DecimalFormatSymbols.getInstance(Locale.ROOT)), ";");
+
+    public enum Format {
+        /**
+         * Columns of an {@link AccountCSVFormat}, so that the file can be imported again, followed by the account,
+         * the category and the description.
+         */
+        CSV("csv"),
+        /**
+         * One JSON {@link Entry} per line.
+         */
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Format(final String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * @return The format matching the extension of the file, CSV by default.
+         */
+        public static Format of(final Path file) {
+            return file.getFileName().toString().toLowerCase().endsWith("." + JSONL.extension) ? JSONL : CSV;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Progress {
+        /**
+         * @param rows     Rows written so far.
+         * @param scanned  Entries scanned so far, up to {@link QueryPlan#scanSize()}.
+         * @param scanSize Entries to scan.
+         */
+        void update(long rows, int scanned, int scanSize);
+    }
+
+    private EntryExporter() {
+        // Singleton using static
+    }
+
+    /**
+     * @param csvFormat Layout of the CSV columns, not used for JSON Lines.
+     * @param cancelled Tested for each row, the export stops with a {@link CancellationException} once true.
+     * @return The number of exported rows.
+     */
+    public static long export(final Path file, final Format format, final AccountCSVFormat csvFormat,
+                              final EntryStore.Snapshot snapshot, final QueryPlan plan, final Progress progress,
+                              final BooleanSupplier cancelled) throws IOException {
+        ExportEvent event = new ExportEvent(format.extension());
+        event.file = file.getFileName().toString();
+        event.start();
+        long[] rows = new long[1];
+        AtomicFiles.write(file, 0, out -> {
+            RowWriter rowWriter = format == Format.JSONL ? new JsonLinesWriter(out) : new CsvWriter(out, csvFormat);
+            try {
+                plan.forEach((id, scanned) -> {
+                    if (cancelled.getAsBoolean()) {
+                        throw new CancellationException("Export cancelled");
+                    }
+                    try {
+                        rowWriter.write(snapshot.get(id));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    if (++rows[0] % PROGRESS_STEP == 0) {
+                        progress.update(rows[0], scanned, plan.scanSize());
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            rowWriter.close();
+        });
+        progress.update(rows[0], plan.scanSize(), plan.scanSize());
+        event.rows = rows[0];
+        event.bytes = Files.size(file);
+        event.finish();
+        return rows[0];
+    }
+
+    private interface RowWriter {
+        void write(Entry entry) throws IOException;
+
+        /**
+         * Flushes the rows, the target stream is closed by {@link AtomicFiles}.
+         */
+        void close() throws IOException;
+    }
+
+    private static final class JsonLinesWriter implements RowWriter {
+        private final OutputStream out;
+        private final SequenceWriter writer;
+        private boolean empty = true;
+
+        JsonLinesWriter(final OutputStream out) throws IOException {
+            this.out = out;
+            this.writer = EntryJsonController.objectMapper().writer()
+                    .without(SerializationFeature.INDENT_OUTPUT)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out);
+        }
+
+        @Override
+        public void write(final Entry entry) throws IOException {
+            writer.write(entry);
+            empty = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+            // The separator is only written between the rows
+            if (!empty) {
+                out.write('\n');
+            }
+            writer.close();
+        }
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer writer;
+        private final AccountCSVFormat format;
+        private final DateTimeFormatter dateOperationFormat;
+        private final DateTimeFormatter dateValueFormat;
+        // DecimalFormat is not thread-safe, the format may be used by an import meanwhile
+        private final DecimalFormat decimalFormat;
+        // Reused for each row
+        private final String[] columns;
+        private final StringBuilder line = new StringBuilder(256);
+
+        CsvWriter(final OutputStream out, final AccountCSVFormat format) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.format = format;
+            this.dateOperationFormat = DateTimeFormatter.ofPattern(format.dateOperationFormat());
+            this.dateValueFormat = DateTimeFormatter.ofPattern(format.dateValueFormat());
+            this.decimalFormat = (DecimalFormat) format.decimalFormat().clone();
+            int layoutColumns = 1 + Math.max(Math.max(format.dateOperationIndex(), format.dateValueIndex()),
+                    Math.max(format.labelIndex(), Math.max(format.debitIndex(), format.creditIndex())));
+            this.columns = new String[layoutColumns + 3];
+
+            // The import skips the first line
+            Arrays.fill(columns, "");
+            columns[format.dateOperationIndex()] = "Date operation";
+            columns[format.dateValueIndex()] = "Date value";
+            columns[format.labelIndex()] = "Label";
+            columns[format.debitIndex()] = "Debit";
+            columns[format.creditIndex()] = "Credit";
+            columns[layoutColumns] = "Account";
+            columns[layoutColumns + 1] = "Category";
+            columns[layoutColumns + 2] = "Description";
+            writeLine();
+        }
+
+        @Override
+        public void write(final Entry entry) throws IOException {
+            int layoutColumns = columns.length - 3;
+            Arrays.fill(columns, "");
+            columns[format.dateOperationIndex()] = dateOperationFormat.format(entry.dateOperation());
+            columns[format.dateValueIndex()] = dateValueFormat.format(entry.dateValue());
+            columns[format.labelIndex()] = entry.label();
+            columns[format.debitIndex()] = amount(entry.debit());
+            columns[format.creditIndex()] = amount(entry.credit());
+            columns[layoutColumns] = entry.account().name();
+            columns[layoutColumns + 1] = entry.category().name();
+            columns[layoutColumns + 2] = entry.description();
+            writeLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.flush();
+        }
+
+        private String amount(final long cents) {
+            // Empty like in the bank files
+            return cents == 0 ? "" : decimalFormat.format(Money.toDecimal(cents));
+        }
+
+        private void writeLine() throws IOException {
+            line.setLength(0);
+            for (int c = 0; c < columns.length; c++) {
+                if (c > 0) {
+                    line.append(format.delimiter());
+                }
+                appendQuoted(columns[c]);
+            }
+            line.append('\n');
+            writer.append(line);
+        }
+
+        private void appendQuoted(final String value) {
+            if (value.contains(format.delimiter()) || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                    || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+    }
+
+}
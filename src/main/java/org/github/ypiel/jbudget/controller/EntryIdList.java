@@ -0,0 +1,104 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.collections.ObservableListBase;
+
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+
+/**
+ * Read only list of the entries of a query result, to be used as the items of a TableView.
+ * <p>
+ * Only the ids of the result are held: an entry is fetched from a snapshot of the store when a cell asks for it, so
+ * showing a large result does not copy it. Sorting reorders the ids. The snapshot is the version of the store when the
+ * result was set: an entry removed since, by an undo for instance, is still shown until the result is set again.
+ */
+public class EntryIdList extends ObservableListBase<Entry> {
+
+    private final EntryStore store;
+    private EntryStore.Snapshot snapshot;
+    // Ids in the order given by the query, to restore it when the table is not sorted anymore
+    private int[] resultIds = new int[0];
+    private int[] ids = new int[0];
+
+    public EntryIdList(final EntryStore store) {
+        this.store = store;
+        this.snapshot = store.snapshot();
+    }
+
+    /**
+     * Replaces the displayed result, the ids of entries removed from the store are skipped.
+     */
+    public void setIds(final int[] newIds, final Comparator<Entry> comparator) {
+        EntryStore.Snapshot newSnapshot = store.snapshot();
+        this.resultIds = Arrays.stream(newIds).filter(id -> newSnapshot.get(id) != null).toArray();
+        replaceIds(newSnapshot, sorted(newSnapshot, resultIds, comparator));
+    }
+
+    /**
+     * Sort policy of the table: reorders the ids, or restores the query order when the comparator is null.
+     */
+    public boolean sortIds(final Comparator<Entry> comparator) {
+        replaceIds(snapshot, sorted(snapshot, resultIds, comparator));
+        return true;
+    }
+
+    public int idAt(final int index) {
+        return ids[index];
+    }
+
+    public int[] idsAt(final List<Integer> indices) {
+        return indices.stream().mapToInt(this::idAt).toArray();
+    }
+
+    public int[] ids() {
+        return ids.clone();
+    }
+
+    @Override
+    public Entry get(final int index) {
+        return snapshot.get(ids[index]);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    private static int[] sorted(final EntryStore.Snapshot snapshot, final int[] toSort,
+                                final Comparator<Entry> comparator) {
+        if (comparator == null) {
+            return toSort;
+        }
+        return Arrays.stream(toSort).boxed()
+                .sorted(Comparator.comparing(snapshot::get, comparator))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void replaceIds(final EntryStore.Snapshot newSnapshot, final int[] newIds) {
+        final EntryStore.Snapshot oldSnapshot = this.snapshot;
+        final int[] oldIds = this.ids;
+        this.snapshot = newSnapshot;
+        this.ids = newIds;
+
+        beginChange();
+        nextReplace(0, newIds.length, new AbstractList<>() {
+            @Override
+            public Entry get(int index) {
+                return oldSnapshot.get(oldIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return oldIds.length;
+            }
+        });
+        endChange();
+    }
+
+}
@@ -2,6 +2,7 @@ package org.github.ypiel.jbudget.controller;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -13,6 +14,12 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.github.ypiel.jbudget.model.Entry;
 
 public class EntryJsonController {
+
+    /**
+     * Number of previous versions kept for each file written by {@link #writeValue(Path, Object)}.
+     */
+    public static final int BACKUPS = 3;
+
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
     static{
@@ -44,8 +51,19 @@ public class EntryJsonController {
         // Singleton using static
     }
 
+    static ObjectMapper objectMapper() {
+        return objectMapper;
+    }
+
+    /**
+     * Writes the value in the file atomically, see {@link AtomicFiles}.
+     */
+    static void writeValue(Path file, Object value) throws IOException {
+        AtomicFiles.write(file, BACKUPS, out -> objectMapper.writeValue(out, value));
+    }
+
     public static void saveEntriesToFile(List<Entry> entries, String filePath) throws IOException {
-        objectMapper.writeValue(new File(filePath), entries);
+        writeValue(Path.of(filePath), entries);
     }
 
     public static List<Entry> loadEntriesFromFile(String filePath) throws IOException {
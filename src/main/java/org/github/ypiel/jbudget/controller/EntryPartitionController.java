@@ -0,0 +1,333 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.StorageEvent;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.EntryStoreChange;
+import org.github.ypiel.jbudget.model.PartitionInfo;
+
+/**
+ * Persistence of the entries in one JSON file per year of operation date, with a manifest holding the aggregates
+ * of each year.
+ * <p>
+ * Only the recent years are loaded when opening, older ones are loaded on demand. The years modified in the store
+ * are tracked, a save only rewrites them.
+ * <p>
+ * A save writes the files without holding the lock of the loads, so a search or a refresh of the totals does not
+ * wait for it: the aggregates of the cold years are published as an immutable {@link ColdYears}.
+ */
+public class EntryPartitionController implements EntryRepository {
+
+    /**
+     * Number of years, current one included, loaded when opening.
+     */
+    public static final int RECENT_YEARS = 2;
+
+    private static final String LEGACY_FILE = "jbudget.json";
+    private static final String MANIFEST_FILE = "jbudget-manifest.json";
+    private static final Pattern PARTITION_FILE = Pattern.compile("jbudget-(\\d{4})\\.json");
+
+    private final Path folder;
+    private final EntryStore store;
+    private final UnaryOperator<Entry> onLoad;
+
+    // One save at a time, taken before the lock of this repository
+    private final Object saveLock = new Object();
+
+    private final NavigableMap<Integer, PartitionInfo> manifest = new TreeMap<>();
+    private final Set<Integer> loadedYears = new TreeSet<>();
+    // Updated by the thread modifying the store
+    private final Set<Integer> dirtyYears = new ConcurrentSkipListSet<>();
+    // Thread adding the entries of a year being loaded, its changes do not make the year dirty
+    private volatile Thread loadingThread;
+    private volatile ColdYears coldYears = ColdYears.NONE;
+
+    /**
+     * @param folder Folder of the partition files.
+     * @param store  The store to fill, its mutations are tracked.
+     * @param onLoad Applied to each entry read from a file.
+     */
+    public EntryPartitionController(final Path folder, final EntryStore store, final UnaryOperator<Entry> onLoad) {
+        this.folder = folder;
+        this.store = store;
+        this.onLoad = onLoad;
+        store.addListener(this);
+    }
+
+    /**
+     * Loads the recent partitions in the store, which must be empty.
+     * The first time, the single file of previous versions is split in partitions.
+     */
+    @Override
+    public void open() throws IOException {
+        synchronized (saveLock) {
+            synchronized (this) {
+                openPartitions();
+            }
+        }
+    }
+
+    private void openPartitions() throws IOException {
+        manifest.clear();
+        loadedYears.clear();
+        dirtyYears.clear();
+        publishColdYears();
+        Files.createDirectories(folder);
+
+        Path manifestFile = folder.resolve(MANIFEST_FILE);
+        if (!Files.isRegularFile(manifestFile)) {
+            migrate();
+            return;
+        }
+
+        ObjectMapper objectMapper = EntryJsonController.objectMapper();
+        List<PartitionInfo> infos = objectMapper.readValue(manifestFile.toFile(),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, PartitionInfo.class));
+        infos.forEach(i -> manifest.put(i.year(), i));
+
+        // Most recent first, each year is added to the store as soon as it is read
+        int firstRecentYear = LocalDate.now().getYear() - RECENT_YEARS + 1;
+        for (int year : new ArrayList<>(manifest.descendingKeySet())) {
+            if (year >= firstRecentYear) {
+                load(year);
+            }
+        }
+        publishColdYears();
+    }
+
+    @Override
+    public synchronized void ensureLoaded(final LocalDate from, final LocalDate to) throws IOException {
+        for (int year : new ArrayList<>(manifest.keySet())) {
+            if ((from == null || year >= from.getYear()) && (to == null || year <= to.getYear())) {
+                load(year);
+            }
+        }
+    }
+
+    @Override
+    public boolean isFullyLoaded() {
+        return coldYears.isFullyLoaded();
+    }
+
+    @Override
+    public int coldEntryCount() {
+        return coldYears.entryCount();
+    }
+
+    @Override
+    public long coldTotal() {
+        return coldYears.total();
+    }
+
+    @Override
+    public long coldTotalBefore(final int year) {
+        return coldYears.totalBefore(year);
+    }
+
+    @Override
+    public int firstLoadedYear() {
+        return coldYears.firstLoadedYear();
+    }
+
+    /**
+     * Rewrites the partitions modified since they have been loaded, then the manifest.
+     */
+    @Override
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            Set<Integer> years;
+            EntryStore.Snapshot snapshot;
+            synchronized (this) {
+                if (dirtyYears.isEmpty()) {
+                    return;
+                }
+                // A partition modified while not loaded must be merged with its file before being rewritten
+                for (int year : new ArrayList<>(dirtyYears)) {
+                    load(year);
+                }
+                // Marked clean before reading the entries: a year modified meanwhile is dirty again
+                years = new TreeSet<>(dirtyYears);
+                dirtyYears.removeAll(years);
+                snapshot = store.snapshot();
+            }
+
+            // Written out of the lock of the loads, from the snapshot
+            try {
+                Map<Integer, PartitionInfo> written = write(years, snapshot);
+                List<PartitionInfo> infos;
+                synchronized (this) {
+                    for (int year : years) {
+                        PartitionInfo info = written.get(year);
+                        if (info == null) {
+                            manifest.remove(year);
+                        } else {
+                            manifest.put(year, info);
+                        }
+                    }
+                    infos = new ArrayList<>(manifest.values());
+                    publishColdYears();
+                }
+                EntryJsonController.writeValue(folder.resolve(MANIFEST_FILE), infos);
+            } catch (IOException | RuntimeException e) {
+                dirtyYears.addAll(years);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Writes the partition of each year, deletes the ones of the years without entries.
+     *
+     * @return The aggregates of the written partitions.
+     */
+    private Map<Integer, PartitionInfo> write(final Set<Integer> years, final EntryStore.Snapshot snapshot)
+            throws IOException {
+        Files.createDirectories(folder);
+        Map<Integer, List<Entry>> byYear = snapshot.entries().stream()
+                .filter(e -> years.contains(e.dateOperation().getYear()))
+                .collect(Collectors.groupingBy(e -> e.dateOperation().getYear()));
+
+        Map<Integer, PartitionInfo> written = new HashMap<>();
+        for (int year : years) {
+            List<Entry> entries = byYear.getOrDefault(year, List.of());
+            Path file = partitionFile(year);
+            if (entries.isEmpty()) {
+                Files.deleteIfExists(file);
+            } else {
+                StorageEvent event = new StorageEvent("save");
+                event.start();
+                EntryJsonController.saveEntriesToFile(entries, file.toFile().getAbsolutePath());
+                written.put(year, PartitionInfo.of(year, entries));
+                event.file = file.toString();
+                event.bytes = Files.size(file);
+                event.entries = entries.size();
+                event.finish();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Publishes the aggregates of the years not loaded, the lock must be held.
+     */
+    private void publishColdYears() {
+        SortedMap<Integer, Long> totals = new TreeMap<>();
+        int count = 0;
+        for (PartitionInfo info : manifest.values()) {
+            if (!loadedYears.contains(info.year())) {
+                totals.put(info.year(), info.total());
+                count += info.count();
+            }
+        }
+        int firstLoadedYear = loadedYears.stream().findFirst().orElse(LocalDate.now().getYear());
+        coldYears = new ColdYears(count, totals, firstLoadedYear);
+    }
+
+    @Override
+    public void onChange(final List<EntryStoreChange> changes) {
+        if (Thread.currentThread() == loadingThread) {
+            return;
+        }
+        for (EntryStoreChange change : changes) {
+            if (change.previous() != null) {
+                dirtyYears.add(change.previous().dateOperation().getYear());
+            }
+            if (change.current() != null) {
+                dirtyYears.add(change.current().dateOperation().getYear());
+            }
+        }
+    }
+
+    private void load(final int year) throws IOException {
+        if (loadedYears.contains(year)) {
+            return;
+        }
+        loadedYears.add(year);
+
+        Path file = partitionFile(year);
+        if (Files.isRegularFile(file)) {
+            StorageEvent event = new StorageEvent("load");
+            event.start();
+            List<Entry> entries = EntryJsonController.loadEntriesFromFile(file.toFile().getAbsolutePath());
+            addLoaded(entries.stream().map(onLoad).toList());
+            event.file = file.toString();
+            event.bytes = Files.size(file);
+            event.entries = entries.size();
+            event.finish();
+        }
+        publishColdYears();
+    }
+
+    /**
+     * Adds the entries to the store and to its undo history, which is kept.
+     */
+    private void addLoaded(final List<Entry> entries) {
+        loadingThread = Thread.currentThread();
+        try {
+            store.load(entries);
+        } finally {
+            loadingThread = null;
+        }
+    }
+
+    private void migrate() throws IOException {
+        Path legacyFile = folder.resolve(LEGACY_FILE);
+        if (Files.isRegularFile(legacyFile)) {
+            List<Entry> entries = EntryJsonController.loadEntriesFromFile(legacyFile.toFile().getAbsolutePath());
+            store.addAll(entries.stream().map(onLoad).toList());
+        }
+        // All the years of the legacy file are loaded and dirty, the save writes all the partitions
+        loadedYears.addAll(dirtyYears);
+        manifest.clear();
+        EntryJsonController.writeValue(folder.resolve(MANIFEST_FILE), List.of());
+        save();
+    }
+
+    /**
+     * Reads the entries saved in the folder without writing anything: the partition files, or the single file of
+     * previous versions when there is none.
+     */
+    static List<Entry> readAll(final Path folder) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (Files.isDirectory(folder)) {
+            try (Stream<Path> files = Files.list(folder)) {
+                for (Path file : files.sorted().toList()) {
+                    if (PARTITION_FILE.matcher(file.getFileName().toString()).matches()) {
+                        entries.addAll(EntryJsonController.loadEntriesFromFile(file.toFile().getAbsolutePath()));
+                    }
+                }
+            }
+        }
+        Path legacyFile = folder.resolve(LEGACY_FILE);
+        if (entries.isEmpty() && Files.isRegularFile(legacyFile)) {
+            entries.addAll(EntryJsonController.loadEntriesFromFile(legacyFile.toFile().getAbsolutePath()));
+        }
+        return entries;
+    }
+
+    private Path partitionFile(final int year) {
+        return folder.resolve("jbudget-" + year + ".json");
+    }
+
+}
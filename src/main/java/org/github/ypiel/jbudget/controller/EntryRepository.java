@@ -0,0 +1,96 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.SortedMap;
+
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.EntryStoreListener;
+import org.github.ypiel.jbudget.model.Granularity;
+
+/**
+ * Persistence of the entries of a store, read by year of operation date on demand.
+ * <p>
+ * The repository listens to the store to know the years to write on {@link #save()}. Aggregates of the years not
+ * loaded yet are known without reading their entries.
+ */
+public interface EntryRepository extends EntryStoreListener {
+
+    /**
+     * Chart series of the years not loaded, to be added to the one of the loaded years.
+     *
+     * @param snapshot Version of the store holding the loaded years, taken with the totals.
+     * @param totals   Sum in cents of the entries of the years not loaded for each period of value date, keyed by the
+     *                 last day of the period, duplicates excluded.
+     */
+    record ColdSeries(EntryStore.Snapshot snapshot, SortedMap<LocalDate, Long> totals) {}
+
+    /**
+     * Loads the recent years in the store, which must be empty.
+     */
+    void open() throws IOException;
+
+    /**
+     * Loads the years overlapping the given range.
+     *
+     * @param from First date, null for no lower bound.
+     * @param to   Last date, null for no upper bound.
+     */
+    void ensureLoaded(LocalDate from, LocalDate to) throws IOException;
+
+    /**
+     * Loads the years which may hold entries matching the query. By default all the years of its range, a repository
+     * able to search the years not loaded skips those without a match.
+     */
+    default void ensureLoaded(final EntryQuery query) throws IOException {
+        ensureLoaded(query.from(), query.to());
+    }
+
+    default void ensureAllLoaded() throws IOException {
+        ensureLoaded(null, null);
+    }
+
+    /**
+     * @param account The account, null for all the accounts.
+     * @return The series of the years not loaded, null when they must be loaded to compute it.
+     */
+    default ColdSeries coldSeries(final Account account, final Granularity granularity) throws IOException {
+        return null;
+    }
+
+    boolean isFullyLoaded();
+
+    /**
+     * @return Number of entries in the years not loaded yet.
+     */
+    int coldEntryCount();
+
+    /**
+     * @return Sum in cents of the entry values of all the years not loaded yet, including those between loaded years.
+     */
+    long coldTotal();
+
+    /**
+     * @return Sum in cents of the entry values of the years not loaded yet, before the given year.
+     */
+    long coldTotalBefore(int year);
+
+    /**
+     * @return First loaded year, or the current one when nothing is loaded.
+     */
+    int firstLoadedYear();
+
+    /**
+     * Writes the years modified since they have been loaded.
+     */
+    void save() throws IOException;
+
+    /**
+     * Releases the resources of the repository, called once the last save is done.
+     */
+    default void close() throws IOException {
+    }
+
+}
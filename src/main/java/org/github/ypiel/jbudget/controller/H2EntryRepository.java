@@ -0,0 +1,606 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.StorageEvent;
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.EntryStoreChange;
+import org.github.ypiel.jbudget.model.Granularity;
+
+/**
+ * Persistence of the entries in an embedded H2 database file, with accounts and categories in their own tables.
+ * <p>
+ * Entries are indexed by year of operation date: like the JSON partitions, only the recent years are loaded when
+ * opening and a save rewrites the modified years, here in a single transaction. The count and total of each year
+ * are computed by the database. The first time, the JSON partitions of the folder are imported.
+ * <p>
+ * As for the partitions, a save runs its transaction without holding the lock of the loads, and the aggregates of the
+ * cold years are published as an immutable {@link ColdYears}.
+ */
+public class H2EntryRepository implements EntryRepository {
+
+    private static final String DATABASE_NAME = "jbudget";
+
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE IF NOT EXISTS account (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                bank VARCHAR NOT NULL,
+                name VARCHAR NOT NULL,
+                code VARCHAR NOT NULL,
+                initial_balance BIGINT NOT NULL,
+                CONSTRAINT account_key UNIQUE (bank, name, code))
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS category (
+                id INT AUTO_INCREMENT PRIMARY KEY,
+                name VARCHAR NOT NULL UNIQUE)
+            """,
+            """
+            CREATE TABLE IF NOT EXISTS entry (
+                id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                account_id INT NOT NULL REFERENCES account (id),
+                operation_year INT NOT NULL,
+                date_operation DATE NOT NULL,
+                date_value DATE NOT NULL,
+                label VARCHAR NOT NULL,
+                description VARCHAR NOT NULL,
+                debit BIGINT NOT NULL,
+                credit BIGINT NOT NULL,
+                category_id INT NOT NULL REFERENCES category (id),
+                duplicate BOOLEAN NOT NULL)
+            """,
+            "CREATE INDEX IF NOT EXISTS entry_year ON entry (operation_year)",
+            "CREATE INDEX IF NOT EXISTS entry_account_date ON entry (account_id, date_operation)",
+            "CREATE INDEX IF NOT EXISTS entry_category ON entry (category_id)"
+    };
+
+    private static final String SELECT_YEAR = """
+            SELECT a.bank, a.name, a.code, a.initial_balance, e.date_operation, e.date_value, e.label,
+                   e.description, e.debit, e.credit, c.name AS category, e.duplicate
+            FROM entry e
+            JOIN account a ON a.id = e.account_id
+            JOIN category c ON c.id = e.category_id
+            WHERE e.operation_year = ?
+            ORDER BY e.id
+            """;
+
+    // Signed value of an entry, 0 for a duplicate as in the totals
+    private static final String VALUE = "CASE WHEN duplicate THEN 0 WHEN debit > 0 THEN -debit ELSE credit END";
+    private static final String SIGNED_VALUE = "CASE WHEN debit > 0 THEN -debit ELSE credit END";
+    private static final String ACCOUNT_ID = "account_id = (SELECT id FROM account WHERE bank = ? AND name = ? AND code = ?)";
+
+    private static final String INSERT_ENTRY = """
+            INSERT INTO entry (account_id, operation_year, date_operation, date_value, label, description, debit, credit,
+                               category_id, duplicate)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final Path folder;
+    private final EntryStore store;
+    private final UnaryOperator<Entry> onLoad;
+
+    // One save at a time, taken before the lock of this repository
+    private final Object saveLock = new Object();
+
+    private Connection connection;
+    private final Map<EntryCategory, Integer> categoryIds = new HashMap<>();
+    private final Map<Account, Integer> accountIds = new HashMap<>();
+
+    // Number of entries and total of each year in the database, duplicates excluded from the total
+    private final NavigableMap<Integer, long[]> yearStats = new TreeMap<>();
+    private final Set<Integer> loadedYears = new TreeSet<>();
+    // Updated by the thread modifying the store
+    private final Set<Integer> dirtyYears = new ConcurrentSkipListSet<>();
+    // Thread adding the entries of a year being loaded, its changes do not make the year dirty
+    private volatile Thread loadingThread;
+    private volatile ColdYears coldYears = ColdYears.NONE;
+
+    /**
+     * @param folder Folder of the database file, and of the JSON partitions to import.
+     * @param store  The store to fill, its mutations are tracked.
+     * @param onLoad Applied to each entry read from the database.
+     */
+    public H2EntryRepository(final Path folder, final EntryStore store, final UnaryOperator<Entry> onLoad) {
+        this.folder = folder;
+        this.store = store;
+        this.onLoad = onLoad;
+        store.addListener(this);
+    }
+
+    @Override
+    public void open() throws IOException {
+        synchronized (saveLock) {
+            synchronized (this) {
+                openDatabase();
+            }
+        }
+    }
+
+    private void openDatabase() throws IOException {
+        loadedYears.clear();
+        dirtyYears.clear();
+        Files.createDirectories(folder);
+        try {
+            if (connection == null) {
+                connection = DriverManager.getConnection("jdbc:h2:file:" + folder.resolve(DATABASE_NAME).toAbsolutePath());
+                try (Statement statement = connection.createStatement()) {
+                    for (String ddl : SCHEMA) {
+                        statement.execute(ddl);
+                    }
+                }
+                initCategories();
+                initAccounts();
+            }
+            readYearStats();
+        } catch (SQLException e) {
+            throw new IOException("Cannot open the database in " + folder, e);
+        }
+        publishColdYears();
+
+        if (yearStats.isEmpty()) {
+            migrate();
+            return;
+        }
+
+        // Most recent first, each year is added to the store as soon as it is read
+        int firstRecentYear = LocalDate.now().getYear() - EntryPartitionController.RECENT_YEARS + 1;
+        for (int year : new ArrayList<>(yearStats.descendingKeySet())) {
+            if (year >= firstRecentYear) {
+                load(year);
+            }
+        }
+        publishColdYears();
+    }
+
+    @Override
+    public synchronized void ensureLoaded(final LocalDate from, final LocalDate to) throws IOException {
+        for (int year : new ArrayList<>(yearStats.keySet())) {
+            if ((from == null || year >= from.getYear()) && (to == null || year <= to.getYear())) {
+                load(year);
+            }
+        }
+    }
+
+    /**
+     * Only loads the years not loaded which hold a matching entry, found by the database with the indexes of the
+     * account, date and category.
+     */
+    @Override
+    public synchronized void ensureLoaded(final EntryQuery query) throws IOException {
+        // Entries read from the database are never new
+        if (query.onlyNew() || isFullyLoaded()) {
+            return;
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        coldYearsCondition(conditions, parameters);
+        if (query.account() != null) {
+            accountCondition(query.account(), conditions, parameters);
+        }
+        if (query.category() != EntryCategory.ALL) {
+            conditions.add("category_id = ?");
+            parameters.add(categoryIds.get(query.category()));
+        }
+        if (query.from() != null) {
+            conditions.add("date_operation >= ?");
+            parameters.add(Date.valueOf(query.from()));
+        }
+        if (query.to() != null) {
+            conditions.add("date_operation <= ?");
+            parameters.add(Date.valueOf(query.to()));
+        }
+        if (query.onlyDuplicates()) {
+            conditions.add("duplicate");
+        }
+        if (query.minAmount() != null) {
+            conditions.add(SIGNED_VALUE + " >= ?");
+            parameters.add(query.minAmount());
+        }
+        if (query.maxAmount() != null) {
+            conditions.add(SIGNED_VALUE + " <= ?");
+            parameters.add(query.maxAmount());
+        }
+        if (!query.label().isEmpty()) {
+            conditions.add("LOWER(label) LIKE ? ESCAPE '\\'");
+            parameters.add("%" + query.label().replaceAll("([\\\\%_])", "\\\\$1") + "%");
+        }
+
+        List<Integer> years = new ArrayList<>();
+        try (PreparedStatement statement = prepare("SELECT DISTINCT operation_year FROM entry", conditions,
+                parameters, "");
+             ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                years.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot search the entries of the database", e);
+        }
+        for (int year : years) {
+            load(year);
+        }
+    }
+
+    /**
+     * Sums the entries of the years not loaded by day of value in the database, without loading them.
+     */
+    @Override
+    public synchronized ColdSeries coldSeries(final Account account, final Granularity granularity)
+            throws IOException {
+        SortedMap<LocalDate, Long> totals = new TreeMap<>();
+        if (!coldYears.isFullyLoaded()) {
+            List<String> conditions = new ArrayList<>();
+            List<Object> parameters = new ArrayList<>();
+            coldYearsCondition(conditions, parameters);
+            if (account != null) {
+                accountCondition(account, conditions, parameters);
+            }
+            try (PreparedStatement statement = prepare("SELECT date_value, SUM(" + VALUE + ") FROM entry",
+                    conditions, parameters, " GROUP BY date_value");
+                 ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    totals.merge(granularity.periodEnd(rs.getDate(1).toLocalDate()), rs.getLong(2), Long::sum);
+                }
+            } catch (SQLException e) {
+                throw new IOException("Cannot compute the totals of the database", e);
+            }
+        }
+        // Taken in the lock of the loads: the loaded years are those of the snapshot
+        return new ColdSeries(store.snapshot(), totals);
+    }
+
+    private void coldYearsCondition(final List<String> conditions, final List<Object> parameters) {
+        List<Integer> years = yearStats.keySet().stream().filter(y -> !loadedYears.contains(y)).toList();
+        conditions.add("operation_year IN (" + String.join(", ", Collections.nCopies(years.size(), "?")) + ")");
+        parameters.addAll(years);
+    }
+
+    private static void accountCondition(final Account account, final List<String> conditions,
+                                         final List<Object> parameters) {
+        // By key: the initial balance of the account may have been changed since its entries were saved
+        conditions.add(ACCOUNT_ID);
+        parameters.add(account.bank());
+        parameters.add(account.name());
+        parameters.add(account.code());
+    }
+
+    private PreparedStatement prepare(final String select, final List<String> conditions,
+                                      final List<Object> parameters, final String suffix) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(select + " WHERE " + String.join(" AND ", conditions)
+                + suffix);
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    @Override
+    public boolean isFullyLoaded() {
+        return coldYears.isFullyLoaded();
+    }
+
+    @Override
+    public int coldEntryCount() {
+        return coldYears.entryCount();
+    }
+
+    @Override
+    public long coldTotal() {
+        return coldYears.total();
+    }
+
+    @Override
+    public long coldTotalBefore(final int year) {
+        return coldYears.totalBefore(year);
+    }
+
+    @Override
+    public int firstLoadedYear() {
+        return coldYears.firstLoadedYear();
+    }
+
+    /**
+     * Replaces the entries of the modified years, in a single transaction.
+     */
+    @Override
+    public void save() throws IOException {
+        synchronized (saveLock) {
+            Set<Integer> years;
+            EntryStore.Snapshot snapshot;
+            synchronized (this) {
+                if (dirtyYears.isEmpty()) {
+                    return;
+                }
+                // A year modified while not loaded must be merged with the database before being rewritten
+                for (int year : new ArrayList<>(dirtyYears)) {
+                    load(year);
+                }
+                // Marked clean before reading the entries: a year modified meanwhile is dirty again
+                years = new TreeSet<>(dirtyYears);
+                dirtyYears.removeAll(years);
+                snapshot = store.snapshot();
+            }
+
+            // Written out of the lock of the loads, from the snapshot
+            List<Entry> entries = snapshot.entries().stream()
+                    .filter(e -> years.contains(e.dateOperation().getYear()))
+                    .toList();
+            StorageEvent event = new StorageEvent("save");
+            event.start();
+            try {
+                write(years, entries);
+                NavigableMap<Integer, long[]> stats = queryYearStats();
+                synchronized (this) {
+                    yearStats.clear();
+                    yearStats.putAll(stats);
+                    publishColdYears();
+                }
+            } catch (SQLException e) {
+                dirtyYears.addAll(years);
+                throw new IOException("Cannot save the entries in the database", e);
+            }
+            event.file = folder.resolve(DATABASE_NAME).toString();
+            event.entries = entries.size();
+            event.finish();
+        }
+    }
+
+    /**
+     * Publishes the aggregates of the years not loaded, the lock must be held.
+     */
+    private void publishColdYears() {
+        SortedMap<Integer, Long> totals = new TreeMap<>();
+        int count = 0;
+        for (Map.Entry<Integer, long[]> stats : yearStats.entrySet()) {
+            if (!loadedYears.contains(stats.getKey())) {
+                totals.put(stats.getKey(), stats.getValue()[1]);
+                count += (int) stats.getValue()[0];
+            }
+        }
+        int firstLoadedYear = loadedYears.stream().findFirst().orElse(LocalDate.now().getYear());
+        coldYears = new ColdYears(count, totals, firstLoadedYear);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (saveLock) {
+            synchronized (this) {
+                if (connection == null) {
+                    return;
+                }
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    throw new IOException("Cannot close the database in " + folder, e);
+                } finally {
+                    connection = null;
+                    categoryIds.clear();
+                    accountIds.clear();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onChange(final List<EntryStoreChange> changes) {
+        if (Thread.currentThread() == loadingThread) {
+            return;
+        }
+        for (EntryStoreChange change : changes) {
+            if (change.previous() != null) {
+                dirtyYears.add(change.previous().dateOperation().getYear());
+            }
+            if (change.current() != null) {
+                dirtyYears.add(change.current().dateOperation().getYear());
+            }
+        }
+    }
+
+    private void load(final int year) throws IOException {
+        if (loadedYears.contains(year)) {
+            return;
+        }
+        loadedYears.add(year);
+
+        if (yearStats.containsKey(year)) {
+            StorageEvent event = new StorageEvent("load");
+            event.start();
+            List<Entry> entries = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_YEAR)) {
+                statement.setInt(1, year);
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(onLoad.apply(readEntry(rs)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IOException("Cannot load the entries of " + year, e);
+            }
+            // Also added to the undo history, which is kept
+            loadingThread = Thread.currentThread();
+            try {
+                store.load(entries);
+            } finally {
+                loadingThread = null;
+            }
+            event.file = folder.resolve(DATABASE_NAME).toString();
+            event.entries = entries.size();
+            event.finish();
+        }
+        publishColdYears();
+    }
+
+    /**
+     * Imports the JSON partitions of the folder, if any, in an empty database. The JSON files are left untouched.
+     */
+    private void migrate() throws IOException {
+        List<Entry> entries = EntryPartitionController.readAll(folder);
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> years = entries.stream().map(e -> e.dateOperation().getYear()).collect(Collectors.toSet());
+        try {
+            write(years, entries);
+            readYearStats();
+        } catch (SQLException e) {
+            throw new IOException("Cannot import the JSON partitions of " + folder, e);
+        }
+        for (int year : new ArrayList<>(yearStats.keySet())) {
+            load(year);
+        }
+    }
+
+    private void write(final Set<Integer> years, final List<Entry> entries) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM entry WHERE operation_year = ?")) {
+                for (int year : years) {
+                    delete.setInt(1, year);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+            try (PreparedStatement insert = connection.prepareStatement(INSERT_ENTRY)) {
+                for (Entry e : entries) {
+                    insert.setInt(1, accountId(e.account()));
+                    insert.setInt(2, e.dateOperation().getYear());
+                    insert.setDate(3, Date.valueOf(e.dateOperation()));
+                    insert.setDate(4, Date.valueOf(e.dateValue()));
+                    insert.setString(5, e.label());
+                    insert.setString(6, e.description());
+                    insert.setLong(7, e.debit());
+                    insert.setLong(8, e.credit());
+                    insert.setInt(9, categoryIds.get(e.category()));
+                    insert.setBoolean(10, e.duplicate());
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            // Accounts inserted by the transaction are gone
+            accountIds.clear();
+            initAccounts();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private Entry readEntry(final ResultSet rs) throws SQLException {
+        Account account = new Account(rs.getString("bank"), rs.getString("name"), rs.getString("code"),
+                rs.getLong("initial_balance"));
+        return new Entry(account,
+                rs.getDate("date_operation").toLocalDate(),
+                rs.getDate("date_value").toLocalDate(),
+                rs.getString("label"),
+                rs.getString("description"),
+                rs.getLong("debit"),
+                rs.getLong("credit"),
+                EntryCategory.valueOf(rs.getString("category")),
+                false,
+                rs.getBoolean("duplicate"));
+    }
+
+    private void readYearStats() throws SQLException {
+        NavigableMap<Integer, long[]> stats = queryYearStats();
+        yearStats.clear();
+        yearStats.putAll(stats);
+    }
+
+    private NavigableMap<Integer, long[]> queryYearStats() throws SQLException {
+        NavigableMap<Integer, long[]> stats = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT operation_year, COUNT(*), SUM(" + VALUE + ") FROM entry GROUP BY operation_year")) {
+            while (rs.next()) {
+                stats.put(rs.getInt(1), new long[]{rs.getLong(2), rs.getLong(3)});
+            }
+        }
+        return stats;
+    }
+
+    private void initCategories() throws SQLException {
+        try (PreparedStatement merge = connection.prepareStatement("MERGE INTO category (name) KEY (name) VALUES (?)")) {
+            for (EntryCategory category : EntryCategory.values()) {
+                merge.setString(1, category.name());
+                merge.addBatch();
+            }
+            merge.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, name FROM category")) {
+            while (rs.next()) {
+                categoryIds.put(EntryCategory.valueOf(rs.getString("name")), rs.getInt("id"));
+            }
+        }
+    }
+
+    private void initAccounts() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, bank, name, code, initial_balance FROM account")) {
+            while (rs.next()) {
+                accountIds.put(new Account(rs.getString("bank"), rs.getString("name"), rs.getString("code"),
+                        rs.getLong("initial_balance")), rs.getInt("id"));
+            }
+        }
+    }
+
+    private int accountId(final Account account) throws SQLException {
+        Integer id = accountIds.get(account);
+        if (id != null) {
+            return id;
+        }
+        // The initial balance is not part of the key, it may have been changed
+        try (PreparedStatement merge = connection.prepareStatement(
+                "MERGE INTO account (bank, name, code, initial_balance) KEY (bank, name, code) VALUES (?, ?, ?, ?)")) {
+            merge.setString(1, account.bank());
+            merge.setString(2, account.name());
+            merge.setString(3, account.code());
+            merge.setLong(4, account.initialBalance());
+            merge.executeUpdate();
+        }
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id FROM account WHERE bank = ? AND name = ? AND code = ?")) {
+            select.setString(1, account.bank());
+            select.setString(2, account.name());
+            select.setString(3, account.code());
+            try (ResultSet rs = select.executeQuery()) {
+                rs.next();
+                id = rs.getInt(1);
+            }
+        }
+        accountIds.put(account, id);
+        return id;
+    }
+
+}
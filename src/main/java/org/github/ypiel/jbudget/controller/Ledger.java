@@ -0,0 +1,239 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.AccountCSVFormat;
+import org.github.ypiel.jbudget.model.BalanceIndex;
+import org.github.ypiel.jbudget.model.BudgetEvaluator;
+import org.github.ypiel.jbudget.model.ChartSeriesCache;
+import org.github.ypiel.jbudget.model.CategoryRuleEngine;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.RecurringForecaster;
+import org.github.ypiel.jbudget.model.SavedViews;
+import org.github.ypiel.jbudget.model.StatementBalance;
+
+/**
+ * Independent budget, e.g. of a household: its own accounts, store, repository, rules, views, budgets and statements. Ledgers
+ * share nothing, so they are loaded in parallel and switching between them does not reload anything.
+ */
+public class Ledger {
+
+    public static final String ACCOUNTS_FILE = "accounts.json";
+
+    private final String name;
+    // CSV files to import, in a folder per account
+    private final Path importFolder;
+    private final Path folder;
+    private final Map<String, Account> accounts = new LinkedHashMap<>();
+    private final Map<Account, AccountCSVFormat> csvFormats = new HashMap<>();
+    private final EntryStore store = new EntryStore();
+    private final EntryRepository repository;
+    private final AutosaveService autosave;
+    private final SavedViews savedViews;
+    private final RecurringForecaster forecaster;
+    private final BudgetEvaluator budgetEvaluator;
+    private final BalanceIndex balanceIndex;
+    private final ChartSeriesCache chartSeries;
+    private volatile List<StatementBalance> statements = List.of();
+    private volatile CategoryRuleEngine ruleEngine = CategoryRuleEngine.compile(List.of());
+    // The recent partitions are being loaded in the background, true until the first open
+    private volatile boolean loading = true;
+
+    /**
+     * @param folder            Folder of the saved entries, rules, views and budgets.
+     * @param accounts          The accounts, with the CSV layout of their bank files.
+     * @param h2                True to store the entries in the database instead of the JSON partitions.
+     * @param onAutosaveFailure Called by the autosave thread when a save fails.
+     */
+    public Ledger(final String name, final Path importFolder, final Path folder,
+                  final Map<Account, AccountCSVFormat> accounts, final boolean h2,
+                  final Consumer<IOException> onAutosaveFailure) {
+        this.name = name;
+        this.importFolder = importFolder;
+        this.folder = folder;
+        accounts.forEach((account, format) -> {
+            this.accounts.put(account.name(), account);
+            csvFormats.put(account, format);
+        });
+
+        Map<Account, Account> accountMap = accounts.keySet().stream()
+                .collect(Collectors.toMap(e -> e, e -> e));
+        UnaryOperator<Entry> onLoad = e -> e.withAccount(accountMap.get(e.account())).isNotNew(); // Only 1 instance for each account
+        repository = h2 ? new H2EntryRepository(folder, store, onLoad) : new EntryPartitionController(folder, store, onLoad);
+        autosave = new AutosaveService(store, repository, onAutosaveFailure);
+        savedViews = new SavedViews(store);
+        forecaster = new RecurringForecaster(store);
+        budgetEvaluator = new BudgetEvaluator(store);
+        balanceIndex = new BalanceIndex(store);
+        chartSeries = new ChartSeriesCache(store);
+    }
+
+    /**
+     * Loads the recent partitions, the store is emptied first. Can be called out of the FX thread.
+     */
+    public void open() throws IOException {
+        loading = true;
+        try {
+            store.clear();
+            // The clear is not notified
+            savedViews.refresh();
+            forecaster.refresh();
+            budgetEvaluator.refresh();
+            balanceIndex.refresh();
+            chartSeries.clear();
+            repository.open();
+        } finally {
+            loading = false;
+        }
+    }
+
+    /**
+     * Saves the pending changes, stops the autosave and closes the repository.
+     */
+    public void close() {
+        autosave.close();
+        try {
+            repository.close();
+        } catch (IOException e) {
+            System.err.printf("Failed to close the repository of %s: %s%n", folder, e.getMessage());
+        }
+    }
+
+    /**
+     * Aggregate of the ledger, maintained by the {@link BalanceIndex}: it is cheap to consolidate several ledgers.
+     *
+     * @return Balance in cents of each account, its initial balance plus its entries, labeled by account. The total
+     * of the years not loaded yet is labeled "Years not loaded".
+     */
+    public Map<String, Long> totals() {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Account account : accounts()) {
+            totals.put(account.toLabel(), balanceIndex.balance(account));
+        }
+        // Cold years may lie between loaded ones, after a search in an old year
+        long cold = repository.coldTotal();
+        if (cold != 0) {
+            totals.put("Years not loaded", cold);
+        }
+        return totals;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public Path importFolder() {
+        return importFolder;
+    }
+
+    public Path folder() {
+        return folder;
+    }
+
+    public Path rulesFile() {
+        return folder.resolve("rules.json");
+    }
+
+    public Path viewsFile() {
+        return folder.resolve("views.json");
+    }
+
+    public Path budgetsFile() {
+        return folder.resolve("budgets.json");
+    }
+
+    public Path statementsFile() {
+        return folder.resolve("statements.json");
+    }
+
+    /**
+     * @return The accounts, sorted.
+     */
+    public Set<Account> accounts() {
+        return new TreeSet<>(accounts.values());
+    }
+
+    /**
+     * @return The account with the given name, null if none.
+     */
+    public Account account(final String accountName) {
+        return accounts.get(accountName);
+    }
+
+    /**
+     * @return The CSV layout of the account, null if it has none.
+     */
+    public AccountCSVFormat csvFormat(final Account account) {
+        return csvFormats.get(account);
+    }
+
+    public EntryStore store() {
+        return store;
+    }
+
+    public EntryRepository repository() {
+        return repository;
+    }
+
+    public AutosaveService autosave() {
+        return autosave;
+    }
+
+    public SavedViews savedViews() {
+        return savedViews;
+    }
+
+    public RecurringForecaster forecaster() {
+        return forecaster;
+    }
+
+    public BudgetEvaluator budgetEvaluator() {
+        return budgetEvaluator;
+    }
+
+    public BalanceIndex balanceIndex() {
+        return balanceIndex;
+    }
+
+    public ChartSeriesCache chartSeries() {
+        return chartSeries;
+    }
+
+    public List<StatementBalance> statements() {
+        return statements;
+    }
+
+    public void setStatements(final List<StatementBalance> statements) {
+        this.statements = List.copyOf(statements);
+    }
+
+    public CategoryRuleEngine ruleEngine() {
+        return ruleEngine;
+    }
+
+    public void setRuleEngine(final CategoryRuleEngine ruleEngine) {
+        this.ruleEngine = ruleEngine;
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+}
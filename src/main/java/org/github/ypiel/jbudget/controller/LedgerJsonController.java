@@ -0,0 +1,23 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.model.LedgerAccount;
+
+public class LedgerJsonController {
+
+    private LedgerJsonController() {
+        // Singleton using static
+    }
+
+    public static List<LedgerAccount> loadAccountsFromFile(String filePath) throws IOException {
+        ObjectMapper objectMapper = EntryJsonController.objectMapper();
+        return objectMapper.readValue(new File(filePath),
+                objectMapper.getTypeFactory().constructCollectionType(List.class, LedgerAccount.class));
+    }
+
+}
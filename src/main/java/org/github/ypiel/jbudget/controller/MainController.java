@@ -1,7 +1,10 @@
 package org.github.ypiel.jbudget.controller;
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
 import java.net.URL;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
@@ -10,73 +13,99 @@ import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.YearMonth;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
-import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.scene.Cursor;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.LineChart;
-import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.ScrollPane.ScrollBarPolicy;
 import javafx.scene.control.SelectionMode;
+import javafx.scene.control.Tab;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.layout.HBox;
+import javafx.stage.FileChooser;
 
-import com.opencsv.CSVParserBuilder;
-import com.opencsv.CSVReader;
-import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvValidationException;
 
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.DedupEvent;
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ImportEvent;
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.SearchEvent;
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.TotalsEvent;
+import org.github.ypiel.jbudget.metrics.StartupMilestones;
 import org.github.ypiel.jbudget.model.Account;
 import org.github.ypiel.jbudget.model.AccountCSVFormat;
 import org.github.ypiel.jbudget.model.AccountTotal;
+import org.github.ypiel.jbudget.model.BalanceIndex;
+import org.github.ypiel.jbudget.model.Budget;
+import org.github.ypiel.jbudget.model.BudgetStatus;
+import org.github.ypiel.jbudget.model.CategoryRule;
+import org.github.ypiel.jbudget.model.ChartSeriesKey;
+import org.github.ypiel.jbudget.model.CategoryRuleEngine;
+import org.github.ypiel.jbudget.model.DuplicateDetector;
 import org.github.ypiel.jbudget.model.Entry;
 import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryColumns;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.Granularity;
+import org.github.ypiel.jbudget.model.LedgerAccount;
+import org.github.ypiel.jbudget.model.Money;
+import org.github.ypiel.jbudget.model.QueryPlan;
+import org.github.ypiel.jbudget.model.Reconciliation;
+import org.github.ypiel.jbudget.model.SavedView;
+import org.github.ypiel.jbudget.model.StatementBalance;
 
 public class MainController implements Initializable {
 
     private static final Path baseDirectory = Path.of("C:", "YIE", "tmp", "jbudget");
     private static final int maxUpdateEntriesWithoutConfirmation = 5;
     private static final Path OUTPUT_FOLDER = Path.of("C:", "YIE", "tmp", "jbudget", "output");
-    private static final Path OUTPUT_FILE = OUTPUT_FOLDER.resolve("jbudget.json");
-    private static final double ZOOM_FACTOR = 1.1;
+    // A folder per additional ledger, holding its accounts.json and the CSV files of its accounts
+    private static final Path LEDGERS_FOLDER = baseDirectory.resolve("ledgers");
+    private static final String DEFAULT_LEDGER = "Default";
+    // -Djbudget.storage=h2 to use the database instead of the JSON partitions
+    private static final String STORAGE_PROPERTY = "jbudget.storage";
+    private static final String STORAGE_H2 = "h2";
+    private static final int FORECAST_MONTHS = 12;
 
     private static final Account ALL_ACCOUNT = new Account("", "All accounts", "", 0);
 
@@ -103,6 +132,12 @@ public class MainController implements Initializable {
     @FXML
     public CheckBox cbOnlyDuplicates;
     @FXML
+    public ComboBox<SavedView> viewsComboBox;
+    @FXML
+    public TextField tfMinAmount;
+    @FXML
+    public TextField tfMaxAmount;
+    @FXML
     public ComboBox<Account> graphicsAccountComboBox;
     @FXML
     public BarChart<String, Double> accountBarChart;
@@ -117,7 +152,9 @@ public class MainController implements Initializable {
     @FXML
     public TableColumn<AccountTotal, String> accountTotalColumn;
     @FXML
-    public TableColumn<AccountTotal, Double> totalColumn;
+    public TableColumn<AccountTotal, Long> totalColumn;
+    @FXML
+    public ListView<BudgetStatus> budgetList;
     @FXML
     public ComboBox<Account> accountSearchComboBox;
     @FXML
@@ -128,6 +165,10 @@ public class MainController implements Initializable {
     private ComboBox<Account> accountComboBox;
     @FXML
     private Label statusLabel;
+    @FXML
+    private Button loadTransactionsButton;
+    @FXML
+    private Button exportButton;
 
     @FXML
     private TableColumn<Entry, Account> accountColumn;
@@ -140,42 +181,237 @@ public class MainController implements Initializable {
     @FXML
     private TableColumn<Entry, String> descriptionColumn;
     @FXML
-    private TableColumn<Entry, Double> debitColumn;
+    private TableColumn<Entry, Long> debitColumn;
     @FXML
-    private TableColumn<Entry, Double> creditColumn;
+    private TableColumn<Entry, Long> creditColumn;
     @FXML
     private TableColumn<Entry, EntryCategory> categoryColumn;
 
-    private final List<Entry> allEntries = new ArrayList<>();
-    private final Set<Account> accounts = new TreeSet<>();
-    private final Map<Account, AccountCSVFormat> csvFormatMap = new HashMap<>();
-
-    private boolean accountBarChartIsPanning = false;
-    private double accountBarChartLastPanX;
-    private double accountBarChartLastPanY;
+    private final List<Ledger> ledgers = new ArrayList<>();
+    // The ledger shown
+    private Ledger ledger;
+    private EntryIdList tableItems;
+    private final DuplicateDetector duplicateDetector = new DuplicateDetector();
+    private Task<Long> exportTask;
+    private QueryServer queryServer;
+    private boolean refreshingViews = false;
+    // Set by the thread modifying the store
+    private final AtomicBoolean viewsRefreshPending = new AtomicBoolean();
+    private final DiagnosticsController diagnosticsController = new DiagnosticsController(OUTPUT_FOLDER);
 
     private SoldGraphController soldGraphController;
+    private AccountBarChartController accountBarChartController;
+    private AccountLineChartController accountLineChartController;
+    private boolean balanceGraphStale = true;
+    // Number of ledgers being loaded in the background
+    private int loadingLedgers = 0;
 
     @FXML
-    private LineChart<String, Number> balance2Chart;
+    private LineChart<String, Double> balance2Chart;
+    @FXML
+    private Tab graphicsTab;
+    @FXML
+    private ComboBox<Ledger> ledgerComboBox;
+    @FXML
+    private DatePicker dpStatement;
+    @FXML
+    private TextField tfStatementBalance;
+    @FXML
+    private HBox ledgerBox;
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        initializeLedgers();
         initializeTableView();
-        initializeAccounts();
         initializeAccountCombobox();
         initializeSearchPanel();
         initializeUpdatePanel();
         initializeBarChartTab();
         initializeTotalTable();
+        transactionTable.sceneProperty().addListener((_, _, scene) -> {
+            if (scene != null) {
+                diagnosticsController.install(scene);
+            }
+        });
 
         statusLabel.setText("Ready - Select an account and load transactions");
 
-        loadFromJson();
+        for (Ledger l : ledgers) {
+            loadRules(l);
+            loadViews(l);
+            loadBudgets(l);
+            loadStatements(l);
+        }
+        refreshViews();
+        refreshBudgets();
+        startQueryServer();
 
         soldGraphController = new SoldGraphController(balance2Chart);
-        soldGraphController.setEntries(this.allEntries);
+        accountBarChartController = new AccountBarChartController(accountBarChart);
+        accountLineChartController = new AccountLineChartController(accountLineChart);
+        // Computed when the tab is shown, not for each change
+        graphicsTab.selectedProperty().addListener((_, _, selected) -> {
+            if (selected) {
+                refreshBalanceGraph();
+            }
+        });
         //soldGraphController.refreshData();
+
+        // The entries are loaded once the window is shown, see loadFromJson
+    }
+
+    private void refreshBalanceGraph() {
+        if (!balanceGraphStale || ledger.isLoading()) {
+            return;
+        }
+        balanceGraphStale = false;
+        Ledger l = ledger;
+        soldGraphController.setEntries(() -> {
+            // Older partitions are not loaded yet, their total is added to the initial balances. The years after the
+            // first loaded one are loaded so that no cold year lies between the entries of the graph
+            EntryRepository repository = l.repository();
+            repository.ensureLoaded(LocalDate.of(repository.firstLoadedYear(), 1, 1), null);
+            return new SoldGraphController.Input(l.store().entries(), l.balanceIndex().initialBalance(null)
+                    + repository.coldTotalBefore(repository.firstLoadedYear()), forecast(l, null));
+        });
+    }
+
+    /**
+     * Can be called out of the FX thread.
+     *
+     * @param account The account, null for all the accounts.
+     * @return The projected totals of the {@link #FORECAST_MONTHS} months following the last entry.
+     */
+    private static SortedMap<LocalDate, Long> forecast(final Ledger ledger, final Account account) {
+        EntryStore.Snapshot snapshot = ledger.store().snapshot();
+        if (snapshot.size() == 0) {
+            return new TreeMap<>();
+        }
+        LocalDate last = snapshot.get(snapshot.idAt(snapshot.size() - 1)).dateOperation();
+        return ledger.forecaster().forecast(account, YearMonth.from(last).plusMonths(1), FORECAST_MONTHS);
+    }
+
+    /**
+     * Creates the default ledger, then one per folder of {@link #LEDGERS_FOLDER} holding a {@link Ledger#ACCOUNTS_FILE}.
+     */
+    private void initializeLedgers() {
+        Map<String, AccountCSVFormat> csvFormats = csvFormats();
+        addLedger(DEFAULT_LEDGER, baseDirectory, OUTPUT_FOLDER, defaultAccounts(csvFormats.get("CCF")));
+
+        if (Files.isDirectory(LEDGERS_FOLDER)) {
+            try (DirectoryStream<Path> folders = Files.newDirectoryStream(LEDGERS_FOLDER,
+                    f -> Files.isRegularFile(f.resolve(Ledger.ACCOUNTS_FILE)))) {
+                for (Path folder : folders) {
+                    Map<Account, AccountCSVFormat> ledgerAccounts = new LinkedHashMap<>();
+                    for (LedgerAccount a : LedgerJsonController.loadAccountsFromFile(
+                            folder.resolve(Ledger.ACCOUNTS_FILE).toFile().getAbsolutePath())) {
+                        AccountCSVFormat format = csvFormats.get(a.csvFormat());
+                        if (format == null) {
+                            throw new IllegalArgumentException(String.format("Unknown CSV format %s for account %s.",
+                                    a.csvFormat(), a.account().toLabel()));
+                        }
+                        ledgerAccounts.put(a.account(), format);
+                    }
+                    addLedger(folder.getFileName().toString(), folder, folder.resolve("output"), ledgerAccounts);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        ledger = ledgers.getFirst();
+
+        ledgerComboBox.setItems(FXCollections.observableArrayList(ledgers));
+        ledgerComboBox.setValue(ledger);
+        // Nothing to choose from with a single ledger
+        ledgerBox.setVisible(ledgers.size() > 1);
+        ledgerBox.setManaged(ledgers.size() > 1);
+    }
+
+    private void addLedger(final String name, final Path importFolder, final Path folder,
+                           final Map<Account, AccountCSVFormat> ledgerAccounts) {
+        Ledger l = new Ledger(name, importFolder, folder, ledgerAccounts,
+                STORAGE_H2.equals(System.getProperty(STORAGE_PROPERTY)), e -> Platform.runLater(() ->
+                statusLabel.setText(String.format("Autosave of ledger %s failed, will retry on next change: %s",
+                        name, e.getMessage()))));
+        l.budgetEvaluator().addAlertListener(alerts -> alerts.forEach(a -> {
+            String message = ledgers.size() > 1 ? name + ": " + a.message() : a.message();
+            Platform.runLater(() -> statusLabel.setText(message));
+        }));
+        // Registered after the views: their counts are up to date, refreshed once for a batch of mutations
+        l.store().addListener(_ -> {
+            if (viewsRefreshPending.compareAndSet(false, true)) {
+                Platform.runLater(() -> {
+                    viewsRefreshPending.set(false);
+                    // Only the shown ledger is refreshed, the others are when they are selected
+                    onStoreChanged();
+                });
+            }
+        });
+        ledgers.add(l);
+    }
+
+    /**
+     * Shows another ledger, already loaded: nothing is read again.
+     */
+    @FXML
+    private void handleSelectLedger() {
+        Ledger selected = ledgerComboBox.getValue();
+        if (selected == null || selected == ledger) {
+            return;
+        }
+        ledger = selected;
+        tableItems = new EntryIdList(ledger.store());
+        transactionTable.setItems(tableItems);
+        showLedgerAccounts();
+        refreshViews();
+        refreshBudgets();
+        balanceGraphStale = true;
+        if (graphicsTab.isSelected()) {
+            refreshBalanceGraph();
+        }
+        handleSearch();
+    }
+
+    /**
+     * Fills the account selectors with the accounts of the shown ledger.
+     */
+    private void showLedgerAccounts() {
+        accountComboBox.setItems(FXCollections.observableArrayList(ledger.accounts()));
+        graphicsAccountComboBox.setItems(FXCollections.observableArrayList(ledger.accounts()));
+        List<Account> searchAccounts = new ArrayList<>(ledger.accounts());
+        searchAccounts.add(0, ALL_ACCOUNT);
+        accountSearchComboBox.setItems(FXCollections.observableArrayList(searchAccounts));
+        accountSearchComboBox.getSelectionModel().select(ALL_ACCOUNT);
+    }
+
+    /**
+     * Totals of all the ledgers, from the aggregates of each ledger: their entries are not merged.
+     */
+    @FXML
+    private void handleConsolidatedTotals() {
+        Map<String, Long> totals = new HashMap<>();
+        for (Ledger l : ledgers) {
+            l.totals().forEach((label, total) -> totals.put(l.name() + " / " + label, total));
+        }
+        displayTotals(totals);
+        statusLabel.setText(String.format("Consolidated totals of %d ledgers", ledgers.size()));
+    }
+
+    /**
+     * Called in the FX thread after a batch of store changes.
+     */
+    private void onStoreChanged() {
+        refreshViews();
+        refreshBudgets();
+        balanceGraphStale = true;
+        if (ledger.isLoading()) {
+            // Each partition is shown as soon as it is read
+            StartupMilestones.reached(StartupMilestones.FIRST_ENTRIES, ledger.store().size());
+            updateEntriesInTableView(String.format("Loading transactions from folder %s, %d loaded...",
+                    ledger.folder(), ledger.store().size()));
+        } else if (graphicsTab.isSelected()) {
+            refreshBalanceGraph();
+        }
     }
 
     private void initializeTotalTable() {
@@ -185,16 +421,10 @@ public class MainController implements Initializable {
         totalColumn.setCellValueFactory(cellData ->
                 new SimpleObjectProperty<>(cellData.getValue().total()));
 
-        totalColumn.setCellFactory(_ -> new TableCell<>() {
-            @Override
-            protected void updateItem(Double item, boolean empty) {
-                super.updateItem(item, empty);
-                setText((empty || item == null) ? null : "%.2f".formatted(item));
-            }
-        });
+        totalColumn.setCellFactory(_ -> new AmountCell<>());
     }
 
-    public void displayTotals(Map<String, Double> totalsMap) {
+    public void displayTotals(Map<String, Long> totalsMap) {
         List<AccountTotal> list = totalsMap.entrySet()
                 .stream()
                 .map(e -> new AccountTotal(e.getKey(), e.getValue()))
@@ -207,7 +437,7 @@ public class MainController implements Initializable {
                 .toList();
 
         list = new ArrayList<>(list);
-        double total = list.stream().mapToDouble(AccountTotal::total).sum();
+        long total = list.stream().mapToLong(AccountTotal::total).sum();
         list.add(new AccountTotal("Total", total));
         totalTable.setItems(FXCollections.observableArrayList(new ArrayList<>(list)));
     }
@@ -236,66 +466,10 @@ public class MainController implements Initializable {
                 }
             }
         });
-        graphicsAccountComboBox.setItems(FXCollections.observableArrayList(accounts));
-
-
-        accountBarChart.setOnScroll(event -> {
-            double deltaY = event.getDeltaY();
-
-            if (deltaY > 0) {
-                // Zoom in
-                accountBarChart.setScaleX(accountBarChart.getScaleX() * ZOOM_FACTOR);
-                accountBarChart.setScaleY(accountBarChart.getScaleY() * ZOOM_FACTOR);
-            } else {
-                // Zoom out
-                accountBarChart.setScaleX(accountBarChart.getScaleX() / ZOOM_FACTOR);
-                accountBarChart.setScaleY(accountBarChart.getScaleY() / ZOOM_FACTOR);
-            }
-
-            event.consume();
-        });
-
-        accountBarChart.setOnMouseReleased(event -> {
-            if (accountBarChartIsPanning) {
-                accountBarChartIsPanning = false;
-                accountBarChart.setCursor(Cursor.DEFAULT);
-                event.consume();
-            }
-        });
-
-        accountBarChart.setOnMousePressed(event -> {
-            if (event.isMiddleButtonDown()) {
-                accountBarChartIsPanning = true;
-                accountBarChartLastPanX = event.getSceneX();
-                accountBarChartLastPanY = event.getSceneY();
-                accountBarChart.setCursor(Cursor.MOVE);
-                event.consume();
-            }
-        });
-
-        accountBarChart.setOnMouseDragged(event -> {
-            if (accountBarChartIsPanning && event.isMiddleButtonDown()) {
-                double deltaX = event.getSceneX() - accountBarChartLastPanX;
-                double deltaY = event.getSceneY() - accountBarChartLastPanY;
-
-                // Apply translation
-                accountBarChart.setTranslateX(accountBarChart.getTranslateX() + deltaX);
-                accountBarChart.setTranslateY(accountBarChart.getTranslateY() + deltaY);
-
-                accountBarChartLastPanX = event.getSceneX();
-                accountBarChartLastPanY = event.getSceneY();
-                event.consume();
-            }
-        });
+        graphicsAccountComboBox.setItems(FXCollections.observableArrayList(ledger.accounts()));
 
-        // Optional: Reset on double-click
-        accountBarChart.setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
-                resetZoomAndPan(accountBarChart);
-                event.consume();
-            }
-        });
 
+        // Zoom and pan are handled by the AccountBarChartController, re-aggregating at each step
         barChartScrollPane.setPannable(true);
         barChartScrollPane.setHbarPolicy(ScrollBarPolicy.ALWAYS);
         barChartScrollPane.setVbarPolicy(ScrollBarPolicy.ALWAYS);
@@ -304,17 +478,14 @@ public class MainController implements Initializable {
 
     }
 
-    public void resetZoomAndPan(final XYChart chart) {
-        chart.setScaleX(1.0);
-        chart.setScaleY(1.0);
-        chart.setTranslateX(0);
-        chart.setTranslateY(0);
-    }
-
     private void initializeSearchPanel() {
         dateRangeBox.managedProperty().bind(dateRangeBox.visibleProperty());
         dateRangeBox.visibleProperty().bind(cbDateRange.selectedProperty());
 
+        // Default range on the partitions loaded at startup, older ones are loaded when a search reaches them
+        cbDateRange.setSelected(true);
+        dpFrom.setValue(LocalDate.now().minusYears(EntryPartitionController.RECENT_YEARS - 1).withDayOfYear(1));
+
         cbCategory.getItems().setAll(EntryCategory.values());
         cbCategory.getSelectionModel().select(EntryCategory.ALL);
 
@@ -342,9 +513,33 @@ public class MainController implements Initializable {
             }
         });
 
-        List<Account> searchAccounts = new ArrayList<>(accounts);
+        List<Account> searchAccounts = new ArrayList<>(ledger.accounts());
         searchAccounts.add(0, ALL_ACCOUNT);
         accountSearchComboBox.setItems(FXCollections.observableArrayList(searchAccounts));
+
+        viewsComboBox.setCellFactory(lv -> new ListCell<SavedView>() {
+            @Override
+            protected void updateItem(SavedView view, boolean empty) {
+                super.updateItem(view, empty);
+                if (empty || view == null) {
+                    setText(null);
+                } else {
+                    setText(String.format("%s (%d, %s)", view.name(), view.count(), Money.format(view.total())));
+                }
+            }
+        });
+
+        viewsComboBox.setButtonCell(new ListCell<SavedView>() {
+            @Override
+            protected void updateItem(SavedView view, boolean empty) {
+                super.updateItem(view, empty);
+                if (empty || view == null) {
+                    setText(viewsComboBox.getPromptText());
+                } else {
+                    setText(String.format("%s (%d)", view.name(), view.count()));
+                }
+            }
+        });
     }
 
     private void initializeUpdatePanel() {
@@ -377,12 +572,17 @@ public class MainController implements Initializable {
             }
         });
 
-        accountComboBox.setItems(FXCollections.observableArrayList(accounts));
+        accountComboBox.setItems(FXCollections.observableArrayList(ledger.accounts()));
     }
 
     private void initializeTableView() {
         transactionTable.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
 
+        // Rows are fetched from the store only for the visible cells, sorting is done on the ids
+        tableItems = new EntryIdList(ledger.store());
+        transactionTable.setItems(tableItems);
+        transactionTable.setSortPolicy(table -> tableItems.sortIds(tableComparator()));
+
         accountColumn.setCellValueFactory(
                 cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().account())
         );
@@ -416,6 +616,8 @@ public class MainController implements Initializable {
         creditColumn.setCellValueFactory(
                 cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().credit())
         );
+        debitColumn.setCellFactory(_ -> new AmountCell<>());
+        creditColumn.setCellFactory(_ -> new AmountCell<>());
         categoryColumn.setCellValueFactory(
                 cellData -> new ReadOnlyObjectWrapper<>(cellData.getValue().category())
         );
@@ -456,46 +658,49 @@ public class MainController implements Initializable {
         });
     }
 
-    private void initializeAccounts() {
+    /**
+     * @return The known CSV layouts of the bank files, by name.
+     */
+    private static Map<String, AccountCSVFormat> csvFormats() {
         DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.FRENCH);
         symbols.setDecimalSeparator(',');
         DecimalFormat df = new DecimalFormat("#0.00", symbols);
         df.setParseBigDecimal(true);
 
-        // Initialize with some default accounts
-
         AccountCSVFormat ccfFormat = new AccountCSVFormat(0, 1, 2,
                 3, 4, "dd/MM/yyyy", "dd/MM/yyyy", df, ";");
+        return Map.of("CCF", ccfFormat);
+    }
+
+    private static Map<Account, AccountCSVFormat> defaultAccounts(final AccountCSVFormat ccfFormat) {
+        Map<Account, AccountCSVFormat> accounts = new LinkedHashMap<>();
 
-        Account ccfCheque1Perso = new Account("CCF", "CCF_CHEQUE1_YVES", "FR7618079442560281578504008", 0.00);
-        accounts.add(ccfCheque1Perso);
-        csvFormatMap.put(ccfCheque1Perso, ccfFormat);
+        Account ccfCheque1Perso = new Account("CCF", "CCF_CHEQUE1_YVES", "FR7618079442560281578504008", 0);
+        accounts.put(ccfCheque1Perso, ccfFormat);
 
-        Account ccfCheque2Commun = new Account("CCF", "CCF_CHEQUE2_COMMUN", "FR7618079442560281577954115", 0.00);
-        accounts.add(ccfCheque2Commun);
-        csvFormatMap.put(ccfCheque2Commun, ccfFormat);
+        Account ccfCheque2Commun = new Account("CCF", "CCF_CHEQUE2_COMMUN", "FR7618079442560281577954115", 0);
+        accounts.put(ccfCheque2Commun, ccfFormat);
 
-        Account ccfLivDurableSolidaire = new Account("CCF", "CCF_LIV_DURABLE_SOLIDAIRE", "FR7618079442560281578505851", 0.00);
-        accounts.add(ccfLivDurableSolidaire);
-        csvFormatMap.put(ccfLivDurableSolidaire, ccfFormat);
+        Account ccfLivDurableSolidaire = new Account("CCF", "CCF_LIV_DURABLE_SOLIDAIRE", "FR7618079442560281578505851", 0);
+        accounts.put(ccfLivDurableSolidaire, ccfFormat);
+        return accounts;
     }
 
     @FXML
     private void handleSwitchADuplicate() {
-        ObservableList<Entry> entries = transactionTable.getSelectionModel().getSelectedItems();
-        if (entries.size() > maxUpdateEntriesWithoutConfirmation) {
-            boolean confirmation = askConfirmation("Confirmation", "You are about to switch duplicate tag for several entries at once: " + entries.size() + " . Do you want to proceed?");
+        int[] ids = tableItems.idsAt(transactionTable.getSelectionModel().getSelectedIndices());
+        if (ids.length > maxUpdateEntriesWithoutConfirmation) {
+            boolean confirmation = askConfirmation("Confirmation", "You are about to switch duplicate tag for several entries at once: " + ids.length + " . Do you want to proceed?");
             if (!confirmation) {
                 return;
             }
         }
 
-        entries.stream().forEach(e -> {
-            allEntries.remove(e);
-            allEntries.add(e.duplicate() ? e.isNotDuplicate() : e.isDuplicate());
-        });
+        EntryStore store = ledger.store();
+        store.checkpoint(String.format("Switch duplicate of %d transactions", ids.length));
+        store.update(ids, e -> e.duplicate() ? e.isNotDuplicate() : e.isDuplicate());
 
-        updateEntriesInTableView(String.format("Validation of %d transactions", entries.size()));
+        updateEntriesInTableView(String.format("Validation of %d transactions", ids.length));
     }
 
     @FXML
@@ -504,89 +709,96 @@ public class MainController implements Initializable {
         final boolean forceDescription = cbForceDescription.isSelected();
         final EntryCategory category = cbCategorySetter.getSelectionModel().getSelectedItem();
 
-        Collection<Entry> updatedEntries = new ArrayList<>();
-        ObservableList<Entry> entries = transactionTable.getSelectionModel().getSelectedItems();
+        int[] ids = tableItems.idsAt(transactionTable.getSelectionModel().getSelectedIndices());
 
-        if (entries.size() <= 0) {
+        if (ids.length <= 0) {
             // If no selection, we update all visible entries
-            entries = transactionTable.getItems();
+            ids = tableItems.ids();
         }
 
-        if (entries.size() > maxUpdateEntriesWithoutConfirmation) {
-            boolean confirmation = askConfirmation("Confirmation", "You are about to update " + entries.size() + " transactions. Do you want to proceed?");
+        if (ids.length > maxUpdateEntriesWithoutConfirmation) {
+            boolean confirmation = askConfirmation("Confirmation", "You are about to update " + ids.length + " transactions. Do you want to proceed?");
             if (!confirmation) {
                 return;
             }
         }
 
-        for (Entry e : entries) {
-
-            Entry initialEntry = e; // Keep a reference to the initial entry for debugging
-
+        EntryStore store = ledger.store();
+        store.checkpoint(String.format("Update of %d transactions", ids.length));
+        store.update(ids, e -> {
             if (!description.isEmpty() && (forceDescription || e.description().isEmpty())) {
                 e = e.withDescription(description);
             }
             if (category != EntryCategory.ALL) {
                 e = e.withCategory(category);
             }
+            return e;
+        });
 
-            updatedEntries.add(e);
-        }
-
-        allEntries.removeAll(entries);
-        allEntries.addAll(updatedEntries);
         handleSearch();
     }
 
     @FXML
-    private void handleSearch() {
-        String searchLabel = tfSearchLabel.getText().trim();
-        EntryCategory category = cbCategory.getSelectionModel().getSelectedItem();
-        LocalDate fromDate = dpFrom.getValue();
-        LocalDate toDate = dpTo.getValue();
-        Account account = accountSearchComboBox.getSelectionModel().getSelectedItem();
-        boolean onlyNew = cbOnlyNew.isSelected();
-        boolean onlyDuplicate = cbOnlyDuplicates.isSelected();
-
-        Stream<Entry> entryStream = this.allEntries.stream();
-
-        if (account != null && account != ALL_ACCOUNT) {
-            entryStream = entryStream.filter(e -> account.equals(e.account()));
-        }
+    private void handleApplyRules() {
+        loadRules(ledger);
 
-        if (!searchLabel.isEmpty()) {
-            entryStream = entryStream.filter(e -> e.label().toLowerCase().contains(searchLabel.toLowerCase()));
-        }
+        EntryStore store = ledger.store();
+        CategoryRuleEngine ruleEngine = ledger.ruleEngine();
+        store.checkpoint("Categorization rules");
+        int nbCategorized = store.update(store.ids(), ruleEngine::categorize);
 
-        if (category != EntryCategory.ALL) {
-            entryStream = entryStream.filter(e -> category == e.category());
-        }
+        updateEntriesInTableView(String.format("%d transactions categorized by %d rules",
+                nbCategorized, ruleEngine.rules().size()));
+    }
 
-        if (cbDateRange.isSelected()) {
-            if (fromDate != null) {
-                entryStream = entryStream.filter(e -> !e.dateOperation().isBefore(fromDate));
-            }
-            if (toDate != null) {
-                entryStream = entryStream.filter(e -> !e.dateOperation().isAfter(toDate));
-            }
-        }
+    @FXML
+    private void handleUndo() {
+        String description = ledger.store().undo();
+        updateEntriesInTableView(description == null ? "Nothing to undo" : "Undone: " + description);
+    }
 
-        if (onlyNew) {
-            entryStream = entryStream.filter(Entry::newEntry);
-        }
+    @FXML
+    private void handleRedo() {
+        String description = ledger.store().redo();
+        updateEntriesInTableView(description == null ? "Nothing to redo" : "Redone: " + description);
+    }
 
-        if (onlyDuplicate) {
-            entryStream = entryStream.filter(Entry::duplicate);
+    @FXML
+    private void handleSearch() {
+        // The search replaces the view in the table
+        selectView(null);
+        EntryQuery query = searchQuery();
+        if (query == null) {
+            return;
         }
 
-        List<Entry> filteredEntries = entryStream.toList();
+        SearchEvent event = new SearchEvent();
+        event.start();
+        whenLoaded(repository -> repository.ensureLoaded(query), () -> showSearchResult(query, event));
+    }
 
-        transactionTable.getItems().setAll(filteredEntries.stream().sorted().toList());
-        statusLabel.setText(String.format("Found %d / %d transactions matching criteria", filteredEntries.size(), allEntries.size()));
+    private void showSearchResult(final EntryQuery query, final SearchEvent event) {
+        EntryStore store = ledger.store();
+        QueryPlan plan = query.compile(store.snapshot().columns());
+        // Ids are returned in the entries natural order
+        int[] ids = plan.execute();
+
+        tableItems.setIds(ids, tableComparator());
+        event.storeSize = store.size();
+        event.resultSize = ids.length;
+        event.plan = plan.describe();
+        event.finish();
+        statusLabel.setText(ledger.isLoading()
+                ? String.format("Found %d / %d transactions matching criteria, loading...", ids.length, store.size())
+                : String.format("Found %d / %d transactions matching criteria", ids.length,
+                store.size() + ledger.repository().coldEntryCount()));
 
         updateTotals();
     }
 
+    /**
+     * Imports the CSV files of the selected account in a background thread, the table stays usable meanwhile.
+     */
     @FXML
     private void handleLoadTransactions() {
         Account selectedAccount = accountComboBox.getSelectionModel().getSelectedItem();
@@ -595,87 +807,305 @@ public class MainController implements Initializable {
             return;
         }
 
-        try {
-            Path accountPath = baseDirectory.resolve(selectedAccount.name());
-            Files.createDirectories(accountPath);
-
-            AccountCSVFormat format = csvFormatMap.get(selectedAccount);
-            if (format == null) {
-                showAlert("Wrong configuration",
-                        String.format("No CSV format for account %s.", selectedAccount.toLabel(), true));
-            }
-
-            //allEntries.clear();
-            final AtomicInteger nbAdded = new AtomicInteger();
-            //List<Entry> rejected = new ArrayList<>();
-            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(accountPath, "*.csv")) {
-                for (Path file : directoryStream) {
-                    List<Entry> tmpEntries = parseCSVFile(file, selectedAccount, format);
-                    tmpEntries.stream().forEach(e -> {
-                        allEntries.add(Entry.contains(allEntries, e) ? e.isDuplicate() : e);
-                        nbAdded.incrementAndGet();
-                    });
-                }
+        Ledger importLedger = ledger;
+        AccountCSVFormat format = importLedger.csvFormat(selectedAccount);
+        if (format == null) {
+            showAlert("Wrong configuration",
+                    String.format("No CSV format for account %s.", selectedAccount.toLabel()));
+            return;
+        }
+
+        Task<String> importTask = new Task<>() {
+            @Override
+            protected String call() throws Exception {
+                return importTransactions(importLedger, selectedAccount, format);
+            }
+        };
+        importTask.setOnSucceeded(_ -> {
+            loadTransactionsButton.setDisable(false);
+            updateEntriesInTableView(importTask.getValue());
+        });
+        importTask.setOnFailed(_ -> {
+            loadTransactionsButton.setDisable(false);
+            showAlert("Error", "Failed to load transactions: " + importTask.getException().getMessage());
+        });
+
+        loadTransactionsButton.setDisable(true);
+        statusLabel.setText(String.format("Loading transactions of %s...", selectedAccount.toLabel()));
+        Thread.ofVirtual().name("import").start(importTask);
+    }
+
+    /**
+     * Runs out of the FX thread: only the store, which is thread-safe, is modified. Synchronized, the query server may
+     * import at the same time as the load button.
+     *
+     * @return The status message.
+     */
+    private synchronized String importTransactions(final Ledger ledger, final Account account,
+                                                   final AccountCSVFormat format)
+            throws IOException, CsvValidationException {
+        EntryStore store = ledger.store();
+        Path accountPath = ledger.importFolder().resolve(account.name());
+        Files.createDirectories(accountPath);
+
+        List<Entry> imported = new ArrayList<>();
+        ImportEvent importEvent = new ImportEvent();
+        importEvent.account = account.name();
+        importEvent.start();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(accountPath, "*.csv")) {
+            for (Path file : directoryStream) {
+                imported.addAll(parseCSVFile(file, account, format, importEvent));
             }
+        }
+
+        if (!imported.isEmpty()) {
+            // The partitions of the new entries must be loaded to detect the duplicates
+            LocalDate first = imported.stream().map(Entry::dateOperation).min(LocalDate::compareTo).get();
+            LocalDate last = imported.stream().map(Entry::dateOperation).max(LocalDate::compareTo).get();
+            ledger.repository().ensureLoaded(first.minusDays(DuplicateDetector.DEFAULT_DATE_WINDOW_DAYS),
+                    last.plusDays(DuplicateDetector.DEFAULT_DATE_WINDOW_DAYS));
 
-            updateEntriesInTableView(String.format("%d transactions loaded", nbAdded.get()));
-        } catch (IOException | CsvValidationException e) {
-            showAlert("Error", "Failed to load transactions: " + e.getMessage());
+            store.checkpoint(String.format("Import of %d transactions in %s", imported.size(), account.toLabel()));
+            // Sorted and merged in the store as a single batch
+            store.addAll(ledger.ruleEngine().categorizeAll(imported));
         }
+
+        importEvent.finish();
+
+        // Scan the whole history, the new entries may duplicate any known one
+        DedupEvent dedupEvent = new DedupEvent();
+        dedupEvent.start();
+        EntryStore.Snapshot snapshot = store.snapshot();
+        int[] ids = snapshot.ids();
+        BitSet duplicates = duplicateDetector.detect(snapshot.get(ids));
+        store.update(duplicates.stream().map(i -> ids[i]).toArray(), Entry::isDuplicate);
+        dedupEvent.scanned = ids.length;
+        dedupEvent.duplicates = duplicates.cardinality();
+        dedupEvent.finish();
+
+        return String.format("%d transactions loaded, %d duplicates detected",
+                imported.size(), duplicates.cardinality());
     }
 
-    private List<Entry> parseCSVFile(Path file, Account account, AccountCSVFormat format)
+    private List<Entry> parseCSVFile(Path file, Account account, AccountCSVFormat format, ImportEvent event)
             throws IOException, CsvValidationException {
 
         if (file.getFileName().toString().startsWith("ok_")) {
             return Collections.emptyList();
         }
+        event.files++;
 
-        List<Entry> entries = new ArrayList<>();
-
-        try (CSVReader reader = new CSVReaderBuilder(new FileReader(file.toFile()))
-                .withSkipLines(1) // Skip header
-                .withCSVParser(new CSVParserBuilder()
-                        .withSeparator(format.delimiter().charAt(0))
-                        .build())
-                .build()) {
+        List<Entry> entries;
+        try (Reader reader = new FileReader(file.toFile())) {
+            entries = EntryCsvParser.parse(reader, account, format, event);
+        }
 
-            String[] line;
-            while ((line = reader.readNext()) != null) {
-                try {
-                    LocalDate dateOperation = LocalDate.parse(line[format.dateOperationIndex()],
-                            DateTimeFormatter.ofPattern(format.dateOperationFormat()));
-                    LocalDate dateValue = LocalDate.parse(line[format.dateValueIndex()],
-                            DateTimeFormatter.ofPattern(format.dateValueFormat()));
+        Path doneFile = file.resolveSibling("ok_" + file.getFileName().toString());
+        Files.move(file, doneFile);
 
-                    String label = line[format.labelIndex()].trim();
+        return entries.stream().toList();
+    }
 
-                    String sDebit = line[format.debitIndex()].trim();
-                    double debit = 0;
-                    if (!sDebit.isEmpty()) {
-                        debit = format.decimalFormat().parse(sDebit).doubleValue();
-                    }
+    /**
+     * @return The query of the search panel, null if a criterion is wrong.
+     */
+    private EntryQuery searchQuery() {
+        Account account = accountSearchComboBox.getSelectionModel().getSelectedItem();
+        try {
+            return new EntryQuery(account == ALL_ACCOUNT ? null : account,
+                    tfSearchLabel.getText(),
+                    cbCategory.getSelectionModel().getSelectedItem(),
+                    cbDateRange.isSelected() ? dpFrom.getValue() : null,
+                    cbDateRange.isSelected() ? dpTo.getValue() : null,
+                    cbOnlyNew.isSelected(),
+                    cbOnlyDuplicates.isSelected(),
+                    parseAmount(tfMinAmount.getText()),
+                    parseAmount(tfMaxAmount.getText()));
+        } catch (NumberFormatException e) {
+            showAlert("Wrong amount", "Amounts must be decimal numbers, e.g. -12.50");
+            return null;
+        }
+    }
 
-                    String sCredit = line[format.creditIndex()].trim();
-                    double credit = 0;
-                    if (!sCredit.isEmpty()) {
-                        credit = format.decimalFormat().parse(sCredit).doubleValue();
-                    }
+    @FXML
+    private void handleShowView() {
+        SavedView view = viewsComboBox.getValue();
+        if (view == null || refreshingViews) {
+            return;
+        }
+        whenLoaded(repository -> repository.ensureLoaded(view.query()), () -> {
+            // Another view may have been selected meanwhile
+            if (viewsComboBox.getValue() != view) {
+                return;
+            }
+            tableItems.setIds(view.ids(ledger.store().snapshot()), tableComparator());
+            statusLabel.setText(String.format("View %s: %d transactions", view.name(), view.count()));
+            updateTotals();
+        });
+    }
 
-                    entries.add(new Entry(account, dateOperation, dateValue, label,
-                            "", debit, credit, EntryCategory.MISC, true, false));
+    /**
+     * Exports the selected view, or the search result, in a background thread. The rows are streamed from a snapshot
+     * of the store: changes done during the export are not exported.
+     */
+    @FXML
+    private void handleExport() {
+        SavedView view = viewsComboBox.getValue();
+        EntryQuery query = view != null ? view.query() : searchQuery();
+        if (query == null) {
+            return;
+        }
 
-                } catch (Exception e) {
-                    System.err.println("Error parsing line: " + Arrays.toString(line));
-                    System.err.println("Error: " + e.getMessage());
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export transactions");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*." + EntryExporter.Format.CSV.extension()),
+                new FileChooser.ExtensionFilter("JSON Lines", "*." + EntryExporter.Format.JSONL.extension()));
+        chooser.setInitialFileName((view != null ? view.name() : "transactions") + "."
+                + EntryExporter.Format.CSV.extension());
+        if (Files.isDirectory(ledger.folder())) {
+            chooser.setInitialDirectory(ledger.folder().toFile());
+        }
+        File file = chooser.showSaveDialog(transactionTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        Path path = file.toPath();
+        EntryExporter.Format format = EntryExporter.Format.of(path);
+        // Layout of the searched account, all the accounts otherwise share the layout of the first one
+        Account layoutAccount = query.account() != null ? query.account()
+                : ledger.accounts().stream().findFirst().orElse(null);
+        AccountCSVFormat accountFormat = layoutAccount == null ? null : ledger.csvFormat(layoutAccount);
+        AccountCSVFormat csvFormat = accountFormat != null ? accountFormat : EntryExporter.DEFAULT_CSV_FORMAT;
+
+        Ledger exportLedger = ledger;
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws IOException {
+                // Skipped during the startup loading, the entries already loaded are exported
+                if (!exportLedger.isLoading()) {
+                    exportLedger.repository().ensureLoaded(query);
                 }
+                EntryStore.Snapshot snapshot = exportLedger.store().snapshot();
+                QueryPlan plan = query.compile(snapshot.columns());
+                return EntryExporter.export(path, format, csvFormat, snapshot, plan, (rows, scanned, scanSize) -> {
+                    updateProgress(scanned, scanSize);
+                    updateMessage(String.format("Exporting to %s, %d transactions...", path.getFileName(), rows));
+                }, this::isCancelled);
             }
+        };
+        task.messageProperty().addListener((_, _, message) -> statusLabel.setText(message));
+        task.setOnSucceeded(_ -> {
+            exportTask = null;
+            exportButton.setDisable(false);
+            statusLabel.setText(String.format("Exported %d transactions to %s", task.getValue(), path));
+        });
+        task.setOnFailed(_ -> {
+            exportTask = null;
+            exportButton.setDisable(false);
+            showAlert("Error", "Failed to export transactions: " + task.getException().getMessage());
+        });
+
+        exportTask = task;
+        exportButton.setDisable(true);
+        statusLabel.setText(String.format("Exporting to %s...", path.getFileName()));
+        Thread.ofVirtual().name("export").start(task);
+    }
+
+    @FXML
+    private void handleSaveView() {
+        EntryQuery query = searchQuery();
+        if (query == null) {
+            return;
+        }
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Save view");
+        dialog.setHeaderText(null);
+        dialog.setContentText("Name of the view:");
+        Optional<String> name = dialog.showAndWait().map(String::trim).filter(n -> !n.isEmpty());
+        if (name.isEmpty()) {
+            return;
         }
+        whenLoaded(repository -> repository.ensureLoaded(query), () -> {
+            SavedView view = ledger.savedViews().add(name.get(), query);
+            saveViews();
+            refreshViews();
+            selectView(view);
+            handleShowView();
+        });
+    }
 
-        Path doneFile = file.resolveSibling("ok_" + file.getFileName().toString());
-        Files.move(file, doneFile);
+    @FXML
+    private void handleDeleteView() {
+        SavedView view = viewsComboBox.getValue();
+        if (view == null) {
+            return;
+        }
+        ledger.savedViews().remove(view);
+        saveViews();
+        selectView(null);
+        refreshViews();
+    }
 
-        return entries.stream().toList();
+    private void loadViews(final Ledger l) {
+        try {
+            if (!Files.isRegularFile(l.viewsFile())) {
+                return;
+            }
+            SavedViewJsonController.loadViewsFromFile(l.viewsFile().toFile().getAbsolutePath()).forEach((name, q) -> {
+                if (q.account() == null) {
+                    l.savedViews().add(name, q);
+                    return;
+                }
+                // Only 1 instance for each account, looked up by name: a null account would select all of them
+                Account account = l.account(q.account().name());
+                if (account == null) {
+                    System.err.printf("View '%s' ignored, unknown account %s.%n", name, q.account().name());
+                    return;
+                }
+                l.savedViews().add(name, new EntryQuery(account, q.label(), q.category(), q.from(), q.to(),
+                        q.onlyNew(), q.onlyDuplicates(), q.minAmount(), q.maxAmount()));
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void saveViews() {
+        try {
+            Files.createDirectories(ledger.folder());
+            SavedViewJsonController.saveViewsToFile(ledger.savedViews().views(),
+                    ledger.viewsFile().toFile().getAbsolutePath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Shows the views with their current count and total, keeping the selected one.
+     */
+    private void refreshViews() {
+        SavedView selected = viewsComboBox.getValue();
+        refreshingViews = true;
+        viewsComboBox.getItems().setAll(ledger.savedViews().views());
+        viewsComboBox.setValue(selected != null && viewsComboBox.getItems().contains(selected) ? selected : null);
+        refreshingViews = false;
+    }
+
+    private void selectView(final SavedView view) {
+        refreshingViews = true;
+        viewsComboBox.setValue(view);
+        refreshingViews = false;
+    }
+
+    /**
+     * @return The amount in cents, null for a blank text.
+     */
+    private static Long parseAmount(final String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        return Money.toCents(new BigDecimal(text.trim().replace(',', '.')));
     }
 
     private void showAlert(String title, String message) {
@@ -713,74 +1143,361 @@ public class MainController implements Initializable {
         super();
     }
 
+    /**
+     * The changes are saved in the background anyway, this only skips the quiet period.
+     */
     public void handleSave() {
+        ledgers.forEach(l -> l.autosave().saveNow());
+    }
+
+    /**
+     * Saves the pending changes before the application exits.
+     */
+    public void shutdown() {
+        if (exportTask != null) {
+            // The previous file is kept
+            exportTask.cancel();
+        }
+        if (queryServer != null) {
+            queryServer.close();
+        }
+        ledgers.forEach(Ledger::close);
+    }
+
+    /**
+     * Loads the recent partitions of each ledger in its own background thread, the most recent first: the partitions
+     * of the shown ledger are shown in the table as soon as they are read.
+     */
+    public void loadFromJson() {
+        if (loadingLedgers > 0) {
+            return;
+        }
+        loadingLedgers = ledgers.size();
+        statusLabel.setText(String.format("Loading transactions from folder %s...", ledger.folder()));
+
+        for (Ledger l : ledgers) {
+            Task<Void> loadTask = new Task<>() {
+                @Override
+                protected Void call() throws IOException {
+                    l.open();
+                    return null;
+                }
+            };
+            loadTask.setOnSucceeded(_ -> {
+                ledgerLoaded();
+                if (l != ledger) {
+                    return;
+                }
+                balanceGraphStale = true;
+                updateEntriesInTableView(String.format("Loaded %d transactions from folder %s, %d older not loaded yet",
+                        l.store().size(), l.folder(), l.repository().coldEntryCount()));
+                if (graphicsTab.isSelected()) {
+                    refreshBalanceGraph();
+                }
+            });
+            loadTask.setOnFailed(_ -> {
+                ledgerLoaded();
+                showAlert("Error", String.format("Failed to load transactions of ledger %s: %s", l.name(),
+                        loadTask.getException().getMessage()));
+            });
+            Thread.ofVirtual().name("load-" + l.name()).start(loadTask);
+        }
+    }
+
+    private void ledgerLoaded() {
+        loadingLedgers--;
+        if (loadingLedgers == 0) {
+            StartupMilestones.reached(StartupMilestones.LOADED,
+                    ledgers.stream().mapToInt(l -> l.store().size()).sum());
+        }
+    }
+
+    /**
+     * Loading of partitions, run out of the FX thread.
+     */
+    @FunctionalInterface
+    private interface PartitionLoad {
+        void load(EntryRepository repository) throws IOException;
+    }
+
+    /**
+     * Loads the partitions in a background thread if needed, then runs the action in the FX thread unless another
+     * ledger has been selected meanwhile. Skipped during {@link #loadFromJson()}: the action runs at once with the
+     * entries already loaded.
+     */
+    private void whenLoaded(final PartitionLoad load, final Runnable action) {
+        Ledger l = ledger;
+        if (l.isLoading() || l.repository().isFullyLoaded()) {
+            action.run();
+            return;
+        }
+        Task<Void> loadTask = new Task<>() {
+            @Override
+            protected Void call() throws IOException {
+                load.load(l.repository());
+                return null;
+            }
+        };
+        loadTask.setOnSucceeded(_ -> {
+            if (l == ledger) {
+                action.run();
+            }
+        });
+        loadTask.setOnFailed(_ -> showAlert("Error", "Failed to load transactions: "
+                + loadTask.getException().getMessage()));
+        statusLabel.setText("Loading older transactions...");
+        Thread.ofVirtual().name("partition-load").start(loadTask);
+    }
+
+    private void loadRules(final Ledger l) {
         try {
-            if (!Files.isDirectory(OUTPUT_FOLDER)) {
-                Files.createDirectories(OUTPUT_FOLDER);
+            if (!Files.isRegularFile(l.rulesFile())) {
+                Files.createDirectories(l.folder());
+                Files.writeString(l.rulesFile(), "[]", StandardOpenOption.CREATE_NEW);
+            }
+
+            List<CategoryRule> rules = new ArrayList<>();
+            for (CategoryRule r : CategoryRuleJsonController.loadRulesFromFile(l.rulesFile().toFile().getAbsolutePath())) {
+                if (r.account() == null) {
+                    rules.add(r);
+                    continue;
+                }
+                // Only 1 instance for each account, looked up by name: a null account would apply the rule to all
+                Account account = l.account(r.account().name());
+                if (account == null) {
+                    System.err.printf("Rule '%s' ignored, unknown account %s.%n", r.labelPattern(), r.account().name());
+                    continue;
+                }
+                rules.add(new CategoryRule(r.labelPattern(), account, r.minAmount(), r.maxAmount(), r.category(),
+                        r.description()));
             }
-            EntryJsonController.saveEntriesToFile(
-                    this.allEntries,
-                    OUTPUT_FILE.toFile().getAbsolutePath());
+            l.setRuleEngine(CategoryRuleEngine.compile(rules));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void loadFromJson() {
+    /**
+     * Starts the {@link QueryServer} if its port is configured.
+     */
+    private void startQueryServer() {
+        String port = System.getProperty(QueryServer.PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        try {
+            QueryServer.Importer importer = (l, account) -> {
+                AccountCSVFormat format = l.csvFormat(account);
+                if (format == null) {
+                    throw new IllegalStateException(String.format("No CSV format for account %s.", account.toLabel()));
+                }
+                String message = importTransactions(l, account, format);
+                Platform.runLater(() -> {
+                    if (l == ledger) {
+                        updateEntriesInTableView(message);
+                    }
+                });
+                return message;
+            };
+            queryServer = new QueryServer(Integer.parseInt(port), System.getProperty(QueryServer.TOKEN_PROPERTY),
+                    ledgers, importer);
+            queryServer.start();
+            System.out.println("Query server listening on http://localhost:" + queryServer.port()
+                    + ", token " + queryServer.token());
+        } catch (IOException | NumberFormatException e) {
+            // The application is usable without it
+            System.err.println("Query server not started: " + e.getMessage());
+        }
+    }
+
+    private void loadBudgets(final Ledger l) {
+        try {
+            if (!Files.isRegularFile(l.budgetsFile())) {
+                Files.createDirectories(l.folder());
+                Files.writeString(l.budgetsFile(), "[]", StandardOpenOption.CREATE_NEW);
+            }
+
+            List<Budget> budgets = new ArrayList<>();
+            for (Budget b : BudgetJsonController.loadBudgetsFromFile(l.budgetsFile().toFile().getAbsolutePath())) {
+                if (b.account() == null) {
+                    budgets.add(b);
+                    continue;
+                }
+                // Only 1 instance for each account, looked up by name: a null account would count all of them
+                Account account = l.account(b.account().name());
+                if (account == null) {
+                    System.err.printf("Budget of %s ignored, unknown account %s.%n", b.category(), b.account().name());
+                    continue;
+                }
+                budgets.add(new Budget(b.category(), account, b.period(), b.limit(), b.thresholds()));
+            }
+            l.budgetEvaluator().setBudgets(budgets);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void loadStatements(final Ledger l) {
         try {
+            if (!Files.isRegularFile(l.statementsFile())) {
+                Files.createDirectories(l.folder());
+                Files.writeString(l.statementsFile(), "[]", StandardOpenOption.CREATE_NEW);
+            }
 
-            if (!Files.isRegularFile(OUTPUT_FILE)) {
-                Files.writeString(OUTPUT_FILE, "[]", StandardOpenOption.CREATE_NEW);
+            List<StatementBalance> statements = new ArrayList<>();
+            for (StatementBalance s : StatementJsonController.loadStatementsFromFile(
+                    l.statementsFile().toFile().getAbsolutePath())) {
+                // Only 1 instance for each account
+                Account account = l.account(s.account().name());
+                if (account == null) {
+                    System.err.printf("Statement of %s ignored, unknown account %s.%n", s.date(), s.account().name());
+                    continue;
+                }
+                statements.add(new StatementBalance(account, s.date(), s.balance()));
             }
+            l.setStatements(statements);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-            Map<Account, Account> accountMap = accounts.stream()
-                    .collect(Collectors.toMap(e -> e, e -> e));
+    /**
+     * Records the balance of a bank statement for the selected account, and compares it to the computed one.
+     */
+    @FXML
+    private void handleReconcile() {
+        Account account = graphicsAccountComboBox.getValue();
+        LocalDate date = dpStatement.getValue();
+        Long balance;
+        try {
+            balance = parseAmount(tfStatementBalance.getText());
+        } catch (NumberFormatException e) {
+            showAlert("Wrong amount", "Amounts must be decimal numbers, e.g. -12.50");
+            return;
+        }
+        if (account == null || date == null || balance == null) {
+            showAlert("Warning", "Please select an account, the date and the balance of the statement");
+            return;
+        }
+        if (ledger.isLoading()) {
+            showAlert("Warning", "Transactions are still loading, please retry once loaded");
+            return;
+        }
+        // The balance at a date depends on all the previous entries
+        whenLoaded(repository -> repository.ensureLoaded(null, date), () -> reconcile(account, date, balance));
+    }
 
-            List<Entry> entries = EntryJsonController.loadEntriesFromFile(OUTPUT_FILE.toFile().getAbsolutePath());
-            allEntries.clear();
-            allEntries.addAll(entries.stream()
-                    .map(e -> e.withAccount(accountMap.get(e.account())).isNotNew()).sorted().toList()); // Only 1 instance for each account
-            updateEntriesInTableView(String.format("Loaded %d transactions from file %s",
-                    allEntries.size(), OUTPUT_FILE));
+    private void reconcile(final Account account, final LocalDate date, final long balance) {
+        // A single statement per account and day, the last one entered wins
+        List<StatementBalance> statements = new ArrayList<>(ledger.statements().stream()
+                .filter(s -> !(s.account().equals(account) && s.date().equals(date)))
+                .toList());
+        statements.add(new StatementBalance(account, date, balance));
+        statements.sort(Comparator.comparing(StatementBalance::date));
+        ledger.setStatements(statements);
+        try {
+            StatementJsonController.saveStatementsToFile(statements, ledger.statementsFile().toFile().getAbsolutePath());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+
+        List<StatementBalance> accountStatements = statements.stream()
+                .filter(s -> s.account().equals(account))
+                .toList();
+        BalanceIndex balanceIndex = ledger.balanceIndex();
+        Reconciliation reconciliation = null;
+        LocalDate previous = null;
+        for (Reconciliation r : balanceIndex.reconcile(accountStatements)) {
+            if (r.statement().date().equals(date)) {
+                reconciliation = r;
+                break;
+            }
+            previous = r.statement().date();
+        }
+        // Lowest balance since the previous statement, an overdraft missed by the statements
+        BalanceIndex.Range range = balanceIndex.range(account, previous == null ? date : previous.plusDays(1), date);
+        statusLabel.setText(String.format("%s, lowest balance %s%s", reconciliation, Money.format(range.min()),
+                previous == null ? "" : " since " + previous));
+        tfStatementBalance.setText("");
+    }
+
+    /**
+     * Shows the spent amount of the budgets for the current period.
+     */
+    private void refreshBudgets() {
+        budgetList.getItems().setAll(ledger.budgetEvaluator().status(LocalDate.now()));
     }
 
     private void updateEntriesInTableView(String message) {
-        Collections.sort(allEntries);
-        transactionTable.getItems().setAll(allEntries);
         statusLabel.setText(message);
-        handleSearch();
+        if (viewsComboBox.getValue() != null) {
+            handleShowView();
+        } else {
+            handleSearch();
+        }
+    }
+
+    private Comparator<Entry> tableComparator() {
+        return transactionTable.getSortOrder().isEmpty() ? null : transactionTable.getComparator();
     }
 
     private void updateTotals() {
-        ObservableList<Entry> entries = transactionTable.getItems();
-        Map<String, Double> collect = entries.stream()
-                .filter(e -> !e.duplicate()) // Duplicates are ignored from totals
-                .collect(
-                        Collectors.groupingBy(Entry::account,
-                                TreeMap::new,
-                                Collectors.summingDouble(Entry::value)))
-                .entrySet().stream().collect(Collectors.toMap(e -> e.getKey().toLabel(), e -> e.getValue()));
+        TotalsEvent event = new TotalsEvent();
+        event.start();
+        // Duplicates are ignored from totals, their amount is 0 in the columns
+        EntryColumns columns = ledger.store().snapshot().columns();
+        int[] positions = columns.positions(tableItems.ids());
+        Map<String, Long> collect = columns.totalsByAccount(positions).entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().toLabel(), Map.Entry::getValue));
+        event.entries = positions.length;
+        event.accounts = collect.size();
+        event.finish();
         displayTotals(collect);
     }
 
 
     public void handleGenerateAccountBarGraph() {
         Account selectedAccount = graphicsAccountComboBox.getSelectionModel().getSelectedItem();
-        AccountBarChartController accountBarChartController = new AccountBarChartController(allEntries, this.accountBarChart);
-        accountBarChartController.computeGraph();
-
-        AccountLineChartController accountLineChartController = new AccountLineChartController(allEntries, this.accountLineChart);
-        accountLineChartController.computeGraph();
+        Ledger l = ledger;
+        // Both charts are computed in the background, the previous computations are cancelled
+        accountBarChartController.computeGraph(() -> chartSeries(l, selectedAccount, Granularity.DAY));
+        accountLineChartController.computeGraph(() -> new AccountLineChartController.Input(
+                l.balanceIndex().initialBalance(selectedAccount), chartSeries(l, selectedAccount, Granularity.MONTH),
+                forecast(l, selectedAccount)));
+    }
 
+    /**
+     * Returns the series, computed once until an entry of the account changes, plus the totals of the years not
+     * loaded when the repository computes them, otherwise all the years are loaded first. Called out of the FX thread.
+     *
+     * @param account The account, null for all the accounts.
+     */
+    private static SortedMap<LocalDate, Long> chartSeries(final Ledger ledger, final Account account,
+                                                          final Granularity granularity) throws IOException {
+        ChartSeriesKey key = ChartSeriesKey.of(account, granularity);
+        if (ledger.isLoading()) {
+            return ledger.chartSeries().series(key);
+        }
+        EntryRepository.ColdSeries cold = ledger.repository().coldSeries(account, granularity);
+        if (cold == null) {
+            ledger.repository().ensureAllLoaded();
+            return ledger.chartSeries().series(key);
+        }
+        SortedMap<LocalDate, Long> loaded = ledger.chartSeries().series(key, cold.snapshot());
+        if (cold.totals().isEmpty()) {
+            return loaded;
+        }
+        SortedMap<LocalDate, Long> series = new TreeMap<>(loaded);
+        cold.totals().forEach((end, total) -> series.merge(end, total, Long::sum));
+        return series;
     }
 
     public void handleDelete() {
         if ("DELETE".equals(tfDelete.getText())) {
-            List<Entry> toRemove = transactionTable.getSelectionModel().getSelectedItems().stream().toList();
-            allEntries.removeAll(toRemove);
+            int[] toRemove = tableItems.idsAt(transactionTable.getSelectionModel().getSelectedIndices());
+            EntryStore store = ledger.store();
+            store.checkpoint(String.format("Delete of %d transactions", toRemove.length));
+            store.removeAll(toRemove);
             handleSearch();
         }
 
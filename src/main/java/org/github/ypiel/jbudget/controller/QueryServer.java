@@ -0,0 +1,400 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.RequestEvent;
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryColumns;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.Money;
+import org.github.ypiel.jbudget.model.QueryPlan;
+
+/**
+ * HTTP API to query the entries from scripts on the same machine, bound to the loopback address only.
+ * <ul>
+ *     <li>GET /entries: the matching entries, as a JSON array streamed while the query runs.</li>
+ *     <li>GET /totals: the total of the matching entries of each account.</li>
+ *     <li>GET /monthly: the total and count of the matching entries of each month.</li>
+ *     <li>POST /import?account=NAME: imports the CSV files of the account, like the load button.</li>
+ * </ul>
+ * The GET criteria are the ones of the search panel, all optional: account (name), label, category, from and to
+ * (yyyy-MM-dd), onlyNew, onlyDuplicates, minAmount and maxAmount (e.g. -12.50). Duplicates are excluded from the
+ * totals. All the requests accept a ledger parameter, the name of the ledger, the first one by default.
+ * <p>
+ * Other processes of the machine and web pages can reach the loopback address: a request must name localhost or
+ * 127.0.0.1 in its Host header, which defeats DNS rebinding, and send the token of the run as
+ * {@code Authorization: Bearer TOKEN}, which a page of another origin cannot. The token is random, or given by
+ * {@link #TOKEN_PROPERTY}.
+ * <p>
+ * Each request runs on its own virtual thread and reads a single snapshot of the store, so its result is consistent
+ * even when the store is modified meanwhile.
+ */
+public class QueryServer implements AutoCloseable {
+
+    // -Djbudget.server.port=8585 to start the server
+    public static final String PORT_PROPERTY = "jbudget.server.port";
+    // -Djbudget.server.token=... to use a known token instead of a random one
+    public static final String TOKEN_PROPERTY = "jbudget.server.token";
+
+    private static final Set<String> LOCAL_HOSTS = Set.of("localhost", "127.0.0.1");
+    private static final String BEARER = "Bearer ";
+
+    private static final String JSON = "application/json; charset=utf-8";
+    // Seconds given to the running exchanges to finish when the server is closed
+    private static final int STOP_DELAY = 1;
+
+    @FunctionalInterface
+    public interface Importer {
+        /**
+         * @return The status message.
+         */
+        String importTransactions(Ledger ledger, Account account) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        /**
+         * Checks the request and prepares the response, before its status is sent.
+         */
+        Body handle(Map<String, String> parameters) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        /**
+         * @return The number of rows of the response, for the metrics.
+         */
+        long writeTo(JsonGenerator json) throws IOException;
+    }
+
+    private static class BadRequestException extends RuntimeException {
+        BadRequestException(final String message) {
+            super(message);
+        }
+    }
+
+    private final Map<String, Ledger> ledgers = new LinkedHashMap<>();
+    private final Importer importer;
+    private final ObjectWriter writer = EntryJsonController.objectMapper().writer()
+            .without(SerializationFeature.INDENT_OUTPUT)
+            // The response is flushed by chunks, not for each entry
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+    private final byte[] token;
+
+    /**
+     * @param port  0 for any free port, see {@link #port()}.
+     * @param token Token the requests must send, null for a random one, see {@link #token()}.
+     */
+    public QueryServer(final int port, final String token, final List<Ledger> ledgers, final Importer importer)
+            throws IOException {
+        ledgers.forEach(l -> this.ledgers.put(l.name(), l));
+        this.importer = importer;
+        this.token = (token != null ? token : randomToken()).getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/entries", exchange -> handle(exchange, "GET", "entries", this::entries));
+        server.createContext("/totals", exchange -> handle(exchange, "GET", "totals", this::totals));
+        server.createContext("/monthly", exchange -> handle(exchange, "GET", "monthly", this::monthly));
+        server.createContext("/import", exchange -> handle(exchange, "POST", "import", this::importTransactions));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String token() {
+        return new String(token, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY);
+        executor.shutdownNow();
+    }
+
+    private Body entries(final Map<String, String> parameters) throws IOException {
+        Ledger ledger = ledger(parameters);
+        EntryQuery query = query(ledger, parameters);
+        EntryStore.Snapshot snapshot = snapshot(ledger, query);
+        QueryPlan plan = query.compile(snapshot.columns());
+        return json -> {
+            long[] rows = new long[1];
+            json.writeStartArray();
+            try {
+                plan.forEach((id, _) -> {
+                    try {
+                        writer.writeValue(json, snapshot.get(id));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    rows[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                // Usually the client closed the connection
+                throw e.getCause();
+            }
+            json.writeEndArray();
+            return rows[0];
+        };
+    }
+
+    private Body totals(final Map<String, String> parameters) throws IOException {
+        Ledger ledger = ledger(parameters);
+        EntryQuery query = query(ledger, parameters);
+        EntryColumns columns = snapshot(ledger, query).columns();
+        int[] positions = columns.positions(query.compile(columns).execute());
+        SortedMap<String, Long> totals = new TreeMap<>();
+        columns.totalsByAccount(positions).forEach((account, total) -> totals.put(account.name(), total));
+        return json -> {
+            json.writeStartObject();
+            json.writeObjectFieldStart("accounts");
+            for (Map.Entry<String, Long> total : totals.entrySet()) {
+                json.writeFieldName(total.getKey());
+                json.writeNumber(Money.toDecimal(total.getValue()));
+            }
+            json.writeEndObject();
+            json.writeFieldName("total");
+            json.writeNumber(Money.toDecimal(totals.values().stream().mapToLong(Long::longValue).sum()));
+            json.writeNumberField("entries", positions.length);
+            json.writeEndObject();
+            return totals.size();
+        };
+    }
+
+    private Body monthly(final Map<String, String> parameters) throws IOException {
+        Ledger ledger = ledger(parameters);
+        EntryQuery query = query(ledger, parameters);
+        EntryStore.Snapshot snapshot = snapshot(ledger, query);
+        // Count and total of each month
+        SortedMap<YearMonth, long[]> months = new TreeMap<>();
+        query.compile(snapshot.columns()).forEach((id, _) -> {
+            Entry entry = snapshot.get(id);
+            if (!entry.duplicate()) {
+                long[] month = months.computeIfAbsent(YearMonth.from(entry.dateOperation()), _ -> new long[2]);
+                month[0]++;
+                month[1] += entry.value();
+            }
+        });
+        return json -> {
+            json.writeStartArray();
+            for (Map.Entry<YearMonth, long[]> month : months.entrySet()) {
+                json.writeStartObject();
+                json.writeStringField("month", month.getKey().toString());
+                json.writeNumberField("count", month.getValue()[0]);
+                json.writeFieldName("total");
+                json.writeNumber(Money.toDecimal(month.getValue()[1]));
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            return months.size();
+        };
+    }
+
+    private Body importTransactions(final Map<String, String> parameters) throws Exception {
+        Ledger ledger = ledger(parameters);
+        Account account = account(ledger, parameters.get("account"));
+        if (account == null) {
+            throw new BadRequestException("The account is mandatory");
+        }
+        String message = importer.importTransactions(ledger, account);
+        return json -> {
+            json.writeStartObject();
+            json.writeStringField("account", account.name());
+            json.writeStringField("message", message);
+            json.writeEndObject();
+            return 1;
+        };
+    }
+
+    /**
+     * @return A snapshot holding all the entries matching the query.
+     */
+    private static EntryStore.Snapshot snapshot(final Ledger ledger, final EntryQuery query) throws IOException {
+        ledger.repository().ensureLoaded(query);
+        return ledger.store().snapshot();
+    }
+
+    private Ledger ledger(final Map<String, String> parameters) {
+        String name = parameters.get("ledger");
+        if (name == null || name.isEmpty()) {
+            return ledgers.values().iterator().next();
+        }
+        Ledger ledger = ledgers.get(name);
+        if (ledger == null) {
+            throw new BadRequestException("Unknown ledger: " + name);
+        }
+        return ledger;
+    }
+
+    private static EntryQuery query(final Ledger ledger, final Map<String, String> parameters) {
+        try {
+            String category = parameters.get("category");
+            return new EntryQuery(account(ledger, parameters.get("account")),
+                    parameters.get("label"),
+                    category == null ? null : EntryCategory.valueOf(category.toUpperCase(Locale.ROOT)),
+                    date(parameters.get("from")),
+                    date(parameters.get("to")),
+                    Boolean.parseBoolean(parameters.get("onlyNew")),
+                    Boolean.parseBoolean(parameters.get("onlyDuplicates")),
+                    amount(parameters.get("minAmount")),
+                    amount(parameters.get("maxAmount")));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("Wrong criteria: " + e.getMessage());
+        }
+    }
+
+    private static Account account(final Ledger ledger, final String name) {
+        if (name == null || name.isEmpty()) {
+            return null;
+        }
+        Account account = ledger.account(name);
+        if (account == null) {
+            throw new BadRequestException("Unknown account: " + name);
+        }
+        return account;
+    }
+
+    private static LocalDate date(final String value) {
+        return value == null || value.isEmpty() ? null : LocalDate.parse(value);
+    }
+
+    private static Long amount(final String value) {
+        return value == null || value.isEmpty() ? null : Money.toCents(new BigDecimal(value));
+    }
+
+    private void handle(final HttpExchange exchange, final String method, final String path, final Handler handler)
+            throws IOException {
+        RequestEvent event = new RequestEvent(path);
+        event.start();
+        try {
+            if (!isLocalHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                event.status = error(exchange, 403, "Forbidden host");
+                return;
+            }
+            if (!isAuthorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                event.status = error(exchange, 401, "Missing or wrong token");
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                event.status = error(exchange, 405, "Method not allowed: " + exchange.getRequestMethod());
+                return;
+            }
+            Body body = handler.handle(parameters(exchange.getRequestURI().getRawQuery()));
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            // Length unknown: the body is sent by chunks while it is written
+            exchange.sendResponseHeaders(200, 0);
+            event.status = 200;
+            try (JsonGenerator json = writer.createGenerator(exchange.getResponseBody())) {
+                event.rows = body.writeTo(json);
+            }
+        } catch (BadRequestException e) {
+            event.status = error(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            System.err.println("Query server failed on " + exchange.getRequestURI() + ": " + e.getMessage());
+            event.status = error(exchange, 500, e.getMessage());
+        } finally {
+            exchange.close();
+            event.finish();
+        }
+    }
+
+    /**
+     * @param host Host header, with an optional port.
+     */
+    private static boolean isLocalHost(final String host) {
+        if (host == null) {
+            return false;
+        }
+        int colon = host.lastIndexOf(':');
+        return LOCAL_HOSTS.contains((colon < 0 ? host : host.substring(0, colon)).toLowerCase(Locale.ROOT));
+    }
+
+    private boolean isAuthorized(final String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        // Constant time, the token cannot be guessed char by char
+        return MessageDigest.isEqual(token, authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String randomToken() {
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Sends the error, unless the response was already started: the client gets a truncated body then.
+     *
+     * @return The status of the response.
+     */
+    private int error(final HttpExchange exchange, final int status, final String message) {
+        if (exchange.getResponseCode() != -1) {
+            return exchange.getResponseCode();
+        }
+        try (OutputStream out = exchange.getResponseBody()) {
+            byte[] body = writer.writeValueAsBytes(Map.of("error", String.valueOf(message)));
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            exchange.sendResponseHeaders(status, body.length);
+            out.write(body);
+        } catch (IOException e) {
+            // The client is gone
+        }
+        return status;
+    }
+
+    private static Map<String, String> parameters(final String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? "" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+}
@@ -0,0 +1,36 @@
+package org.github.ypiel.jbudget.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.SavedView;
+
+/**
+ * Saved views are stored as their queries by name.
+ */
+public class SavedViewJsonController {
+
+    private SavedViewJsonController() {
+        // Singleton using static
+    }
+
+    public static void saveViewsToFile(List<SavedView> views, String filePath) throws IOException {
+        Map<String, EntryQuery> queries = new LinkedHashMap<>();
+        views.forEach(v -> queries.put(v.name(), v.query()));
+        EntryJsonController.writeValue(Path.of(filePath), queries);
+    }
+
+    public static Map<String, EntryQuery> loadViewsFromFile(String filePath) throws IOException {
+        ObjectMapper objectMapper = EntryJsonController.objectMapper();
+        return objectMapper.readValue(new File(filePath),
+                objectMapper.getTypeFactory().constructMapType(LinkedHashMap.class, String.class, EntryQuery.class));
+    }
+
+}
@@ -1,15 +1,17 @@
 package org.github.ypiel.jbudget.controller;
 
 import java.awt.Container;
+import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import javafx.collections.FXCollections;
@@ -24,16 +26,42 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ChartEvent;
 import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.Money;
 
 public class SoldGraphController {
 
-    private final LineChart<String, Number> balanceChart;
-
-    private Collection<Entry> allEntries = new ArrayList<>();
-    private Collection<Entry> currentEntries = new ArrayList<>();
-    private Map<String, Double> monthlyBalances;
-    private List<String> allMonths;
+    /**
+     * Inputs of the chart, computed out of the FX thread.
+     *
+     * @param openingBalance Balance in cents before the first given entry, e.g. the total of the entries not loaded.
+     * @param forecast       Projected total in cents of each month following the entries, keyed by the last day of
+     *                       the month. Drawn after the balance while the chart is not zoomed.
+     */
+    public record Input(Collection<Entry> entries, long openingBalance, SortedMap<LocalDate, Long> forecast) {}
+
+    /**
+     * Balance at the end of each month, computed out of the FX thread.
+     */
+    private record Balances(List<Entry> entries, long openingBalance, SortedMap<LocalDate, Long> forecast,
+                            List<String> months, long[] balances, boolean zoomed) {}
+
+    // Entries between two checks of the cancellation
+    private static final int CANCELLATION_CHECK = 1 << 16;
+
+    private final LineChart<String, Double> balanceChart;
+    private final BackgroundChart<Balances> background = new BackgroundChart<>("balance");
+
+    private List<Entry> allEntries = List.of();
+    // In cents
+    private long openingBalance = 0;
+    // Projected total of each month after the entries, in cents
+    private SortedMap<LocalDate, Long> forecast = new TreeMap<>();
+    // Shown months
+    private List<String> allMonths = new ArrayList<>();
+    // A range of months is shown, without the forecast
+    private boolean zoomed = false;
     private boolean isDragging = false;
     private String startMonth = null;
     private String endMonth = null;
@@ -42,16 +70,23 @@ public class SoldGraphController {
 
     private Rectangle selectionRectangle;
 
-    public SoldGraphController(final LineChart<String, Number> balanceChart) {
+    public SoldGraphController(final LineChart<String, Double> balanceChart) {
         this.balanceChart = balanceChart;
         setupChart();
     }
 
-    public void setEntries(Collection<Entry> entries) {
-        this.allEntries = new ArrayList<>(entries);
-        this.currentEntries = new ArrayList<>(entries);
-        calculateMonthlyBalances();
-        updateChart();
+    /**
+     * Computes the balances in the background, the chart is updated once they are all known. A computation not
+     * shown yet is cancelled.
+     *
+     * @param input Computes the inputs of the chart. Called out of the FX thread.
+     */
+    public void setEntries(final Callable<Input> input) {
+        background.submit(() -> {
+            Input in = input.call();
+            List<Entry> entries = new ArrayList<>(in.entries());
+            return balances(entries, entries, in.openingBalance(), in.forecast(), false);
+        }, this::show);
     }
 
     private void setupChart() {
@@ -81,7 +116,6 @@ public class SoldGraphController {
         ((Pane)balanceChart.getParent()).getChildren().add(selectionRectangle);
 
         balanceChart.setOnMousePressed(event -> {
-            System.out.println("balanceChart.setOnMousePressed");
             if (event.isPrimaryButtonDown()) {
                 double startX = event.getX();
                 double startY = event.getY();
@@ -95,8 +129,6 @@ public class SoldGraphController {
         });
 
         balanceChart.setOnMouseDragged(event -> {
-            System.out.printf("balanceChart.setOnMouseDragged, visible : %s, %s x %s x %s x %s %n", selectionRectangle.isVisible(),
-                    selectionRectangle.getX(), selectionRectangle.getY(), selectionRectangle.getWidth(), selectionRectangle.getHeight());
             if (event.isPrimaryButtonDown() && selectionRectangle.isVisible()) {
                 double currentX = event.getX();
                 double currentY = event.getY();
@@ -122,9 +154,7 @@ public class SoldGraphController {
                 double startX = selectionRectangle.getX();
                 double endX = event.getX();
 
-                System.out.println("balanceChart.setOnMouseReleased : " + Math.abs(endX - startX));
                 if (Math.abs(endX - startX) > 10) { // Minimum selection width
-                    System.out.println("filterEntriesBySelection ok!");
                     filterEntriesBySelection(startX, endX);
                 }
 
@@ -140,53 +170,82 @@ public class SoldGraphController {
         });
     }
 
-    private void calculateMonthlyBalances() {
-        if (currentEntries == null || currentEntries.isEmpty()) {
-            monthlyBalances = new LinkedHashMap<>();
-            allMonths = new ArrayList<>();
-            return;
+    /**
+     * @param shown The entries of the shown months, all the entries when not zoomed.
+     */
+    private static Balances balances(final List<Entry> entries, final List<Entry> shown, final long openingBalance,
+                                     final SortedMap<LocalDate, Long> forecast, final boolean zoomed) {
+        ChartEvent event = new ChartEvent("balance");
+        event.start();
+
+        // Group entries by month and calculate monthly totals, duplicates excluded as from the balance index
+        TreeMap<YearMonth, Long> monthlyTotals = new TreeMap<>();
+        for (int i = 0; i < shown.size(); i++) {
+            if (i % CANCELLATION_CHECK == 0) {
+                BackgroundChart.checkCancelled();
+            }
+            Entry entry = shown.get(i);
+            if (!entry.duplicate()) {
+                monthlyTotals.merge(YearMonth.from(entry.dateOperation()), entry.value(), Long::sum);
+            }
         }
 
-        // Group entries by month and calculate monthly totals
-        Map<YearMonth, Double> monthlyTotals = currentEntries.stream()
-                .collect(Collectors.groupingBy(
-                        entry -> YearMonth.from(entry.dateOperation()),
-                        TreeMap::new,
-                        Collectors.summingDouble(Entry::value)
-                ));
-
         // Calculate cumulative balances
-        monthlyBalances = new LinkedHashMap<>();
-        allMonths = new ArrayList<>();
-        double cumulativeBalance = 0.0;
-
-        for (Map.Entry<YearMonth, Double> monthEntry : monthlyTotals.entrySet()) {
-            String monthKey = monthEntry.getKey().format(MONTH_FORMATTER);
+        List<String> months = new ArrayList<>(monthlyTotals.size());
+        long[] balances = new long[monthlyTotals.size()];
+        long cumulativeBalance = openingBalance;
+        int m = 0;
+        for (Map.Entry<YearMonth, Long> monthEntry : monthlyTotals.entrySet()) {
             cumulativeBalance += monthEntry.getValue();
-            monthlyBalances.put(monthKey, cumulativeBalance);
-            allMonths.add(monthKey);
+            months.add(monthEntry.getKey().format(MONTH_FORMATTER));
+            balances[m++] = cumulativeBalance;
         }
+        event.entries = shown.size();
+        event.points = months.size();
+        event.finish();
+        return new Balances(entries, openingBalance, forecast, months, balances, zoomed);
     }
 
-    private void updateChart() {
-        balanceChart.getData().clear();
+    private void show(final Balances balances) {
+        allEntries = balances.entries();
+        openingBalance = balances.openingBalance();
+        forecast = balances.forecast();
+        allMonths = balances.months();
+        zoomed = balances.zoomed();
+        updateChart(balances.balances());
+    }
 
-        if (monthlyBalances.isEmpty()) {
+    private void updateChart(final long[] balances) {
+        if (allMonths.isEmpty()) {
+            balanceChart.getData().clear();
             return;
         }
 
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        series.setName("Balance");
-
-        for (Map.Entry<String, Double> entry : monthlyBalances.entrySet()) {
-            series.getData().add(new XYChart.Data<>(entry.getKey(), entry.getValue()));
+        List<XYChart.Data<String, Double>> points = new ArrayList<>(allMonths.size());
+        for (int m = 0; m < allMonths.size(); m++) {
+            points.add(new XYChart.Data<>(allMonths.get(m), Money.toDouble(balances[m])));
         }
-
-        balanceChart.getData().add(series);
+        List<XYChart.Series<String, Double>> series = new ArrayList<>();
+        series.add(BackgroundChart.series("Balance", points));
 
         // Update x-axis categories
-        ObservableList<String> categories = FXCollections.observableArrayList(monthlyBalances.keySet());
+        ObservableList<String> categories = FXCollections.observableArrayList(allMonths);
+
+        if (!forecast.isEmpty() && !zoomed) {
+            List<XYChart.Data<String, Double>> forecastPoints = new ArrayList<>(forecast.size() + 1);
+            // Starts from the last known balance, so that both lines are joined
+            long balance = balances[balances.length - 1];
+            forecastPoints.add(new XYChart.Data<>(allMonths.getLast(), Money.toDouble(balance)));
+            for (Map.Entry<LocalDate, Long> entry : forecast.entrySet()) {
+                String monthKey = YearMonth.from(entry.getKey()).format(MONTH_FORMATTER);
+                balance += entry.getValue();
+                forecastPoints.add(new XYChart.Data<>(monthKey, Money.toDouble(balance)));
+                categories.add(monthKey);
+            }
+            series.add(BackgroundChart.series("Forecast", forecastPoints));
+        }
         ((CategoryAxis)balanceChart.getXAxis()).setCategories(categories);
+        balanceChart.getData().setAll(series);
     }
 
    /* private void onMousePressed(MouseEvent event) {
@@ -221,8 +280,6 @@ public class SoldGraphController {
         }
 
         filterEntriesByMonthRange(startMonth, endMonth);
-        calculateMonthlyBalances();
-        updateChart();
 
         isDragging = false;
         startMonth = null;
@@ -259,24 +316,26 @@ public class SoldGraphController {
         YearMonth start = YearMonth.parse(startMonth, MONTH_FORMATTER);
         YearMonth end = YearMonth.parse(endMonth, MONTH_FORMATTER);
 
-        currentEntries = allEntries.stream()
+        List<Entry> entries = allEntries;
+        long opening = openingBalance;
+        SortedMap<LocalDate, Long> projected = forecast;
+        background.submit(() -> balances(entries, entries.stream()
                 .filter(entry -> {
                     YearMonth entryMonth = YearMonth.from(entry.dateOperation());
                     return !entryMonth.isBefore(start) && !entryMonth.isAfter(end);
                 })
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()), opening, projected, true), this::show);
     }
 
     @FXML
     private void resetZoom() {
-        currentEntries = new ArrayList<>(allEntries);
-        calculateMonthlyBalances();
-        updateChart();
+        refreshData();
     }
 
     public void refreshData() {
-        if (allEntries != null) {
-            setEntries(allEntries);
-        }
+        List<Entry> entries = allEntries;
+        long opening = openingBalance;
+        SortedMap<LocalDate, Long> projected = forecast;
+        background.submit(() -> balances(entries, entries, opening, projected, false), this::show);
     }
 }
@@ -0,0 +1,7 @@
+package org.github.ypiel.jbudget.metrics;
+
+/**
+ * State of one metric when it has been read. Durations are in milliseconds, they are 0 for a simple counter.
+ */
+public record MetricSnapshot(String name, long count, double totalMs, double p50Ms, double p99Ms, double maxMs) {
+}
@@ -0,0 +1,63 @@
+package org.github.ypiel.jbudget.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * In process registry of the latencies and counters of the application operations.
+ */
+public class Metrics {
+
+    private static final Map<String, LatencyHistogram> latencies = new ConcurrentSkipListMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private Metrics() {
+        // Singleton using static
+    }
+
+    public static void record(final String name, final long nanos) {
+        latencies.computeIfAbsent(name, _ -> new LatencyHistogram()).record(nanos);
+    }
+
+    public static void increment(final String name, final long delta) {
+        counters.computeIfAbsent(name, _ -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * @return All the metrics, latencies first, each group sorted by name.
+     */
+    public static List<MetricSnapshot> snapshot() {
+        List<MetricSnapshot> result = new ArrayList<>();
+        latencies.forEach((name, h) -> result.add(new MetricSnapshot(name, h.count(), toMs(h.totalNanos()),
+                toMs(h.percentileNanos(50)), toMs(h.percentileNanos(99)), toMs(h.maxNanos()))));
+        counters.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> result.add(new MetricSnapshot(e.getKey(), e.getValue().sum(), 0, 0, 0, 0)));
+        return result;
+    }
+
+    public static void dump(final Path file) throws IOException {
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), snapshot());
+    }
+
+    public static void reset() {
+        latencies.clear();
+        counters.clear();
+    }
+
+    private static double toMs(final long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.github.ypiel.jbudget.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JDK Flight Recorder events of the application operations.
+ * <p>
+ * Each event also records its duration in {@link Metrics}, so that latencies are available without a recording.
+ * Usage: create the event, {@link OperationEvent#start()}, fill the fields, then {@link OperationEvent#finish()}.
+ */
+public final class PerformanceEvents {
+
+    private PerformanceEvents() {
+        // Only holds the event classes
+    }
+
+    @Category("JBudget")
+    @StackTrace(false)
+    public abstract static class OperationEvent extends Event {
+
+        private final transient String metric;
+        private transient long startNanos;
+
+        protected OperationEvent(final String metric) {
+            this.metric = metric;
+        }
+
+        public void start() {
+            startNanos = System.nanoTime();
+            begin();
+        }
+
+        public void finish() {
+            long duration = System.nanoTime() - startNanos;
+            beforeCommit(duration);
+            commit();
+            Metrics.record(metric, duration);
+        }
+
+        /**
+         * Last chance to compute fields depending on the duration.
+         */
+        protected void beforeCommit(final long durationNanos) {
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Import")
+    @Label("Import")
+    @Description("Import of the CSV files of an account")
+    public static class ImportEvent extends OperationEvent {
+        @Label("Account")
+        public String account;
+        @Label("Files")
+        public int files;
+        @Label("Lines")
+        public long lines;
+        @Label("Rejected Lines")
+        public long rejectedLines;
+        @Label("Lines per Second")
+        public double linesPerSecond;
+
+        public ImportEvent() {
+            super("import");
+        }
+
+        @Override
+        protected void beforeCommit(final long durationNanos) {
+            linesPerSecond = durationNanos == 0 ? 0 : lines * 1_000_000_000.0 / durationNanos;
+            Metrics.increment("import.files", files);
+            Metrics.increment("import.lines", lines);
+            Metrics.increment("import.rejectedLines", rejectedLines);
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Dedup")
+    @Label("Duplicate Detection")
+    public static class DedupEvent extends OperationEvent {
+        @Label("Scanned Entries")
+        public int scanned;
+        @Label("Duplicates")
+        public int duplicates;
+
+        public DedupEvent() {
+            super("dedup");
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Search")
+    @Label("Search")
+    public static class SearchEvent extends OperationEvent {
+        @Label("Store Size")
+        public int storeSize;
+        @Label("Result Size")
+        public int resultSize;
+        @Label("Plan")
+        public String plan;
+
+        public SearchEvent() {
+            super("search");
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Totals")
+    @Label("Totals")
+    public static class TotalsEvent extends OperationEvent {
+        @Label("Entries")
+        public int entries;
+        @Label("Accounts")
+        public int accounts;
+
+        public TotalsEvent() {
+            super("totals");
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Chart")
+    @Label("Chart Aggregation")
+    public static class ChartEvent extends OperationEvent {
+        @Label("Chart")
+        public String chart;
+        @Label("Entries")
+        public int entries;
+        @Label("Points")
+        public int points;
+
+        public ChartEvent(final String chart) {
+            super("chart." + chart);
+            this.chart = chart;
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Export")
+    @Label("Export")
+    @Description("Export of a search result to a file")
+    public static class ExportEvent extends OperationEvent {
+        @Label("Format")
+        public String format;
+        @Label("File")
+        public String file;
+        @Label("Rows")
+        public long rows;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+
+        public ExportEvent(final String format) {
+            super("export." + format);
+            this.format = format;
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Request")
+    @Label("Query Server Request")
+    public static class RequestEvent extends OperationEvent {
+        @Label("Path")
+        public String path;
+        @Label("Status")
+        public int status;
+        @Label("Rows")
+        public long rows;
+
+        public RequestEvent(final String path) {
+            super("server." + path);
+            this.path = path;
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Storage")
+    @Label("Storage")
+    @Description("Load or save of a JSON file")
+    public static class StorageEvent extends OperationEvent {
+        @Label("Operation")
+        public String operation;
+        @Label("File")
+        public String file;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        @Label("Entries")
+        public int entries;
+
+        public StorageEvent(final String operation) {
+            super("storage." + operation);
+            this.operation = operation;
+        }
+
+        @Override
+        protected void beforeCommit(final long durationNanos) {
+            Metrics.increment("storage." + operation + ".bytes", bytes);
+        }
+    }
+
+    @Name("org.github.ypiel.jbudget.Startup")
+    @Label("Startup")
+    @Description("Time from the launch of the application to a startup milestone")
+    public static class StartupEvent extends OperationEvent {
+        @Label("Milestone")
+        public String milestone;
+        @Label("Entries")
+        public int entries;
+
+        public StartupEvent(final String milestone) {
+            super("startup." + milestone);
+            this.milestone = milestone;
+        }
+    }
+
+}
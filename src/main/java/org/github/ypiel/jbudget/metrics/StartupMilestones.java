@@ -0,0 +1,50 @@
+package org.github.ypiel.jbudget.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.StartupEvent;
+
+/**
+ * Times of the startup milestones, all measured from the launch of the application. Each milestone is recorded once,
+ * by the first call to {@link #reached(String, int)}.
+ */
+public final class StartupMilestones {
+
+    /**
+     * The window is shown and laid out, the user can interact with it.
+     */
+    public static final String FIRST_FRAME = "first-frame";
+    /**
+     * The first partition is shown in the table.
+     */
+    public static final String FIRST_ENTRIES = "first-entries";
+    /**
+     * All the recent partitions are loaded.
+     */
+    public static final String LOADED = "loaded";
+
+    private static final Map<String, StartupEvent> pending = new ConcurrentHashMap<>();
+
+    private StartupMilestones() {
+        // Singleton using static
+    }
+
+    public static void launched() {
+        for (String milestone : List.of(FIRST_FRAME, FIRST_ENTRIES, LOADED)) {
+            StartupEvent event = new StartupEvent(milestone);
+            event.start();
+            pending.put(milestone, event);
+        }
+    }
+
+    public static void reached(final String milestone, final int entries) {
+        StartupEvent event = pending.remove(milestone);
+        if (event != null) {
+            event.entries = entries;
+            event.finish();
+        }
+    }
+
+}
@@ -1,6 +1,15 @@
 package org.github.ypiel.jbudget.model;
 
-public record Account(String bank, String name, String code, double initialBalance) implements Comparable<Account> {
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A bank account. The initial balance is in cents, see {@link Money}.
+ */
+public record Account(String bank, String name, String code,
+                      @JsonSerialize(using = Money.CentsSerializer.class)
+                      @JsonDeserialize(using = Money.CentsDeserializer.class) long initialBalance)
+        implements Comparable<Account> {
 
     public Account {
         if (bank == null) {
@@ -1,3 +1,6 @@
 package org.github.ypiel.jbudget.model;
 
-public record AccountTotal(String account, Double total) {}
+/**
+ * @param total Sum of the entry values, in cents.
+ */
+public record AccountTotal(String account, long total) {}
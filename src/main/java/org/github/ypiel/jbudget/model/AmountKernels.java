@@ -0,0 +1,40 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Aggregation loops over primitive columns of amounts in cents.
+ * <p>
+ * {@link #instance()} returns an implementation using the Vector API when the {@code jdk.incubator.vector} module
+ * is available (run with {@code --add-modules jdk.incubator.vector}), a scalar one otherwise.
+ */
+public interface AmountKernels {
+
+    static AmountKernels instance() {
+        return AmountKernelsHolder.INSTANCE;
+    }
+
+    /**
+     * @return Sum of values[from..to[.
+     */
+    long sum(long[] values, int from, int to);
+
+    /**
+     * @return Sum of values[i] for i in [from..to[ where keys[i] == key.
+     */
+    long sumWhereEquals(long[] values, long[] keys, long key, int from, int to);
+
+    /**
+     * @return Sum of values[i] for i in indexes[from..to[ where keys[i] == key.
+     */
+    long sumGatheredWhereEquals(long[] values, long[] keys, long key, int[] indexes, int from, int to);
+
+    /**
+     * @return Min of values[from..to[, Long.MAX_VALUE for an empty range.
+     */
+    long min(long[] values, int from, int to);
+
+    /**
+     * @return Max of values[from..to[, Long.MIN_VALUE for an empty range.
+     */
+    long max(long[] values, int from, int to);
+
+}
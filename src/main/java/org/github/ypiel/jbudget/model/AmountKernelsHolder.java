@@ -0,0 +1,24 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Implementation of {@link AmountKernels} selected once, on first use.
+ */
+final class AmountKernelsHolder {
+
+    static final AmountKernels INSTANCE = select();
+
+    private AmountKernelsHolder() {
+    }
+
+    private static AmountKernels select() {
+        try {
+            // Loaded by name: the class cannot be linked when the incubator module is not in the boot layer
+            return (AmountKernels) Class.forName("org.github.ypiel.jbudget.model.VectorAmountKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarAmountKernels();
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running balance of each account by operation date, starting from {@link Account#initialBalance()}.
+ * <p>
+ * The net amount of each day is kept in a segment tree per account, and in one for all the accounts. A node holds
+ * the sum of its days and the lowest and highest running sums within them, so the balance at a date and the lowest
+ * and highest balances over a range are answered in logarithmic time. A change only updates the days of the
+ * modified entries. The trees cover a range of days doubled when an entry falls outside of it.
+ * <p>
+ * Duplicates are excluded, as from the totals. Thread-safe, changes are applied by the thread modifying the store.
+ */
+public class BalanceIndex implements EntryStoreListener {
+
+    // Initial number of days of a tree, about 2 years
+    private static final int INITIAL_DAYS = 1024;
+
+    /**
+     * Lowest and highest balances in cents at the end of a day over a range.
+     */
+    public record Range(long min, long max) {}
+
+    private static final class Tree {
+        // Number of entries, the tree is dropped with the last one
+        int entries;
+        // Epoch day of the first leaf
+        long origin;
+        int leaves;
+        // Heap layout, the leaves start at index leaves
+        long[] sums;
+        long[] mins;
+        long[] maxs;
+
+        Tree(final long day) {
+            allocate(day - INITIAL_DAYS / 2, INITIAL_DAYS);
+        }
+
+        private void allocate(final long first, final int size) {
+            origin = first;
+            leaves = size;
+            sums = new long[2 * size];
+            mins = new long[2 * size];
+            maxs = new long[2 * size];
+        }
+
+        void add(final long day, final long value) {
+            if (day < origin || day >= origin + leaves) {
+                grow(day);
+            }
+            int node = (int) (day - origin) + leaves;
+            long leaf = sums[node] + value;
+            sums[node] = leaf;
+            mins[node] = leaf;
+            maxs[node] = leaf;
+            for (node >>= 1; node > 0; node >>= 1) {
+                pull(node);
+            }
+        }
+
+        private void pull(final int node) {
+            int left = 2 * node;
+            int right = left + 1;
+            sums[node] = sums[left] + sums[right];
+            mins[node] = Math.min(mins[left], sums[left] + mins[right]);
+            maxs[node] = Math.max(maxs[left], sums[left] + maxs[right]);
+        }
+
+        /**
+         * Doubles the covered range until it contains the day, the current days staying in the middle when possible.
+         */
+        private void grow(final long day) {
+            long first = origin;
+            int size = leaves;
+            while (day < first || day >= first + size) {
+                first = day < first ? first - size : first;
+                size *= 2;
+            }
+            long[] previous = sums;
+            long previousOrigin = origin;
+            int previousLeaves = leaves;
+            allocate(first, size);
+            int shift = (int) (previousOrigin - first);
+            for (int i = 0; i < previousLeaves; i++) {
+                long value = previous[previousLeaves + i];
+                sums[leaves + shift + i] = value;
+                mins[leaves + shift + i] = value;
+                maxs[leaves + shift + i] = value;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                pull(node);
+            }
+        }
+
+        /**
+         * @return Sum of the days up to the given one, included.
+         */
+        long sumUpTo(final long day) {
+            if (day < origin) {
+                return 0;
+            }
+            if (day >= origin + leaves) {
+                return sums[1];
+            }
+            // Sum of the leaves [0, day]: the left siblings on the path, plus the leaf
+            int node = (int) (day - origin) + leaves;
+            long sum = sums[node];
+            for (; node > 1; node >>= 1) {
+                if ((node & 1) == 1) {
+                    sum += sums[node - 1];
+                }
+            }
+            return sum;
+        }
+
+        /**
+         * @return Lowest and highest running sums of the leaves [from, to] relative to the sum before from.
+         */
+        long[] range(final int from, final int to) {
+            // Bottom-up: the left nodes are combined in order, the right ones in reverse order
+            long leftSum = 0;
+            long leftMin = Long.MAX_VALUE;
+            long leftMax = Long.MIN_VALUE;
+            long rightSum = 0;
+            long rightMin = Long.MAX_VALUE;
+            long rightMax = Long.MIN_VALUE;
+            for (int l = from + leaves, r = to + leaves + 1; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) {
+                    leftMin = Math.min(leftMin, leftSum + mins[l]);
+                    leftMax = Math.max(leftMax, leftSum + maxs[l]);
+                    leftSum += sums[l];
+                    l++;
+                }
+                if ((r & 1) == 1) {
+                    r--;
+                    rightMin = rightMin == Long.MAX_VALUE ? mins[r] : Math.min(mins[r], sums[r] + rightMin);
+                    rightMax = rightMax == Long.MIN_VALUE ? maxs[r] : Math.max(maxs[r], sums[r] + rightMax);
+                    rightSum += sums[r];
+                }
+            }
+            long min = leftMin;
+            long max = leftMax;
+            if (rightMin != Long.MAX_VALUE) {
+                min = Math.min(min, leftSum + rightMin);
+                max = Math.max(max, leftSum + rightMax);
+            }
+            return new long[]{min, max};
+        }
+    }
+
+    private final EntryStore store;
+
+    private final Map<Account, Tree> trees = new HashMap<>();
+    private Tree all;
+    // Initial balances of the accounts with entries
+    private long initialBalances;
+
+    public BalanceIndex(final EntryStore store) {
+        this.store = store;
+        store.addListener(this);
+        refresh();
+    }
+
+    /**
+     * Indexes the whole store again, needed after {@link EntryStore#clear()} which does not notify.
+     */
+    public synchronized void refresh() {
+        trees.clear();
+        all = null;
+        initialBalances = 0;
+        EntryStore.Snapshot snapshot = store.snapshot();
+        for (int p = 0; p < snapshot.size(); p++) {
+            add(snapshot.get(snapshot.idAt(p)), 1);
+        }
+    }
+
+    @Override
+    public synchronized void onChange(final List<EntryStoreChange> changes) {
+        for (EntryStoreChange change : changes) {
+            if (change.previous() != null) {
+                add(change.previous(), -1);
+            }
+            if (change.current() != null) {
+                add(change.current(), 1);
+            }
+        }
+    }
+
+    private void add(final Entry entry, final int sign) {
+        if (entry.duplicate()) {
+            return;
+        }
+        long day = entry.dateOperation().toEpochDay();
+        Tree tree = trees.get(entry.account());
+        if (tree == null) {
+            tree = new Tree(day);
+            trees.put(entry.account(), tree);
+            initialBalances += entry.account().initialBalance();
+        }
+        tree.add(day, sign * entry.value());
+        tree.entries += sign;
+        if (tree.entries == 0) {
+            // The initial balance only counts for the accounts with entries
+            trees.remove(entry.account());
+            initialBalances -= entry.account().initialBalance();
+        }
+        if (all == null) {
+            all = new Tree(day);
+        }
+        all.add(day, sign * entry.value());
+    }
+
+    /**
+     * @param account The account, null for all the accounts with entries.
+     * @return The balance in cents before any entry.
+     */
+    public synchronized long initialBalance(final Account account) {
+        return account == null ? initialBalances : account.initialBalance();
+    }
+
+    /**
+     * @param account The account, null for all the accounts.
+     * @return The balance in cents at the end of the day: the initial balance plus the entries up to the date.
+     */
+    public synchronized long balanceAt(final Account account, final LocalDate date) {
+        Tree tree = tree(account);
+        return initialBalance(account) + (tree == null ? 0 : tree.sumUpTo(date.toEpochDay()));
+    }
+
+    /**
+     * @param account The account, null for all the accounts.
+     * @return The balance in cents after all the entries.
+     */
+    public synchronized long balance(final Account account) {
+        Tree tree = tree(account);
+        return initialBalance(account) + (tree == null ? 0 : tree.sums[1]);
+    }
+
+    /**
+     * @param account The account, null for all the accounts.
+     * @param from    First day, included.
+     * @param to      Last day, included.
+     * @return The lowest and highest balances at the end of the days of the range.
+     */
+    public synchronized Range range(final Account account, final LocalDate from, final LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException(String.format("Range end %s is before its start %s", to, from));
+        }
+        long before = balanceAt(account, from.minusDays(1));
+        Tree tree = tree(account);
+        if (tree == null) {
+            return new Range(before, before);
+        }
+        long first = Math.max(from.toEpochDay(), tree.origin);
+        long last = Math.min(to.toEpochDay(), tree.origin + tree.leaves - 1);
+        if (first > last) {
+            // No entry in the range
+            return new Range(before, before);
+        }
+        long[] range = tree.range((int) (first - tree.origin), (int) (last - tree.origin));
+        long min = before + range[0];
+        long max = before + range[1];
+        // Days of the range outside of the tree have no entry: the balance before the tree is the initial one
+        if (from.toEpochDay() < tree.origin) {
+            min = Math.min(min, before);
+            max = Math.max(max, before);
+        }
+        return new Range(min, max);
+    }
+
+    /**
+     * @return The statement balances compared to the computed ones, in the given order.
+     */
+    public synchronized List<Reconciliation> reconcile(final List<StatementBalance> statements) {
+        List<Reconciliation> result = new ArrayList<>(statements.size());
+        for (StatementBalance statement : statements) {
+            result.add(new Reconciliation(statement, balanceAt(statement.account(), statement.date())));
+        }
+        return result;
+    }
+
+    private Tree tree(final Account account) {
+        return account == null ? all : trees.get(account);
+    }
+
+
+}
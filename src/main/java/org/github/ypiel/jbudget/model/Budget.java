@@ -0,0 +1,91 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Spending limit of a category over a period, see {@link BudgetEvaluator}.
+ *
+ * @param category   Category of the entries, ALL for all the categories.
+ * @param account    Account of the entries, null for any account.
+ * @param period     Period of the limit, the spent amount starts again from 0 at each period.
+ * @param limit      Maximum spent amount in cents, positive.
+ * @param thresholds Percents of the limit raising an alert when reached, 80 and 100 by default.
+ */
+public record Budget(EntryCategory category, Account account, Period period,
+                     @JsonSerialize(using = Money.CentsSerializer.class)
+                     @JsonDeserialize(using = Money.CentsDeserializer.class) long limit,
+                     List<Integer> thresholds) {
+
+    public static final List<Integer> DEFAULT_THRESHOLDS = List.of(80, 100);
+
+    public enum Period {
+        MONTHLY,
+        QUARTERLY,
+        YEARLY;
+
+        /**
+         * @return Index of the period containing the date, consecutive periods have consecutive indexes.
+         */
+        long index(final LocalDate date) {
+            return switch (this) {
+                case MONTHLY -> date.getYear() * 12L + date.getMonthValue() - 1;
+                case QUARTERLY -> date.getYear() * 4L + (date.getMonthValue() - 1) / 3;
+                case YEARLY -> date.getYear();
+            };
+        }
+
+        /**
+         * @return The period containing the date, e.g. 2025-03, 2025-Q1 or 2025.
+         */
+        public String label(final LocalDate date) {
+            return switch (this) {
+                case MONTHLY -> "%d-%02d".formatted(date.getYear(), date.getMonthValue());
+                case QUARTERLY -> "%d-Q%d".formatted(date.getYear(), (date.getMonthValue() - 1) / 3 + 1);
+                case YEARLY -> String.valueOf(date.getYear());
+            };
+        }
+    }
+
+    public Budget {
+        if (category == null) {
+            category = EntryCategory.ALL;
+        }
+        if (period == null) {
+            period = Period.MONTHLY;
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Budget limit must be positive: " + category + " " + Money.format(limit));
+        }
+        thresholds = thresholds == null || thresholds.isEmpty() ? DEFAULT_THRESHOLDS
+                : thresholds.stream().sorted().toList();
+    }
+
+    /**
+     * Duplicates are not counted.
+     */
+    public boolean matches(final Entry entry) {
+        return !entry.duplicate()
+                && (category == EntryCategory.ALL || category == entry.category())
+                && (account == null || account.equals(entry.account()));
+    }
+
+    /**
+     * @return The spent amount in cents reaching the given percent of the limit.
+     */
+    long thresholdAmount(final int percent) {
+        return Math.ceilDiv(limit * percent, 100);
+    }
+
+    /**
+     * @return Human readable name, e.g. "GROCERIES_HOUSEHOLD monthly".
+     */
+    public String toLabel() {
+        String name = category + " " + period.name().toLowerCase();
+        return account == null ? name : name + " on " + account.toLabel();
+    }
+
+}
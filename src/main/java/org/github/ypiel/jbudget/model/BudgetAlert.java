@@ -0,0 +1,15 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Raised when the spent amount of a budget period reaches one of its thresholds.
+ *
+ * @param status    The status of the period, after the change.
+ * @param threshold The percent of the limit reached.
+ */
+public record BudgetAlert(BudgetStatus status, int threshold) {
+
+    public String message() {
+        return "Budget reached %d%%: %s".formatted(threshold, status);
+    }
+
+}
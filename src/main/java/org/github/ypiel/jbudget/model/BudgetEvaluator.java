@@ -0,0 +1,170 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Spent amount of each period of each {@link Budget}, updated from the store changes: a change costs the budgets of
+ * the categories of its entries, the history is never scanned again.
+ * <p>
+ * Alerts are raised when a change makes the spent amount of a period reach a threshold. Only imported entries and
+ * modified entries raise alerts: loading the saved entries does not. Thread-safe, changes are applied and alerts
+ * raised by the thread modifying the store.
+ */
+public class BudgetEvaluator implements EntryStoreListener {
+
+    @FunctionalInterface
+    public interface AlertListener {
+        void onAlerts(List<BudgetAlert> alerts);
+    }
+
+    private static final class BudgetState {
+        final Budget budget;
+        // Spent amount of each period index
+        final Map<Long, Long> spent = new HashMap<>();
+
+        BudgetState(final Budget budget) {
+            this.budget = budget;
+        }
+    }
+
+    private record PeriodKey(BudgetState state, long index) {}
+
+    // Spent amount before the changes, and a date of the period
+    private record Before(long spent, LocalDate date) {}
+
+    private final EntryStore store;
+    private final List<AlertListener> listeners = new CopyOnWriteArrayList<>();
+
+    private List<BudgetState> states = List.of();
+    // Budgets of each category, ALL for the budgets of all the categories
+    private final Map<EntryCategory, List<BudgetState>> byCategory = new EnumMap<>(EntryCategory.class);
+
+    public BudgetEvaluator(final EntryStore store) {
+        this.store = store;
+        store.addListener(this);
+    }
+
+    public void addAlertListener(final AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Replaces the budgets, their spent amounts are computed from the whole store.
+     */
+    public synchronized void setBudgets(final List<Budget> budgets) {
+        states = budgets.stream().map(BudgetState::new).toList();
+        byCategory.clear();
+        states.forEach(s -> byCategory.computeIfAbsent(s.budget.category(), _ -> new ArrayList<>()).add(s));
+        refresh();
+    }
+
+    /**
+     * Computes the spent amounts from the whole store again, needed after {@link EntryStore#clear()} which does not
+     * notify.
+     */
+    public synchronized void refresh() {
+        states.forEach(s -> s.spent.clear());
+        if (states.isEmpty()) {
+            return;
+        }
+        for (Entry e : store.entries()) {
+            apply(e, 1, null);
+        }
+    }
+
+    /**
+     * @return The status of each budget for the period containing the date.
+     */
+    public synchronized List<BudgetStatus> status(final LocalDate date) {
+        List<BudgetStatus> result = new ArrayList<>(states.size());
+        for (BudgetState state : states) {
+            Budget.Period period = state.budget.period();
+            result.add(new BudgetStatus(state.budget, period.label(date),
+                    state.spent.getOrDefault(period.index(date), 0L)));
+        }
+        return result;
+    }
+
+    @Override
+    public void onChange(final List<EntryStoreChange> changes) {
+        List<BudgetAlert> alerts;
+        synchronized (this) {
+            if (states.isEmpty()) {
+                return;
+            }
+            Map<PeriodKey, Before> touched = new LinkedHashMap<>();
+            for (EntryStoreChange change : changes) {
+                // Loaded entries are added as not new
+                boolean alerting = change.current() != null && (change.current().newEntry() || change.previous() != null);
+                if (change.previous() != null) {
+                    apply(change.previous(), -1, alerting ? touched : null);
+                }
+                if (change.current() != null) {
+                    apply(change.current(), 1, alerting ? touched : null);
+                }
+            }
+            alerts = alerts(touched);
+        }
+        if (!alerts.isEmpty()) {
+            listeners.forEach(l -> l.onAlerts(alerts));
+        }
+    }
+
+    /**
+     * @param touched Filled with the spent amount of the periods before their first change, null to not track them.
+     */
+    private void apply(final Entry entry, final int sign, final Map<PeriodKey, Before> touched) {
+        apply(byCategory.get(entry.category()), entry, sign, touched);
+        if (entry.category() != EntryCategory.ALL) {
+            apply(byCategory.get(EntryCategory.ALL), entry, sign, touched);
+        }
+    }
+
+    private static void apply(final List<BudgetState> candidates, final Entry entry, final int sign,
+                              final Map<PeriodKey, Before> touched) {
+        if (candidates == null) {
+            return;
+        }
+        for (BudgetState state : candidates) {
+            if (!state.budget.matches(entry)) {
+                continue;
+            }
+            long index = state.budget.period().index(entry.dateOperation());
+            if (touched != null) {
+                touched.computeIfAbsent(new PeriodKey(state, index),
+                        _ -> new Before(state.spent.getOrDefault(index, 0L), entry.dateOperation()));
+            }
+            // A debit is a positive spent amount
+            state.spent.merge(index, -sign * entry.value(), Long::sum);
+        }
+    }
+
+    private static List<BudgetAlert> alerts(final Map<PeriodKey, Before> touched) {
+        List<BudgetAlert> alerts = new ArrayList<>();
+        touched.forEach((key, before) -> {
+            Budget budget = key.state().budget;
+            long spent = key.state().spent.getOrDefault(key.index(), 0L);
+            // Only the highest threshold crossed by the changes
+            int reached = -1;
+            for (int percent : budget.thresholds()) {
+                long amount = budget.thresholdAmount(percent);
+                if (before.spent() < amount && spent >= amount) {
+                    reached = percent;
+                }
+            }
+            if (reached >= 0) {
+                alerts.add(new BudgetAlert(new BudgetStatus(budget, budget.period().label(before.date()), spent),
+                        reached));
+            }
+        });
+        return alerts;
+    }
+
+}
@@ -0,0 +1,22 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Amount spent in a period of a budget.
+ *
+ * @param budget The budget.
+ * @param period Label of the period, see {@link Budget.Period#label(java.time.LocalDate)}.
+ * @param spent  Spent amount in cents, debits minus credits of the matching entries.
+ */
+public record BudgetStatus(Budget budget, String period, long spent) {
+
+    public int percent() {
+        return (int) (spent * 100 / budget.limit());
+    }
+
+    @Override
+    public String toString() {
+        return "%s %s: %s / %s (%d%%)".formatted(budget.toLabel(), period, Money.format(spent),
+                Money.format(budget.limit()), percent());
+    }
+
+}
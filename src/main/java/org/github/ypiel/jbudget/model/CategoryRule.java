@@ -0,0 +1,50 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Rule used to categorize an entry automatically.
+ *
+ * @param labelPattern Case-insensitive text that must appear in the entry label, blank to match any label.
+ * @param account      Account the entry must belong to, null for any account.
+ * @param minAmount    Lower bound (inclusive) of the signed entry value, null for no bound.
+ * @param maxAmount    Upper bound (inclusive) of the signed entry value, null for no bound.
+ * @param category     Category set on the matching entries.
+ * @param description  Description set on the matching entries without description, may be empty.
+ */
+public record CategoryRule(String labelPattern, Account account, Double minAmount, Double maxAmount,
+                           EntryCategory category, String description) {
+
+    public CategoryRule {
+        if (labelPattern == null) {
+            labelPattern = "";
+        }
+        if (description == null) {
+            description = "";
+        }
+        if (category == null || category == EntryCategory.ALL) {
+            throw new IllegalArgumentException("Rule category cannot be null or ALL: " + labelPattern);
+        }
+        if (minAmount != null && maxAmount != null && minAmount > maxAmount) {
+            throw new IllegalArgumentException(String.format("Rule '%s' has min amount %.2f greater than max amount %.2f",
+                    labelPattern, minAmount, maxAmount));
+        }
+    }
+
+    public CategoryRule(String labelPattern, EntryCategory category) {
+        this(labelPattern, null, null, null, category, "");
+    }
+
+    /**
+     * Checks the conditions of the rule that are not about the label.
+     */
+    public boolean acceptsAccountAndAmount(final Entry entry) {
+        if (account != null && !account.equals(entry.account())) {
+            return false;
+        }
+        long value = entry.value();
+        if (minAmount != null && value < Money.toCents(minAmount)) {
+            return false;
+        }
+        return maxAmount == null || value <= Money.toCents(maxAmount);
+    }
+
+}
@@ -0,0 +1,197 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Categorizes entries from a list of {@link CategoryRule}.
+ * <p>
+ * All label patterns are compiled into a single Aho-Corasick automaton, so a label is scanned once whatever the
+ * number of rules. When several rules match an entry, the first one in the list wins.
+ */
+public final class CategoryRuleEngine {
+
+    private static final int ROOT = 0;
+
+    private final List<CategoryRule> rules;
+
+    // Automaton, one slot per node. Edges of a node are sorted by char for binary search.
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] failures;
+    // Index of the rules whose pattern ends at the node, including the ones reached by failure links
+    private final int[][] outputs;
+
+    // Rules without label pattern: they are candidates for every entry
+    private final long[] anyLabelRules;
+
+    private CategoryRuleEngine(final List<CategoryRule> rules) {
+        this.rules = List.copyOf(rules);
+
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeRules = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeRules.add(new ArrayList<>());
+
+        this.anyLabelRules = new long[wordCount()];
+        for (int r = 0; r < this.rules.size(); r++) {
+            String pattern = this.rules.get(r).labelPattern();
+            if (pattern.isBlank()) {
+                anyLabelRules[r >>> 6] |= 1L << r;
+                continue;
+            }
+            int node = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = Character.toLowerCase(pattern.charAt(i));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    nodeRules.add(new ArrayList<>());
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            nodeRules.get(node).add(r);
+        }
+
+        int size = trie.size();
+        this.edgeChars = new char[size][];
+        this.edgeTargets = new int[size][];
+        for (int n = 0; n < size; n++) {
+            TreeMap<Character, Integer> edges = trie.get(n);
+            edgeChars[n] = new char[edges.size()];
+            edgeTargets[n] = new int[edges.size()];
+            int i = 0;
+            for (var edge : edges.entrySet()) {
+                edgeChars[n][i] = edge.getKey();
+                edgeTargets[n][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Breadth first so that the failure of a node is always computed before the node itself
+        this.failures = new int[size];
+        this.outputs = new int[size][];
+        outputs[ROOT] = new int[0];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[ROOT]) {
+            failures[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int[] own = nodeRules.get(node).stream().mapToInt(Integer::intValue).toArray();
+            outputs[node] = concat(own, outputs[failures[node]]);
+
+            for (int i = 0; i < edgeChars[node].length; i++) {
+                int child = edgeTargets[node][i];
+                failures[child] = transition(failures[node], edgeChars[node][i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    public static CategoryRuleEngine compile(final List<CategoryRule> rules) {
+        return new CategoryRuleEngine(rules);
+    }
+
+    public List<CategoryRule> rules() {
+        return rules;
+    }
+
+    /**
+     * @return The first rule matching the entry, if any.
+     */
+    public Optional<CategoryRule> match(final Entry entry) {
+        if (rules.isEmpty()) {
+            return Optional.empty();
+        }
+
+        long[] candidates = Arrays.copyOf(anyLabelRules, anyLabelRules.length);
+        String label = entry.label();
+        int state = ROOT;
+        for (int i = 0; i < label.length(); i++) {
+            state = transition(state, Character.toLowerCase(label.charAt(i)));
+            for (int r : outputs[state]) {
+                candidates[r >>> 6] |= 1L << r;
+            }
+        }
+
+        for (int w = 0; w < candidates.length; w++) {
+            long word = candidates[w];
+            while (word != 0) {
+                int r = (w << 6) + Long.numberOfTrailingZeros(word);
+                CategoryRule rule = rules.get(r);
+                if (rule.acceptsAccountAndAmount(entry)) {
+                    return Optional.of(rule);
+                }
+                word &= word - 1;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Applies the first matching rule to an entry still in {@link EntryCategory#MISC}.
+     * Entries already categorized are returned unchanged so that manual choices are never overridden.
+     */
+    public Entry categorize(final Entry entry) {
+        if (entry.category() != EntryCategory.MISC) {
+            return entry;
+        }
+        return match(entry).map(rule -> {
+            Entry e = entry.withCategory(rule.category());
+            if (!rule.description().isEmpty() && e.description().isEmpty()) {
+                e = e.withDescription(rule.description());
+            }
+            return e;
+        }).orElse(entry);
+    }
+
+    /**
+     * Bulk re-categorization.
+     *
+     * @return The categorized entries, in the same order as the given ones.
+     */
+    public List<Entry> categorizeAll(final Collection<Entry> entries) {
+        List<Entry> result = new ArrayList<>(entries.size());
+        for (Entry e : entries) {
+            result.add(categorize(e));
+        }
+        return result;
+    }
+
+    private int transition(int state, char c) {
+        while (true) {
+            int i = Arrays.binarySearch(edgeChars[state], c);
+            if (i >= 0) {
+                return edgeTargets[state][i];
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failures[state];
+        }
+    }
+
+    private int wordCount() {
+        return (rules.size() + 63) >>> 6;
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+}
@@ -0,0 +1,96 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The last computed chart series, so that showing again an account, a range or a zoom level does not scan the
+ * entries again.
+ * <p>
+ * Bounded, the least recently used series is evicted first. A store change only evicts the series covering the
+ * previous or the new version of a modified entry, see {@link ChartSeriesKey#covers(Entry)}. Thread-safe, a series
+ * computed from a snapshot older than a change received meanwhile is not kept.
+ */
+public class ChartSeriesCache implements EntryStoreListener {
+
+    public static final int MAX_SERIES = 64;
+
+    private final EntryStore store;
+    private final Map<ChartSeriesKey, SortedMap<LocalDate, Long>> series =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<ChartSeriesKey, SortedMap<LocalDate, Long>> eldest) {
+                    return size() > MAX_SERIES;
+                }
+            };
+    // Incremented by each change, a series computed across a change may be outdated
+    private long generation;
+
+    public ChartSeriesCache(final EntryStore store) {
+        this.store = store;
+        store.addListener(this);
+    }
+
+    /**
+     * Empties the cache, needed after {@link EntryStore#clear()} which does not notify.
+     */
+    public synchronized void clear() {
+        series.clear();
+        generation++;
+    }
+
+    @Override
+    public synchronized void onChange(final List<EntryStoreChange> changes) {
+        generation++;
+        Iterator<ChartSeriesKey> keys = series.keySet().iterator();
+        while (keys.hasNext()) {
+            ChartSeriesKey key = keys.next();
+            for (EntryStoreChange change : changes) {
+                if ((change.previous() != null && key.covers(change.previous()))
+                        || (change.current() != null && key.covers(change.current()))) {
+                    keys.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Sum in cents of the entries of each period of the key, keyed by the last day of the period, see
+     * {@link EntryColumns#periodTotals}. Read-only.
+     */
+    public SortedMap<LocalDate, Long> series(final ChartSeriesKey key) {
+        return series(key, store.snapshot());
+    }
+
+    /**
+     * @param snapshot Version of the store to compute the series from, the series is only cached while it is the
+     *                 current one.
+     */
+    public SortedMap<LocalDate, Long> series(final ChartSeriesKey key, final EntryStore.Snapshot snapshot) {
+        long computedGeneration;
+        synchronized (this) {
+            boolean current = snapshot == store.snapshot();
+            SortedMap<LocalDate, Long> cached = current ? series.get(key) : null;
+            if (cached != null) {
+                return cached;
+            }
+            computedGeneration = current ? generation : -1;
+        }
+        // Computed out of the lock, the changes are not blocked meanwhile
+        SortedMap<LocalDate, Long> computed = Collections.unmodifiableSortedMap(snapshot.columns()
+                .periodTotals(key.accounts(), key.from(), key.to(), key.category(), key.granularity()));
+        synchronized (this) {
+            if (generation == computedGeneration) {
+                series.put(key, computed);
+            }
+        }
+        return computed;
+    }
+
+}
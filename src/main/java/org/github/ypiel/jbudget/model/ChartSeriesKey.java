@@ -0,0 +1,45 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * The entries and the period of a chart series, see {@link ChartSeriesCache}.
+ *
+ * @param accounts    The accounts of the entries, null for all the accounts.
+ * @param from        First operation date, null for no lower bound.
+ * @param to          Last operation date, null for no upper bound.
+ * @param granularity The period of the points.
+ * @param category    Category of the entries, ALL for any category.
+ */
+public record ChartSeriesKey(Set<Account> accounts, LocalDate from, LocalDate to, Granularity granularity,
+                             EntryCategory category) {
+
+    public ChartSeriesKey {
+        accounts = accounts == null ? null : Set.copyOf(accounts);
+        if (granularity == null) {
+            throw new IllegalArgumentException("Granularity cannot be null");
+        }
+        category = category == null ? EntryCategory.ALL : category;
+    }
+
+    /**
+     * @return A key of the entries of an account, null for all the accounts, whatever their date and category.
+     */
+    public static ChartSeriesKey of(final Account account, final Granularity granularity) {
+        return new ChartSeriesKey(account == null ? null : Set.of(account), null, null, granularity,
+                EntryCategory.ALL);
+    }
+
+    /**
+     * @return True when the entry is counted in the series.
+     */
+    boolean covers(final Entry entry) {
+        LocalDate date = entry.dateOperation();
+        return (accounts == null || accounts.contains(entry.account()))
+                && (from == null || !date.isBefore(from))
+                && (to == null || !date.isAfter(to))
+                && (category == EntryCategory.ALL || category == entry.category());
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fuzzy duplicate detection between new and already known entries.
+ * <p>
+ * Banks may change the value date or reformat the label of an operation between two exports. Entries are blocked
+ * by account and amount, sorted by operation date, and only the ones within a date window are compared, on a
+ * normalized label similarity. The whole history is scanned in O(n log n) instead of comparing every pair.
+ */
+public final class DuplicateDetector {
+
+    public static final int DEFAULT_DATE_WINDOW_DAYS = 3;
+    public static final double DEFAULT_THRESHOLD = 0.8;
+
+    private final int dateWindowDays;
+    private final double threshold;
+
+    public DuplicateDetector() {
+        this(DEFAULT_DATE_WINDOW_DAYS, DEFAULT_THRESHOLD);
+    }
+
+    public DuplicateDetector(final int dateWindowDays, final double threshold) {
+        if (dateWindowDays < 0) {
+            throw new IllegalArgumentException("Date window cannot be negative: " + dateWindowDays);
+        }
+        if (threshold < 0 || threshold > 1) {
+            throw new IllegalArgumentException("Threshold must be between 0 and 1: " + threshold);
+        }
+        this.dateWindowDays = dateWindowDays;
+        this.threshold = threshold;
+    }
+
+    /**
+     * A new entry is a duplicate of a known entry when they are close enough. Each known entry can only explain
+     * one new entry, so that two identical purchases are not both hidden by a single known one.
+     * Two new entries are only considered duplicates of each other when they are strictly identical.
+     * Entries already flagged as duplicate are ignored.
+     *
+     * @param entries The entries to scan.
+     * @return The index, in the given list, of the new entries to flag as duplicate.
+     */
+    public BitSet detect(final List<Entry> entries) {
+        int n = entries.size();
+        int[] accounts = new int[n];
+        long[] amounts = new long[n];
+        long[] days = new long[n];
+        Map<Account, Integer> accountIds = new HashMap<>();
+        List<Integer> candidates = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Entry e = entries.get(i);
+            if (e.duplicate()) {
+                continue;
+            }
+            accounts[i] = accountIds.computeIfAbsent(e.account(), _ -> accountIds.size());
+            amounts[i] = e.value();
+            days[i] = e.dateOperation().toEpochDay();
+            candidates.add(i);
+        }
+
+        Integer[] sorted = candidates.toArray(new Integer[0]);
+        Arrays.sort(sorted, Comparator.<Integer>comparingInt(i -> accounts[i])
+                .thenComparingLong(i -> amounts[i])
+                .thenComparingLong(i -> days[i]));
+
+        String[] normalized = new String[n];
+        BitSet flagged = new BitSet(n);
+        BitSet matched = new BitSet(n);
+        for (int a = 0; a < sorted.length; a++) {
+            int i = sorted[a];
+            for (int b = a + 1; b < sorted.length; b++) {
+                int j = sorted[b];
+                if (accounts[j] != accounts[i] || amounts[j] != amounts[i] || days[j] - days[i] > dateWindowDays) {
+                    break;
+                }
+                if (flagged.get(i)) {
+                    break;
+                }
+                if (flagged.get(j)) {
+                    continue;
+                }
+
+                Entry ei = entries.get(i);
+                Entry ej = entries.get(j);
+                if (ei.newEntry() && ej.newEntry()) {
+                    if (ei.compareTo(ej) == 0) {
+                        flagged.set(j);
+                    }
+                    continue;
+                }
+                if (ei.newEntry() == ej.newEntry()) {
+                    continue;
+                }
+
+                int known = ei.newEntry() ? j : i;
+                int fresh = ei.newEntry() ? i : j;
+                if (matched.get(known)) {
+                    continue;
+                }
+                if (normalized[i] == null) {
+                    normalized[i] = normalize(ei.label());
+                }
+                if (normalized[j] == null) {
+                    normalized[j] = normalize(ej.label());
+                }
+                if (similarity(normalized[i], normalized[j]) >= threshold) {
+                    matched.set(known);
+                    flagged.set(fresh);
+                }
+            }
+        }
+        return flagged;
+    }
+
+    /**
+     * Upper case, alphanumeric characters only, separated by single spaces.
+     */
+    static String normalize(final String label) {
+        StringBuilder sb = new StringBuilder(label.length());
+        boolean space = false;
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && !sb.isEmpty()) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toUpperCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Dice coefficient over the character bigrams of the two normalized labels.
+     *
+     * @return 1 for identical labels, 0 for labels without common bigram.
+     */
+    public static double similarity(final String a, final String b) {
+        if (a.equals(b)) {
+            return 1;
+        }
+        int[] ba = bigrams(a);
+        int[] bb = bigrams(b);
+        if (ba.length == 0 || bb.length == 0) {
+            return 0;
+        }
+
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ba.length && j < bb.length) {
+            if (ba[i] == bb[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (ba[i] < bb[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return 2.0 * common / (ba.length + bb.length);
+    }
+
+    private static int[] bigrams(final String s) {
+        if (s.length() < 2) {
+            return new int[0];
+        }
+        int[] result = new int[s.length() - 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (s.charAt(i) << 16) | s.charAt(i + 1);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+}
@@ -3,8 +3,18 @@ package org.github.ypiel.jbudget.model;
 import java.time.LocalDate;
 import java.util.Collection;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A transaction of an account. Debit and credit are in cents, see {@link Money}.
+ */
 public record Entry(Account account, LocalDate dateOperation, LocalDate dateValue, String label, String description,
-                    double debit, double credit, EntryCategory category,
+                    @JsonSerialize(using = Money.CentsSerializer.class)
+                    @JsonDeserialize(using = Money.CentsDeserializer.class) long debit,
+                    @JsonSerialize(using = Money.CentsSerializer.class)
+                    @JsonDeserialize(using = Money.CentsDeserializer.class) long credit,
+                    EntryCategory category,
                     boolean newEntry, boolean duplicate) implements Comparable<Entry> {
 
     public Entry {
@@ -13,14 +23,14 @@ public record Entry(Account account, LocalDate dateOperation, LocalDate dateValu
         }
 
         if (account == null || dateOperation == null || dateValue == null || label == null || description == null || (debit < 0 && credit < 0)) {
-            throw new IllegalArgumentException("Entry with wrong parameters: " + String.format("account: %s, dateOperation: %s, dateValue: %s, label: %s, description: %s, debit: %.2f, credit: %.2f",
-                    account, dateOperation, dateValue, label, description, debit, credit));
+            throw new IllegalArgumentException("Entry with wrong parameters: " + String.format("account: %s, dateOperation: %s, dateValue: %s, label: %s, description: %s, debit: %s, credit: %s",
+                    account, dateOperation, dateValue, label, description, Money.format(debit), Money.format(credit)));
         }
 
     }
 
     public Entry(Account account, LocalDate dateOperation, LocalDate dateValue, String label, String description,
-                 double debit, double credit, EntryCategory category) {
+                 long debit, long credit, EntryCategory category) {
         this(account, dateOperation, dateValue, label, description, debit, credit, category, false, false);
     }
 
@@ -48,7 +58,10 @@ public record Entry(Account account, LocalDate dateOperation, LocalDate dateValu
         return new Entry(account, dateOperation, dateValue, label, description, debit, credit, category, false, duplicate);
     }
 
-    public double value(){
+    /**
+     * @return The signed amount in cents, negative for a debit.
+     */
+    public long value(){
         if(debit > 0){
             return debit * -1;
         }
@@ -71,11 +84,11 @@ public record Entry(Account account, LocalDate dateOperation, LocalDate dateValu
         if (cmp != 0) return cmp;
 
         // Compare by debit (ascending)
-        cmp = Double.compare(this.debit(), e.debit());
+        cmp = Long.compare(this.debit(), e.debit());
         if (cmp != 0) return cmp;
 
         // Compare by credit (ascending)
-        cmp = Double.compare(this.credit(), e.credit());
+        cmp = Long.compare(this.credit(), e.credit());
         if (cmp != 0) return cmp;
 
         // Compare by account (if Account implements Comparable)
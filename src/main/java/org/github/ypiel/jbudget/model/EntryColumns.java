@@ -0,0 +1,317 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The entries of a {@link EntryStore.Snapshot} as primitive columns, in their natural order, for the
+ * {@link AmountKernels}.
+ * <p>
+ * All the columns are longs so that a lane of a key column matches the same lane of the amount column. Since the
+ * entries are sorted by operation date, a date range is a contiguous range of positions found by binary search.
+ * Grouped totals are computed by the {@link ParallelAggregator}.
+ */
+public final class EntryColumns {
+
+    static final long NEW = 1;
+    static final long DUPLICATE = 2;
+
+    private final AmountKernels kernels = AmountKernels.instance();
+
+    // Operation date as epoch day, ascending
+    private final long[] days;
+    // Signed value in cents, 0 for a duplicate since duplicates are not counted
+    private final long[] amounts;
+    // Signed value in cents
+    final long[] values;
+    // Value date as epoch day
+    private final long[] valueDays;
+    // Month of the value date, as year * 12 + month - 1
+    private final long[] valueMonths;
+    // Index in accounts
+    final long[] accountIndexes;
+    final long[] categories;
+    // NEW and DUPLICATE bits
+    final long[] flags;
+    final String[] lowerLabels;
+    private final int[] ids;
+    // Position of each id, -1 for a removed entry
+    private final int[] positions;
+
+    private final List<Account> accounts = new ArrayList<>();
+    private final Map<Account, Integer> accountIndexMap = new HashMap<>();
+
+    // Statistics, for the query plans
+    private final int[] accountCounts;
+    private final int[] categoryCounts = new int[EntryCategory.values().length];
+    private int newCount;
+    private int duplicateCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue = Long.MIN_VALUE;
+
+    /**
+     * @param base    Columns of a previous version, whose rows of unchanged entries are copied. Null to read all the
+     *                entries.
+     * @param changed Ids whose entry may differ from the base version.
+     */
+    EntryColumns(final EntryStore.Snapshot snapshot, final int maxId, final EntryColumns base, final BitSet changed) {
+        int size = snapshot.size();
+        days = new long[size];
+        amounts = new long[size];
+        values = new long[size];
+        valueDays = new long[size];
+        valueMonths = new long[size];
+        accountIndexes = new long[size];
+        categories = new long[size];
+        flags = new long[size];
+        lowerLabels = new String[size];
+        ids = snapshot.ids();
+        positions = new int[maxId];
+        Arrays.fill(positions, -1);
+
+        // Index of the base accounts in this version, -1 when not known yet
+        int[] baseAccountIndexes = new int[base == null ? 0 : base.accounts.size()];
+        Arrays.fill(baseAccountIndexes, -1);
+
+        for (int p = 0; p < size; p++) {
+            int id = ids[p];
+            positions[id] = p;
+            int q = base == null || changed.get(id) || id >= base.positions.length ? -1 : base.positions[id];
+            if (q >= 0) {
+                copyRow(base, q, p, baseAccountIndexes);
+            } else {
+                readRow(snapshot.get(id), p);
+            }
+
+            categoryCounts[(int) categories[p]]++;
+            newCount += (flags[p] & NEW) != 0 ? 1 : 0;
+            duplicateCount += (flags[p] & DUPLICATE) != 0 ? 1 : 0;
+            minValue = Math.min(minValue, values[p]);
+            maxValue = Math.max(maxValue, values[p]);
+        }
+
+        accountCounts = new int[accounts.size()];
+        for (long accountIndex : accountIndexes) {
+            accountCounts[(int) accountIndex]++;
+        }
+    }
+
+    private void readRow(final Entry e, final int p) {
+        days[p] = e.dateOperation().toEpochDay();
+        values[p] = e.value();
+        amounts[p] = e.duplicate() ? 0 : e.value();
+        valueDays[p] = e.dateValue().toEpochDay();
+        valueMonths[p] = e.dateValue().getYear() * 12L + e.dateValue().getMonthValue() - 1;
+        accountIndexes[p] = addAccount(e.account());
+        categories[p] = e.category().ordinal();
+        flags[p] = (e.newEntry() ? NEW : 0) | (e.duplicate() ? DUPLICATE : 0);
+        lowerLabels[p] = e.label().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Copies the row of an unchanged entry, its account index being mapped to this version.
+     */
+    private void copyRow(final EntryColumns base, final int q, final int p, final int[] baseAccountIndexes) {
+        days[p] = base.days[q];
+        values[p] = base.values[q];
+        amounts[p] = base.amounts[q];
+        valueDays[p] = base.valueDays[q];
+        valueMonths[p] = base.valueMonths[q];
+        int baseAccount = (int) base.accountIndexes[q];
+        if (baseAccountIndexes[baseAccount] < 0) {
+            baseAccountIndexes[baseAccount] = addAccount(base.accounts.get(baseAccount));
+        }
+        accountIndexes[p] = baseAccountIndexes[baseAccount];
+        categories[p] = base.categories[q];
+        flags[p] = base.flags[q];
+        lowerLabels[p] = base.lowerLabels[q];
+    }
+
+    /**
+     * @return Index of the account, added to the account column at its first entry.
+     */
+    private int addAccount(final Account account) {
+        return accountIndexMap.computeIfAbsent(account, a -> {
+            accounts.add(a);
+            return accounts.size() - 1;
+        });
+    }
+
+    public int size() {
+        return days.length;
+    }
+
+    /**
+     * @return The positions of the given ids, removed ones are skipped.
+     */
+    public int[] positions(final int[] ids) {
+        return Arrays.stream(ids)
+                .filter(id -> id < positions.length && positions[id] >= 0)
+                .map(id -> positions[id])
+                .toArray();
+    }
+
+    /**
+     * @return Sum in cents of the entries at the given positions for each of their accounts, duplicates excluded.
+     */
+    public Map<Account, Long> totalsByAccount(final int[] positions) {
+        int nbAccounts = accounts.size();
+        // Number of entries of each account, then their sum, in a single pass over the positions
+        long[] result = ParallelAggregator.aggregate(positions.length, (from, to) -> {
+            long[] partial = new long[nbAccounts * 2];
+            for (int i = from; i < to; i++) {
+                int p = positions[i];
+                int accountIndex = (int) accountIndexes[p];
+                partial[accountIndex]++;
+                partial[nbAccounts + accountIndex] += amounts[p];
+            }
+            return partial;
+        });
+
+        Map<Account, Long> totals = new LinkedHashMap<>();
+        for (int a = 0; a < nbAccounts; a++) {
+            if (result[a] > 0) {
+                totals.put(accounts.get(a), result[nbAccounts + a]);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @param accounts    The accounts of the entries, null for all the accounts.
+     * @param from        First operation date, null for no lower bound.
+     * @param to          Last operation date, null for no upper bound.
+     * @param category    Category of the entries, ALL or null for any category.
+     * @param granularity The period of the totals.
+     * @return Sum in cents of the entries of each period of value date, keyed by the last day of the period,
+     * duplicates excluded. Periods without entries are not kept.
+     */
+    public SortedMap<LocalDate, Long> periodTotals(final Set<Account> accounts, final LocalDate from,
+                                                   final LocalDate to, final EntryCategory category,
+                                                   final Granularity granularity) {
+        SortedMap<LocalDate, Long> totals = new TreeMap<>();
+        int start = from == null ? 0 : firstPosition(from.toEpochDay());
+        int end = to == null ? size() : firstPosition(to.toEpochDay() + 1);
+        if (start >= end) {
+            return totals;
+        }
+        boolean[] selected = new boolean[this.accounts.size()];
+        for (int a = 0; a < selected.length; a++) {
+            selected[a] = accounts == null || accounts.contains(this.accounts.get(a));
+        }
+        long categoryIndex = category == null || category == EntryCategory.ALL ? -1 : category.ordinal();
+        // Value dates are not sorted: the bounds are those of the whole range
+        long firstIndex = granularity.index(kernels.min(valueDays, start, end), kernels.min(valueMonths, start, end));
+        int nbPeriods = (int) (granularity.index(kernels.max(valueDays, start, end),
+                kernels.max(valueMonths, start, end)) - firstIndex + 1);
+
+        // Number of entries of each period, then their sum
+        long[] result = ParallelAggregator.aggregate(end - start, (f, t) -> {
+            long[] partial = new long[nbPeriods * 2];
+            for (int p = start + f; p < start + t; p++) {
+                if (selected[(int) accountIndexes[p]] && (categoryIndex < 0 || categories[p] == categoryIndex)) {
+                    int period = (int) (granularity.index(valueDays[p], valueMonths[p]) - firstIndex);
+                    partial[period]++;
+                    partial[nbPeriods + period] += amounts[p];
+                }
+            }
+            return partial;
+        });
+
+        for (int i = 0; i < nbPeriods; i++) {
+            if (result[i] > 0) {
+                totals.put(granularity.end(firstIndex + i), result[nbPeriods + i]);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @param from     First operation date, null for no lower bound.
+     * @param to       Last operation date, null for no upper bound.
+     * @param category Category of the entries, ALL or null for any category.
+     * @return Sum in cents of the entries in the range, duplicates excluded.
+     */
+    public long total(final LocalDate from, final LocalDate to, final EntryCategory category) {
+        int start = from == null ? 0 : firstPosition(from.toEpochDay());
+        int end = to == null ? size() : firstPosition(to.toEpochDay() + 1);
+        if (start >= end) {
+            return 0;
+        }
+        if (category == null || category == EntryCategory.ALL) {
+            return kernels.sum(amounts, start, end);
+        }
+        return kernels.sumWhereEquals(amounts, categories, category.ordinal(), start, end);
+    }
+
+    int idAt(final int position) {
+        return ids[position];
+    }
+
+    /**
+     * @return Index of the account in the account column, -1 if it has no entry.
+     */
+    int accountIndex(final Account account) {
+        Integer index = accountIndexMap.get(account);
+        return index == null ? -1 : index;
+    }
+
+    int accountCount(final int accountIndex) {
+        return accountCounts[accountIndex];
+    }
+
+    int categoryCount(final int ordinal) {
+        return categoryCounts[ordinal];
+    }
+
+    int newCount() {
+        return newCount;
+    }
+
+    int duplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return Estimated fraction of the entries with a value in [low..high], assuming values uniformly spread.
+     */
+    double valueFraction(final long low, final long high) {
+        if (size() == 0 || high < minValue || low > maxValue) {
+            return 0;
+        }
+        if (minValue == maxValue) {
+            return 1;
+        }
+        double from = Math.max(low, minValue);
+        double to = Math.min(high, maxValue);
+        return (to - from) / ((double) maxValue - minValue);
+    }
+
+    /**
+     * @return First position with an operation date not before the given day.
+     */
+    int firstPosition(final long day) {
+        int low = 0;
+        int high = days.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (days[mid] < day) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+}
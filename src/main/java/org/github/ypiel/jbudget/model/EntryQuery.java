@@ -0,0 +1,65 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Criteria of a search in the entries, all of them must match.
+ *
+ * @param account        Account of the entries, null for any account.
+ * @param label          Case-insensitive text that must appear in the label, empty for any label.
+ * @param category       Category of the entries, ALL for any category.
+ * @param from           First operation date, null for no lower bound.
+ * @param to             Last operation date, null for no upper bound.
+ * @param onlyNew        Only the entries imported since the last save.
+ * @param onlyDuplicates Only the entries flagged as duplicate.
+ * @param minAmount      Lower bound (inclusive) in cents of the signed entry value, null for no bound.
+ * @param maxAmount      Upper bound (inclusive) in cents of the signed entry value, null for no bound.
+ */
+public record EntryQuery(Account account, String label, EntryCategory category, LocalDate from, LocalDate to,
+                         boolean onlyNew, boolean onlyDuplicates,
+                         @JsonSerialize(using = Money.CentsSerializer.class)
+                         @JsonDeserialize(using = Money.CentsDeserializer.class) Long minAmount,
+                         @JsonSerialize(using = Money.CentsSerializer.class)
+                         @JsonDeserialize(using = Money.CentsDeserializer.class) Long maxAmount) {
+
+    public EntryQuery {
+        label = label == null ? "" : label.trim().toLowerCase(Locale.ROOT);
+        if (category == null) {
+            category = EntryCategory.ALL;
+        }
+    }
+
+    /**
+     * Tests a single entry, to maintain a result without running the query again.
+     */
+    public boolean matches(final Entry entry) {
+        if (account != null && !account.equals(entry.account())) {
+            return false;
+        }
+        if (category != EntryCategory.ALL && category != entry.category()) {
+            return false;
+        }
+        if ((onlyNew && !entry.newEntry()) || (onlyDuplicates && !entry.duplicate())) {
+            return false;
+        }
+        if ((from != null && entry.dateOperation().isBefore(from)) || (to != null && entry.dateOperation().isAfter(to))) {
+            return false;
+        }
+        if ((minAmount != null && entry.value() < minAmount) || (maxAmount != null && entry.value() > maxAmount)) {
+            return false;
+        }
+        return label.isEmpty() || entry.label().toLowerCase(Locale.ROOT).contains(label);
+    }
+
+    /**
+     * Chooses how to run the query on the given columns, see {@link QueryPlan}.
+     */
+    public QueryPlan compile(final EntryColumns columns) {
+        return new QueryPlan(this, columns);
+    }
+
+}
@@ -0,0 +1,655 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * All the entries, each one identified by a stable int id.
+ * <p>
+ * Ids are never reused while the store is not cleared, so that a query result can be kept as an array of ids
+ * instead of a copy of the entries. An update replaces the entry but keeps its id.
+ * <p>
+ * The store keeps the ids in the natural order of the entries, so that scanning it gives sorted results. The
+ * order is a {@link PersistentIntList} maintained on each mutation in O(log n) per entry: an entry is inserted at the
+ * position found by a binary search, a large batch is sorted then merged. Comparisons first use sort keys computed
+ * once per entry, {@link Entry#compareTo(Entry)} is only called for entries of the same dates and label prefix.
+ * <p>
+ * Each mutation produces a new immutable {@link Snapshot}: entries are held in a {@link PersistentVector} and the
+ * order in a {@link PersistentIntList}, so a version only costs the nodes it changed. Versions saved with
+ * {@link #checkpoint(String)} give undo and redo, and a snapshot can be read while the store is modified.
+ * <p>
+ * Listeners are notified after each mutation, undo and redo included, except {@link #clear()}.
+ * <p>
+ * The store is thread-safe: mutations are serialized by the write lock of a {@link StampedLock}, the current snapshot
+ * is published through a volatile field so readers never block nor wait for a writer. Listeners are called by the
+ * writing thread while it holds the lock, so they see the changes in order, and must not modify the store.
+ */
+public class EntryStore {
+
+    private static final int MAX_HISTORY = 100;
+    // A batch larger than the order divided by this ratio is merged with a copy of the order, instead of inserted
+    // entry by entry: each insertion copies a path of a few nodes of up to 64 elements
+    private static final int MERGE_RATIO = 64;
+
+    private final StampedLock lock = new StampedLock();
+
+    private volatile Snapshot current = Snapshot.EMPTY;
+
+    // Guarded by the lock
+    private final Deque<Checkpoint> undoHistory = new ArrayDeque<>();
+    private final Deque<Checkpoint> redoHistory = new ArrayDeque<>();
+
+    private final List<EntryStoreListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(final EntryStoreListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(final EntryStoreListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return The current version of the store, never modified afterward.
+     */
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * Runs an action on the current version while no mutation can happen, so that a listener initialized from that
+     * version receives exactly the changes made after it. Listeners are notified under the same lock: the action must
+     * take a lock also taken by a listener only inside, never around this call.
+     */
+    public <T> T withSnapshot(final Function<Snapshot, T> action) {
+        long stamp = lock.writeLock();
+        try {
+            return action.apply(current);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int add(final Entry entry) {
+        long stamp = lock.writeLock();
+        try {
+            Snapshot s = current;
+            int id = s.slots.size();
+            PersistentVector<Slot> slots = s.slots.append(Slot.of(entry));
+            current = s.next(slots, s.order.insert(insertionPoint(s.order, slots, id), id));
+            fire(List.of(new EntryStoreChange(id, null, entry)));
+            return id;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int[] addAll(final Collection<Entry> newEntries) {
+        Batch batch = Batch.of(newEntries);
+        long stamp = lock.writeLock();
+        try {
+            int first = current.slots.size();
+            current = batch.addTo(current, first);
+            return fireAdded(first, batch.slots().size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds entries which were saved but not loaded yet, such as an older year read on demand. They are added to the
+     * versions kept for undo and redo too: the history is kept, and restoring a version does not drop them.
+     *
+     * @return The ids of the entries, in the order of the collection.
+     */
+    public int[] load(final Collection<Entry> savedEntries) {
+        Batch batch = Batch.of(savedEntries);
+        long stamp = lock.writeLock();
+        try {
+            // Ids not used by any version, a redo version may have more entries than the current one
+            int first = current.slots.size();
+            for (Checkpoint checkpoint : undoHistory) {
+                first = Math.max(first, checkpoint.snapshot().slots.size());
+            }
+            for (Checkpoint checkpoint : redoHistory) {
+                first = Math.max(first, checkpoint.snapshot().slots.size());
+            }
+            current = batch.addTo(current, first);
+            addTo(undoHistory, batch, first);
+            addTo(redoHistory, batch, first);
+            return fireAdded(first, batch.slots().size());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Notifies the entries added with consecutive ids, the write lock must be held.
+     *
+     * @return The ids of the entries.
+     */
+    private int[] fireAdded(final int first, final int count) {
+        int[] ids = new int[count];
+        List<EntryStoreChange> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids[i] = first + i;
+            changes.add(new EntryStoreChange(ids[i], null, current.get(ids[i])));
+        }
+        fire(changes);
+        return ids;
+    }
+
+    private static void addTo(final Deque<Checkpoint> history, final Batch batch, final int first) {
+        List<Checkpoint> checkpoints = new ArrayList<>(history);
+        history.clear();
+        for (Checkpoint checkpoint : checkpoints) {
+            history.addLast(new Checkpoint(checkpoint.description(), batch.addTo(checkpoint.snapshot(), first)));
+        }
+    }
+
+    /**
+     * @return The entry with the given id, null if it has been removed.
+     */
+    public Entry get(final int id) {
+        return current.get(id);
+    }
+
+    public void set(final int id, final Entry entry) {
+        long stamp = lock.writeLock();
+        try {
+            if (current.get(id) == null) {
+                throw new IllegalArgumentException("No entry with id " + id);
+            }
+            fire(List.of(replace(id, entry)));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces each entry by the result of the update, as a single mutation: no other writer can modify the entries
+     * between their read and their replacement. Removed entries are skipped.
+     *
+     * @param update Returns the entry itself when it does not change.
+     * @return The number of entries replaced.
+     */
+    public int update(final int[] ids, final UnaryOperator<Entry> update) {
+        long stamp = lock.writeLock();
+        try {
+            List<EntryStoreChange> changes = new ArrayList<>();
+            for (int id : ids) {
+                Entry previous = current.get(id);
+                if (previous == null) {
+                    continue;
+                }
+                Entry entry = update.apply(previous);
+                if (entry != previous) {
+                    changes.add(replace(id, entry));
+                }
+            }
+            fire(changes);
+            return changes.size();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(final int id) {
+        long stamp = lock.writeLock();
+        try {
+            Snapshot s = current;
+            Entry previous = s.get(id);
+            if (previous == null) {
+                return;
+            }
+            current = s.next(s.slots.set(id, null), unlink(s.order, s.slots, id));
+            fire(List.of(new EntryStoreChange(id, previous, null)));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void removeAll(final int[] ids) {
+        long stamp = lock.writeLock();
+        try {
+            Snapshot s = current;
+            PersistentVector<Slot> slots = s.slots;
+            List<EntryStoreChange> changes = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                Entry previous = s.get(id);
+                if (previous != null && slots.get(id) != null) {
+                    slots = slots.set(id, null);
+                    changes.add(new EntryStoreChange(id, previous, null));
+                }
+            }
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            PersistentIntList order;
+            if (changes.size() * MERGE_RATIO > s.size) {
+                int[] kept = new int[s.size - changes.size()];
+                int k = 0;
+                for (int id : s.order.toArray()) {
+                    if (slots.get(id) != null) {
+                        kept[k++] = id;
+                    }
+                }
+                order = PersistentIntList.of(kept);
+            } else {
+                // Found with the previous slots, which still hold the removed entries
+                order = s.order;
+                for (EntryStoreChange change : changes) {
+                    order = unlink(order, s.slots, change.id());
+                }
+            }
+            current = s.next(slots, order);
+            fire(changes);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes all the entries, and the undo history.
+     */
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            current = Snapshot.EMPTY;
+            undoHistory.clear();
+            redoHistory.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    /**
+     * @return The ids of all the entries, in the natural order of the entries.
+     */
+    public int[] ids() {
+        return current.ids();
+    }
+
+    /**
+     * @return A copy of the entries with the given ids.
+     */
+    public List<Entry> get(final int[] ids) {
+        return current.get(ids);
+    }
+
+    /**
+     * @return A copy of all the entries, in their natural order.
+     */
+    public List<Entry> entries() {
+        return current.entries();
+    }
+
+    /**
+     * Saves the current version, before an action the user may want to undo.
+     *
+     * @param description Description of the action about to be done.
+     */
+    public void checkpoint(final String description) {
+        long stamp = lock.writeLock();
+        try {
+            undoHistory.push(new Checkpoint(description, current));
+            if (undoHistory.size() > MAX_HISTORY) {
+                undoHistory.removeLast();
+            }
+            redoHistory.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public boolean canUndo() {
+        long stamp = lock.readLock();
+        try {
+            return !undoHistory.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean canRedo() {
+        long stamp = lock.readLock();
+        try {
+            return !redoHistory.isEmpty();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Restores the version saved by the last checkpoint.
+     *
+     * @return The description of the undone action, null if there is nothing to undo.
+     */
+    public String undo() {
+        return restore(undoHistory, redoHistory);
+    }
+
+    /**
+     * @return The description of the redone action, null if there is nothing to redo.
+     */
+    public String redo() {
+        return restore(redoHistory, undoHistory);
+    }
+
+    private String restore(final Deque<Checkpoint> from, final Deque<Checkpoint> to) {
+        long stamp = lock.writeLock();
+        try {
+            Checkpoint checkpoint = from.poll();
+            if (checkpoint == null) {
+                return null;
+            }
+            to.push(new Checkpoint(checkpoint.description(), current));
+
+            Snapshot previous = current;
+            Snapshot restored = checkpoint.snapshot();
+            current = restored;
+
+            // Only the sub-trees changed between both versions are visited
+            List<EntryStoreChange> changes = new ArrayList<>();
+            restored.slots.diff(previous.slots, id -> {
+                Entry before = previous.get(id);
+                Entry after = restored.get(id);
+                if (before != after) {
+                    changes.add(new EntryStoreChange(id, before, after));
+                }
+            });
+            fire(changes);
+            return checkpoint.description();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replaces an existing entry, the write lock must be held.
+     */
+    private EntryStoreChange replace(final int id, final Entry entry) {
+        Snapshot s = current;
+        Entry previous = s.get(id);
+        PersistentVector<Slot> slots = s.slots.set(id, Slot.of(entry));
+        if (previous.compareTo(entry) == 0) {
+            // Category, description or flags update: the position does not change, the order is shared
+            current = s.next(slots, s.order);
+        } else {
+            PersistentIntList order = unlink(s.order, s.slots, id);
+            current = s.next(slots, order.insert(insertionPoint(order, slots, id), id));
+        }
+        return new EntryStoreChange(id, previous, entry);
+    }
+
+    private void fire(final List<EntryStoreChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (EntryStoreListener listener : listeners) {
+            listener.onChange(changes);
+        }
+    }
+
+    /**
+     * Inserts ids, sorted and not yet in the order.
+     */
+    private static PersistentIntList insertAll(final PersistentIntList order, final PersistentVector<Slot> slots,
+                                               final int[] run) {
+        if (run.length * MERGE_RATIO <= order.size()) {
+            PersistentIntList result = order;
+            for (int id : run) {
+                result = result.insert(insertionPoint(result, slots, id), id);
+            }
+            return result;
+        }
+
+        // A large batch is merged in linear time instead
+        int[] current = order.toArray();
+        int[] merged = new int[current.length + run.length];
+        int a = 0;
+        int b = 0;
+        for (int k = 0; k < merged.length; k++) {
+            if (b >= run.length || (a < current.length && compare(slots, current[a], run[b]) < 0)) {
+                merged[k] = current[a++];
+            } else {
+                merged[k] = run[b++];
+            }
+        }
+        return PersistentIntList.of(merged);
+    }
+
+    /**
+     * @return The position where the given id, not in the order, must be inserted, or its position if it is in it.
+     */
+    private static int insertionPoint(final PersistentIntList order, final PersistentVector<Slot> slots, final int id) {
+        int low = 0;
+        int high = order.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(slots, order.get(mid), id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param slots Slots holding the entry of the id, as when it was inserted.
+     * @return The order without the given id.
+     */
+    private static PersistentIntList unlink(final PersistentIntList order, final PersistentVector<Slot> slots,
+                                            final int id) {
+        int position = insertionPoint(order, slots, id);
+        if (position >= order.size() || order.get(position) != id) {
+            throw new IllegalStateException("Entry " + id + " not found in the store order");
+        }
+        return order.remove(position);
+    }
+
+    private static int compare(final PersistentVector<Slot> slots, final int id1, final int id2) {
+        return compare(slots.get(id1), id1, slots.get(id2), id2);
+    }
+
+    private static int compare(final Slot s1, final int id1, final Slot s2, final int id2) {
+        int cmp = Long.compare(s1.dateKey(), s2.dateKey());
+        if (cmp != 0) return cmp;
+
+        cmp = Long.compare(s1.labelKey(), s2.labelKey());
+        if (cmp != 0) return cmp;
+
+        cmp = s1.entry().compareTo(s2.entry());
+        if (cmp != 0) return cmp;
+
+        return Integer.compare(id1, id2);
+    }
+
+    private record Checkpoint(String description, Snapshot snapshot) {}
+
+    /**
+     * Entries to add, with their sort keys and their natural order computed before taking the lock.
+     *
+     * @param sorted Positions in the batch in the natural order of the entries. The ids are given in the batch order,
+     *               so ties broken by position are broken by id.
+     */
+    private record Batch(List<Slot> slots, int[] sorted) {
+
+        static Batch of(final Collection<Entry> entries) {
+            List<Slot> slots = entries.stream().map(Slot::of).toList();
+            int[] sorted = IntStream.range(0, slots.size()).boxed()
+                    .sorted((i, j) -> compare(slots.get(i), i, slots.get(j), j))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            return new Batch(slots, sorted);
+        }
+
+        /**
+         * @param first Id of the first entry of the batch, ids from the end of the version are left unused.
+         */
+        Snapshot addTo(final Snapshot snapshot, final int first) {
+            PersistentVector<Slot> slots = snapshot.slots;
+            while (slots.size() < first) {
+                slots = slots.append(null);
+            }
+            for (Slot slot : this.slots) {
+                slots = slots.append(slot);
+            }
+            int[] run = new int[sorted.length];
+            for (int k = 0; k < run.length; k++) {
+                run[k] = first + sorted[k];
+            }
+            return snapshot.next(slots, insertAll(snapshot.order, slots, run));
+        }
+    }
+
+    /**
+     * An entry with its sort keys.
+     */
+    private record Slot(Entry entry, long dateKey, long labelKey) {
+
+        static Slot of(final Entry entry) {
+            if (entry == null) {
+                throw new IllegalArgumentException("Entry cannot be null");
+            }
+            return new Slot(entry, dateKey(entry), labelKey(entry));
+        }
+
+        /**
+         * Operation date then value date, as a single signed long.
+         */
+        private static long dateKey(final Entry entry) {
+            long operation = entry.dateOperation().toEpochDay();
+            long value = entry.dateValue().toEpochDay() - Integer.MIN_VALUE;
+            return (operation << 32) | (value & 0xFFFFFFFFL);
+        }
+
+        /**
+         * The 4 first chars of the label, ordered as {@link String#compareTo(String)} orders them.
+         */
+        private static long labelKey(final Entry entry) {
+            String label = entry.label();
+            long key = 0;
+            for (int i = 0; i < 4; i++) {
+                key = (key << 16) | (i < label.length() ? label.charAt(i) : 0);
+            }
+            return key ^ Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Immutable version of the store.
+     */
+    public static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(PersistentVector.empty(), PersistentIntList.empty(), null);
+
+        // Slots by id, null for a removed entry
+        private final PersistentVector<Slot> slots;
+        // Ids of the entries in their natural order, ties broken by id. Its nodes are shared between versions.
+        private final PersistentIntList order;
+        private final int size;
+        // Built on first use, a snapshot never changes
+        private volatile EntryColumns columns;
+        // Previous version with columns, until the columns of this one are derived from them
+        private volatile Snapshot base;
+
+        private Snapshot(final PersistentVector<Slot> slots, final PersistentIntList order, final Snapshot base) {
+            this.slots = slots;
+            this.order = order;
+            this.size = order.size();
+            this.base = base;
+        }
+
+        /**
+         * @return The entry with the given id, null if it has been removed.
+         */
+        public Entry get(final int id) {
+            if (id < 0 || id >= slots.size()) {
+                return null;
+            }
+            Slot slot = slots.get(id);
+            return slot == null ? null : slot.entry();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return The ids of all the entries, in the natural order of the entries.
+         */
+        public int[] ids() {
+            return order.toArray();
+        }
+
+        /**
+         * @return The id at the given position of the natural order.
+         */
+        public int idAt(final int position) {
+            return order.get(position);
+        }
+
+        /**
+         * @return A copy of the entries with the given ids.
+         */
+        public List<Entry> get(final int[] ids) {
+            List<Entry> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                result.add(get(id));
+            }
+            return result;
+        }
+
+        /**
+         * @return A copy of all the entries, in their natural order.
+         */
+        public List<Entry> entries() {
+            return get(order.toArray());
+        }
+
+        /**
+         * @return The entries as primitive columns, for the aggregations.
+         */
+        public EntryColumns columns() {
+            EntryColumns result = columns;
+            if (result == null) {
+                Snapshot previous = base;
+                if (previous == null) {
+                    result = new EntryColumns(this, slots.size(), null, null);
+                } else {
+                    // Only the sub-trees changed since the previous columns are visited
+                    BitSet changed = new BitSet();
+                    slots.diff(previous.slots, changed::set);
+                    result = new EntryColumns(this, slots.size(), previous.columns, changed);
+                }
+                columns = result;
+                base = null;
+            }
+            return result;
+        }
+
+        /**
+         * @return A new version, whose columns are derived from the last ones built, of this version or of its base.
+         */
+        private Snapshot next(final PersistentVector<Slot> newSlots, final PersistentIntList newOrder) {
+            return new Snapshot(newSlots, newOrder, columns != null ? this : base);
+        }
+    }
+
+}
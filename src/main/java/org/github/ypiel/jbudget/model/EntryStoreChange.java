@@ -0,0 +1,20 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * One mutation of the {@link EntryStore}.
+ *
+ * @param id       Id of the entry in the store.
+ * @param previous The entry before the mutation, null when it has been added.
+ * @param current  The entry after the mutation, null when it has been removed.
+ */
+public record EntryStoreChange(int id, Entry previous, Entry current) {
+
+    public boolean isAdded() {
+        return previous == null;
+    }
+
+    public boolean isRemoved() {
+        return current == null;
+    }
+
+}
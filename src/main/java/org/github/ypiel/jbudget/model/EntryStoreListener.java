@@ -0,0 +1,13 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface EntryStoreListener {
+
+    /**
+     * Called after each mutation of the store, with all the entries changed by it.
+     */
+    void onChange(List<EntryStoreChange> changes);
+
+}
@@ -0,0 +1,98 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+
+/**
+ * Period of the points of a chart series. A period is identified by an index computed from the epoch day and the
+ * month index of a date, without creating a {@link LocalDate} per entry.
+ */
+public enum Granularity {
+    YEAR(365.25),
+    QUARTER(91.31),
+    MONTH(30.44),
+    // Weeks start on Monday
+    WEEK(7),
+    DAY(1);
+
+    // 1970-01-01, epoch day 0, is a Thursday: shifted so that Monday starts a week
+    private static final int WEEK_SHIFT = 3;
+
+    // Average number of days of a period
+    private final double days;
+
+    Granularity(final double days) {
+        this.days = days;
+    }
+
+    /**
+     * @return The finest granularity showing at most the given number of periods over the given number of days, the
+     * coarsest one when none does.
+     */
+    public static Granularity finest(final long days, final int maxPeriods) {
+        Granularity[] all = values();
+        for (int g = all.length - 1; g > 0; g--) {
+            if (days / all[g].days <= maxPeriods) {
+                return all[g];
+            }
+        }
+        return all[0];
+    }
+
+    /**
+     * @return A short label of the period ending at the given date, e.g. 2024-Q2 or 2024-W05.
+     */
+    public String label(final LocalDate periodEnd) {
+        return switch (this) {
+            case YEAR -> String.valueOf(periodEnd.getYear());
+            case QUARTER -> "%d-Q%d".formatted(periodEnd.getYear(), periodEnd.get(IsoFields.QUARTER_OF_YEAR));
+            case MONTH -> YearMonth.from(periodEnd).toString();
+            case WEEK -> "%d-W%02d".formatted(periodEnd.get(IsoFields.WEEK_BASED_YEAR),
+                    periodEnd.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case DAY -> periodEnd.toString();
+        };
+    }
+
+    /**
+     * @return The last day of the period containing the given date, the key of its point in a series.
+     */
+    public LocalDate periodEnd(final LocalDate date) {
+        return end(index(date));
+    }
+
+    /**
+     * @param epochDay The date as epoch day.
+     * @param month    The month of the date, as year * 12 + month - 1.
+     * @return Index of the period containing the date, consecutive periods have consecutive indexes.
+     */
+    long index(final long epochDay, final long month) {
+        return switch (this) {
+            case YEAR -> Math.floorDiv(month, 12);
+            case QUARTER -> Math.floorDiv(month, 3);
+            case MONTH -> month;
+            case WEEK -> Math.floorDiv(epochDay + WEEK_SHIFT, 7);
+            case DAY -> epochDay;
+        };
+    }
+
+    long index(final LocalDate date) {
+        return index(date.toEpochDay(), date.getYear() * 12L + date.getMonthValue() - 1);
+    }
+
+    /**
+     * @return The last day of the period of the given index.
+     */
+    LocalDate end(final long index) {
+        return switch (this) {
+            case YEAR -> LocalDate.of((int) index, 12, 31);
+            case QUARTER -> YearMonth.of((int) Math.floorDiv(index, 4), Math.floorMod(index, 4) * 3 + 3)
+                    .atEndOfMonth();
+            case MONTH -> YearMonth.of((int) Math.floorDiv(index, 12), Math.floorMod(index, 12) + 1)
+                    .atEndOfMonth();
+            case WEEK -> LocalDate.ofEpochDay(index * 7 - WEEK_SHIFT + 6);
+            case DAY -> LocalDate.ofEpochDay(index);
+        };
+    }
+
+}
@@ -0,0 +1,9 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * An account of a ledger, as declared in its accounts.json file.
+ *
+ * @param account   The account.
+ * @param csvFormat Name of the CSV layout of the files of the bank, e.g. CCF.
+ */
+public record LedgerAccount(Account account, String csvFormat) {}
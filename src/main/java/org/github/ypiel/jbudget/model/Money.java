@@ -0,0 +1,88 @@
+package org.github.ypiel.jbudget.model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Amounts are held as a long number of cents, so that sums are exact and do not drift over long histories.
+ * They are only converted to decimal units to be displayed or written.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+        // Singleton using static
+    }
+
+    /**
+     * @return The given amount in cents, rounded half even.
+     */
+    public static long toCents(final BigDecimal amount) {
+        return amount.movePointRight(SCALE).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+    }
+
+    /**
+     * @return The given amount in cents, an exact conversion when the number is a {@link BigDecimal}.
+     */
+    public static long toCents(final Number amount) {
+        if (amount instanceof BigDecimal decimal) {
+            return toCents(decimal);
+        }
+        return toCents(BigDecimal.valueOf(amount.doubleValue()));
+    }
+
+    public static BigDecimal toDecimal(final long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * For the charts, which only work with doubles.
+     */
+    public static double toDouble(final long cents) {
+        return cents / 100.0;
+    }
+
+    public static String format(final long cents) {
+        return toDecimal(cents).toPlainString();
+    }
+
+    /**
+     * Writes cents as a decimal number of units, so that files keep the format of the double amounts.
+     */
+    public static class CentsSerializer extends StdSerializer<Long> {
+
+        public CentsSerializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(final Long cents, final JsonGenerator gen, final SerializerProvider provider) throws IOException {
+            gen.writeNumber(toDecimal(cents));
+        }
+    }
+
+    /**
+     * Reads a decimal number of units as cents, without going through a double.
+     */
+    public static class CentsDeserializer extends StdDeserializer<Long> {
+
+        public CentsDeserializer() {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(final JsonParser p, final DeserializationContext ctxt) throws IOException {
+            return toCents(p.getDecimalValue());
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits a range of positions on the common ForkJoinPool, aggregates each part into an array of partial sums and
+ * adds the arrays up.
+ * <p>
+ * Ranges up to {@link #SEQUENTIAL_THRESHOLD} are aggregated by the calling thread, so small queries do not pay for
+ * the task scheduling.
+ */
+public final class ParallelAggregator {
+
+    public static final int SEQUENTIAL_THRESHOLD = 1 << 15;
+
+    /**
+     * Aggregation of the positions [from..to[, all the results of a same aggregation must have the same length.
+     */
+    @FunctionalInterface
+    public interface RangeAggregation {
+        long[] aggregate(int from, int to);
+    }
+
+    private ParallelAggregator() {
+        // Singleton using static
+    }
+
+    public static long[] aggregate(final int size, final RangeAggregation aggregation) {
+        if (size <= SEQUENTIAL_THRESHOLD) {
+            return aggregation.aggregate(0, size);
+        }
+        return ForkJoinPool.commonPool().invoke(new AggregationTask(aggregation, 0, size));
+    }
+
+    private static class AggregationTask extends RecursiveTask<long[]> {
+
+        private final RangeAggregation aggregation;
+        private final int from;
+        private final int to;
+
+        AggregationTask(final RangeAggregation aggregation, final int from, final int to) {
+            this.aggregation = aggregation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return aggregation.aggregate(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            AggregationTask left = new AggregationTask(aggregation, from, middle);
+            left.fork();
+            long[] result = new AggregationTask(aggregation, middle, to).compute();
+            long[] leftResult = left.join();
+            for (int i = 0; i < result.length; i++) {
+                result[i] += leftResult[i];
+            }
+            return result;
+        }
+    }
+
+}
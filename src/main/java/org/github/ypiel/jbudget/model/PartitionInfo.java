@@ -0,0 +1,41 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Aggregates of the entries of one year, stored in the partition manifest so that they are known without loading
+ * the partition.
+ *
+ * @param year      Year of the operation date of the entries.
+ * @param count     Number of entries.
+ * @param firstDate First operation date.
+ * @param lastDate  Last operation date.
+ * @param total     Sum of the entry values in cents, duplicates excluded as from the other totals.
+ */
+public record PartitionInfo(int year, int count, LocalDate firstDate, LocalDate lastDate,
+                            @JsonSerialize(using = Money.CentsSerializer.class)
+                            @JsonDeserialize(using = Money.CentsDeserializer.class) long total) {
+
+    public static PartitionInfo of(final int year, final Collection<Entry> entries) {
+        LocalDate first = null;
+        LocalDate last = null;
+        long total = 0;
+        for (Entry e : entries) {
+            if (first == null || e.dateOperation().isBefore(first)) {
+                first = e.dateOperation();
+            }
+            if (last == null || e.dateOperation().isAfter(last)) {
+                last = e.dateOperation();
+            }
+            if (!e.duplicate()) {
+                total += e.value();
+            }
+        }
+        return new PartitionInfo(year, entries.size(), first, last, total);
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Totals of a series for each {@link Granularity}, computed once from its daily totals. The periods overlapping a
+ * range are found by binary search, so a chart shows another range or level of detail without aggregating the
+ * entries again.
+ */
+public final class PeriodRollups {
+
+    /**
+     * Periods of a range at a granularity.
+     *
+     * @param ends   The last day of each period, ascending.
+     * @param totals Sum in cents of the entries of each period.
+     */
+    public record Bars(Granularity granularity, LocalDate[] ends, long[] totals) {}
+
+    // By granularity ordinal, periods without entries are not kept
+    private final LocalDate[][] ends = new LocalDate[Granularity.values().length][];
+    private final long[][] totals = new long[Granularity.values().length][];
+    private final LocalDate first;
+    private final LocalDate last;
+
+    private PeriodRollups(final SortedMap<LocalDate, Long> daily) {
+        first = daily.isEmpty() ? null : daily.firstKey();
+        last = daily.isEmpty() ? null : daily.lastKey();
+        for (Granularity granularity : Granularity.values()) {
+            LocalDate[] periodEnds = new LocalDate[daily.size()];
+            long[] periodTotals = new long[daily.size()];
+            int n = -1;
+            for (Map.Entry<LocalDate, Long> day : daily.entrySet()) {
+                LocalDate end = granularity.end(granularity.index(day.getKey()));
+                // Days are ascending, so are the ends of their periods
+                if (n < 0 || !periodEnds[n].equals(end)) {
+                    periodEnds[++n] = end;
+                }
+                periodTotals[n] += day.getValue();
+            }
+            ends[granularity.ordinal()] = Arrays.copyOf(periodEnds, n + 1);
+            totals[granularity.ordinal()] = Arrays.copyOf(periodTotals, n + 1);
+        }
+    }
+
+    /**
+     * @param daily Sum in cents of the entries of each day, see {@link Granularity#DAY}.
+     */
+    public static PeriodRollups of(final SortedMap<LocalDate, Long> daily) {
+        return new PeriodRollups(daily);
+    }
+
+    /**
+     * @return The first day with entries, null when there are none.
+     */
+    public LocalDate first() {
+        return first;
+    }
+
+    /**
+     * @return The last day with entries, null when there are none.
+     */
+    public LocalDate last() {
+        return last;
+    }
+
+    /**
+     * @param from    First day of the range.
+     * @param to      Last day of the range.
+     * @param maxBars Maximum number of periods to return, about.
+     * @return The periods overlapping the range at the finest granularity showing at most maxBars periods over it,
+     * see {@link Granularity#finest(long, int)}.
+     */
+    public Bars bars(final LocalDate from, final LocalDate to, final int maxBars) {
+        Granularity granularity = Granularity.finest(ChronoUnit.DAYS.between(from, to) + 1, maxBars);
+        return bars(granularity, from, to);
+    }
+
+    /**
+     * @return The periods of the granularity overlapping the range.
+     */
+    public Bars bars(final Granularity granularity, final LocalDate from, final LocalDate to) {
+        LocalDate[] periodEnds = ends[granularity.ordinal()];
+        // The period containing from ends at or after it, the one containing to ends at its period end
+        int start = insertionPoint(periodEnds, from);
+        int end = insertionPoint(periodEnds, granularity.end(granularity.index(to)).plusDays(1));
+        return new Bars(granularity, Arrays.copyOfRange(periodEnds, start, end),
+                Arrays.copyOfRange(totals[granularity.ordinal()], start, end));
+    }
+
+    /**
+     * @return Index of the first period ending at or after the date.
+     */
+    private static int insertionPoint(final LocalDate[] periodEnds, final LocalDate date) {
+        int index = Arrays.binarySearch(periodEnds, date);
+        return index >= 0 ? index : -index - 1;
+    }
+
+}
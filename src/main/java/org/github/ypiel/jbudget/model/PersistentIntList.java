@@ -0,0 +1,243 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.Arrays;
+
+/**
+ * Immutable list of ints, where an insertion or a removal at any position returns a new list sharing all but
+ * O(log n) nodes with the previous one.
+ * <p>
+ * Values are stored in leaves of at most 64 ints, under nodes of at most 64 children which know the number of values
+ * under each child: an access by position descends a single path, 4 nodes for a million values. An update only copies
+ * the nodes on that path, a full node being split in two.
+ */
+public final class PersistentIntList {
+
+    private static final int MAX_WIDTH = 64;
+    // Width of the nodes of a built list, leaves room for insertions before splitting
+    private static final int BUILD_WIDTH = 48;
+
+    private static final PersistentIntList EMPTY = new PersistentIntList(new Leaf(new int[0]));
+
+    private sealed interface Node permits Leaf, Branch {
+        int size();
+    }
+
+    private record Leaf(int[] values) implements Node {
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+
+    /**
+     * @param ends Number of values under the children up to each one, included.
+     */
+    private record Branch(Node[] children, int[] ends) implements Node {
+
+        static Branch of(final Node[] children) {
+            int[] ends = new int[children.length];
+            int end = 0;
+            for (int i = 0; i < children.length; i++) {
+                end += children[i].size();
+                ends[i] = end;
+            }
+            return new Branch(children, ends);
+        }
+
+        @Override
+        public int size() {
+            return ends[ends.length - 1];
+        }
+
+        /**
+         * @return The child holding the given position, the last one for the position after the end.
+         */
+        int child(final int position) {
+            int low = 0;
+            int high = ends.length - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (ends[mid] > position) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        int start(final int child) {
+            return child == 0 ? 0 : ends[child - 1];
+        }
+    }
+
+    private final Node root;
+
+    private PersistentIntList(final Node root) {
+        this.root = root;
+    }
+
+    public static PersistentIntList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return A list of the given values, built in linear time.
+     */
+    public static PersistentIntList of(final int[] values) {
+        if (values.length == 0) {
+            return EMPTY;
+        }
+        Node[] level = new Node[(values.length + BUILD_WIDTH - 1) / BUILD_WIDTH];
+        for (int i = 0; i < level.length; i++) {
+            int from = i * BUILD_WIDTH;
+            int[] leaf = new int[Math.min(BUILD_WIDTH, values.length - from)];
+            System.arraycopy(values, from, leaf, 0, leaf.length);
+            level[i] = new Leaf(leaf);
+        }
+        while (level.length > 1) {
+            Node[] parents = new Node[(level.length + BUILD_WIDTH - 1) / BUILD_WIDTH];
+            for (int i = 0; i < parents.length; i++) {
+                int from = i * BUILD_WIDTH;
+                Node[] children = new Node[Math.min(BUILD_WIDTH, level.length - from)];
+                System.arraycopy(level, from, children, 0, children.length);
+                parents[i] = Branch.of(children);
+            }
+            level = parents;
+        }
+        return new PersistentIntList(level[0]);
+    }
+
+    public int size() {
+        return root.size();
+    }
+
+    public int get(final int index) {
+        checkIndex(index, size());
+        Node node = root;
+        int position = index;
+        while (node instanceof Branch branch) {
+            int child = branch.child(position);
+            position -= branch.start(child);
+            node = branch.children()[child];
+        }
+        return ((Leaf) node).values()[position];
+    }
+
+    /**
+     * @param index Position of the value, from 0 to the size included.
+     */
+    public PersistentIntList insert(final int index, final int value) {
+        checkIndex(index, size() + 1);
+        Node[] nodes = insert(root, index, value);
+        return new PersistentIntList(nodes.length == 1 ? nodes[0] : Branch.of(nodes));
+    }
+
+    public PersistentIntList remove(final int index) {
+        checkIndex(index, size());
+        Node node = remove(root, index);
+        if (node == null) {
+            return EMPTY;
+        }
+        // The tree shrinks by one level once the root has a single child
+        while (node instanceof Branch branch && branch.children().length == 1) {
+            node = branch.children()[0];
+        }
+        return new PersistentIntList(node);
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size()];
+        copy(root, result, 0);
+        return result;
+    }
+
+    /**
+     * @return The new node, or the two halves of the node when it overflows.
+     */
+    private static Node[] insert(final Node node, final int position, final int value) {
+        if (node instanceof Leaf leaf) {
+            int[] values = leaf.values();
+            int[] copy = new int[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, position);
+            copy[position] = value;
+            System.arraycopy(values, position, copy, position + 1, values.length - position);
+            if (copy.length <= MAX_WIDTH) {
+                return new Node[]{new Leaf(copy)};
+            }
+            int half = copy.length / 2;
+            int[] right = new int[copy.length - half];
+            System.arraycopy(copy, half, right, 0, right.length);
+            return new Node[]{new Leaf(Arrays.copyOf(copy, half)), new Leaf(right)};
+        }
+
+        Branch branch = (Branch) node;
+        Node[] children = branch.children();
+        int child = branch.child(position);
+        Node[] replaced = insert(children[child], position - branch.start(child), value);
+        Node[] copy = new Node[children.length + replaced.length - 1];
+        System.arraycopy(children, 0, copy, 0, child);
+        System.arraycopy(replaced, 0, copy, child, replaced.length);
+        System.arraycopy(children, child + 1, copy, child + replaced.length, children.length - child - 1);
+        if (copy.length <= MAX_WIDTH) {
+            return new Node[]{Branch.of(copy)};
+        }
+        int half = copy.length / 2;
+        Node[] right = new Node[copy.length - half];
+        System.arraycopy(copy, half, right, 0, right.length);
+        return new Node[]{Branch.of(Arrays.copyOf(copy, half)), Branch.of(right)};
+    }
+
+    /**
+     * @return The new node, null when it becomes empty.
+     */
+    private static Node remove(final Node node, final int position) {
+        if (node instanceof Leaf leaf) {
+            int[] values = leaf.values();
+            if (values.length == 1) {
+                return null;
+            }
+            int[] copy = new int[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, position);
+            System.arraycopy(values, position + 1, copy, position, copy.length - position);
+            return new Leaf(copy);
+        }
+
+        Branch branch = (Branch) node;
+        Node[] children = branch.children();
+        int child = branch.child(position);
+        Node replaced = remove(children[child], position - branch.start(child));
+        if (replaced != null) {
+            Node[] copy = children.clone();
+            copy[child] = replaced;
+            return Branch.of(copy);
+        }
+        if (children.length == 1) {
+            return null;
+        }
+        Node[] copy = new Node[children.length - 1];
+        System.arraycopy(children, 0, copy, 0, child);
+        System.arraycopy(children, child + 1, copy, child, copy.length - child);
+        return Branch.of(copy);
+    }
+
+    private static int copy(final Node node, final int[] target, final int offset) {
+        if (node instanceof Leaf leaf) {
+            System.arraycopy(leaf.values(), 0, target, offset, leaf.values().length);
+            return offset + leaf.values().length;
+        }
+        int position = offset;
+        for (Node child : ((Branch) node).children()) {
+            position = copy(child, target, position);
+        }
+        return position;
+    }
+
+    private void checkIndex(final int index, final int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of list of size " + size());
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable vector, where an update returns a new vector sharing all but O(log n) nodes with the previous one.
+ * <p>
+ * Elements are stored in a 32-way trie indexed by the bits of their index: an update only copies the nodes on the
+ * path from the root to the element, at most 7 for an int index. Versions can thus be kept for almost nothing.
+ */
+public final class PersistentVector<T> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, 0, new Object[WIDTH]);
+
+    private final int size;
+    // Number of index bits under the root level, 0 when the root is a leaf
+    private final int shift;
+    private final Object[] root;
+
+    private PersistentVector(final int size, final int shift, final Object[] root) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        checkIndex(index);
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return (T) node[index & MASK];
+    }
+
+    public PersistentVector<T> set(final int index, final T value) {
+        checkIndex(index);
+        return new PersistentVector<>(size, shift, assoc(root, shift, index, value));
+    }
+
+    public PersistentVector<T> append(final T value) {
+        if (size == 1 << (shift + BITS)) {
+            // Root is full: the tree grows by one level
+            Object[] newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            return new PersistentVector<>(size + 1, shift + BITS, assoc(newRoot, shift + BITS, size, value));
+        }
+        return new PersistentVector<>(size + 1, shift, assoc(root, shift, size, value));
+    }
+
+    /**
+     * Calls the consumer with the indexes that may hold a different element in the two vectors.
+     * Sub-trees shared by both are skipped, so the cost depends on the number of changes, not on the size.
+     * Some indexes of a changed leaf may be reported although their element is the same.
+     */
+    public void diff(final PersistentVector<T> other, final IntConsumer changed) {
+        int common = Math.min(size, other.size);
+        int commonShift = Math.min(shift, other.shift);
+        Object[] a = descend(root, shift, commonShift);
+        Object[] b = descend(other.root, other.shift, commonShift);
+        diff(a, b, commonShift, 0, common, changed);
+
+        for (int i = common; i < Math.max(size, other.size); i++) {
+            changed.accept(i);
+        }
+    }
+
+    private static void diff(final Object[] a, final Object[] b, final int level, final int offset, final int limit,
+                             final IntConsumer changed) {
+        if (a == b || offset >= limit) {
+            return;
+        }
+        for (int i = 0; i < WIDTH; i++) {
+            int childOffset = offset + (i << level);
+            if (childOffset >= limit) {
+                return;
+            }
+            if (level == 0) {
+                if (a[i] != b[i]) {
+                    changed.accept(childOffset);
+                }
+            } else {
+                Object[] childA = (Object[]) a[i];
+                Object[] childB = (Object[]) b[i];
+                if (childA == null || childB == null) {
+                    if (childA != childB) {
+                        int end = Math.min(limit, childOffset + (1 << level));
+                        for (int j = childOffset; j < end; j++) {
+                            changed.accept(j);
+                        }
+                    }
+                } else {
+                    diff(childA, childB, level - BITS, childOffset, limit, changed);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The leftmost node at the given level, which covers the same indexes as a root of that level.
+     */
+    private static Object[] descend(final Object[] node, final int fromShift, final int toShift) {
+        Object[] result = node;
+        for (int level = fromShift; level > toShift; level -= BITS) {
+            result = (Object[]) result[0];
+        }
+        return result;
+    }
+
+    private static Object[] assoc(final Object[] node, final int level, final int index, final Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int slot = (index >>> level) & MASK;
+        if (level == 0) {
+            copy[slot] = value;
+        } else {
+            copy[slot] = assoc((Object[]) copy[slot], level - BITS, index, value);
+        }
+        return copy;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of vector of size " + size);
+        }
+    }
+
+}
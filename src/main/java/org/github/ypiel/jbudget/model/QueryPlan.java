@@ -0,0 +1,180 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link EntryQuery} compiled for the columns of a snapshot.
+ * <p>
+ * The date range is turned into a range of positions, since the columns are sorted by operation date. The other
+ * criteria become clauses tested by a single loop, cheapest and most selective first: clauses are ordered by
+ * cost / (1 - selectivity), the selectivity being estimated from the statistics of the columns.
+ */
+public final class QueryPlan {
+
+    /**
+     * Kind of clause, with the relative cost to test it on one entry.
+     */
+    private enum ClauseKind {
+        ACCOUNT(1),
+        CATEGORY(1),
+        NEW(1),
+        DUPLICATE(1),
+        MIN_AMOUNT(1),
+        MAX_AMOUNT(1),
+        LABEL(25);
+
+        private final double cost;
+
+        ClauseKind(final double cost) {
+            this.cost = cost;
+        }
+    }
+
+    // No statistics on the labels: a text search is assumed to keep few entries
+    private static final double LABEL_SELECTIVITY = 0.1;
+
+    private record Clause(ClauseKind kind, long operand, double selectivity) {
+
+        double rank() {
+            return kind.cost / Math.max(1 - selectivity, 1e-6);
+        }
+
+        @Override
+        public String toString() {
+            return "%s(%.2f)".formatted(kind.name().toLowerCase(), selectivity);
+        }
+    }
+
+    /**
+     * Receives the matching entries of {@link #forEach(MatchVisitor)}.
+     */
+    @FunctionalInterface
+    public interface MatchVisitor {
+        /**
+         * @param scanned Number of positions scanned so far, up to {@link #scanSize()}.
+         */
+        void visit(int id, int scanned);
+    }
+
+    private final EntryColumns columns;
+    private final String label;
+    private final int start;
+    private final int end;
+    // Never matches, e.g. for an account without entries
+    private final boolean empty;
+    private final List<Clause> clauses;
+
+    QueryPlan(final EntryQuery query, final EntryColumns columns) {
+        this.columns = columns;
+        this.label = query.label();
+        this.start = query.from() == null ? 0 : columns.firstPosition(query.from().toEpochDay());
+        this.end = query.to() == null ? columns.size() : columns.firstPosition(query.to().toEpochDay() + 1);
+
+        double size = Math.max(1, columns.size());
+        List<Clause> list = new ArrayList<>();
+        boolean none = false;
+        if (query.account() != null) {
+            int index = columns.accountIndex(query.account());
+            none = index < 0;
+            list.add(new Clause(ClauseKind.ACCOUNT, index, none ? 0 : columns.accountCount(index) / size));
+        }
+        if (query.category() != EntryCategory.ALL) {
+            int ordinal = query.category().ordinal();
+            list.add(new Clause(ClauseKind.CATEGORY, ordinal, columns.categoryCount(ordinal) / size));
+        }
+        if (query.onlyNew()) {
+            list.add(new Clause(ClauseKind.NEW, EntryColumns.NEW, columns.newCount() / size));
+        }
+        if (query.onlyDuplicates()) {
+            list.add(new Clause(ClauseKind.DUPLICATE, EntryColumns.DUPLICATE, columns.duplicateCount() / size));
+        }
+        if (query.minAmount() != null) {
+            list.add(new Clause(ClauseKind.MIN_AMOUNT, query.minAmount(),
+                    columns.valueFraction(query.minAmount(), Long.MAX_VALUE)));
+        }
+        if (query.maxAmount() != null) {
+            list.add(new Clause(ClauseKind.MAX_AMOUNT, query.maxAmount(),
+                    columns.valueFraction(Long.MIN_VALUE, query.maxAmount())));
+        }
+        if (!label.isEmpty()) {
+            list.add(new Clause(ClauseKind.LABEL, 0, LABEL_SELECTIVITY));
+        }
+        list.sort(Comparator.comparingDouble(Clause::rank));
+
+        this.empty = none || start >= end;
+        this.clauses = List.copyOf(list);
+    }
+
+    /**
+     * @return The ids of the matching entries, in their natural order.
+     */
+    public int[] execute() {
+        if (empty) {
+            return new int[0];
+        }
+        int[] result = new int[end - start];
+        int[] count = new int[1];
+        forEach((id, _) -> result[count[0]++] = id);
+        return Arrays.copyOf(result, count[0]);
+    }
+
+    /**
+     * @return Number of positions scanned by the plan, an upper bound of the result size.
+     */
+    public int scanSize() {
+        return empty ? 0 : end - start;
+    }
+
+    /**
+     * Streams the ids of the matching entries in their natural order, without holding the result.
+     */
+    public void forEach(final MatchVisitor visitor) {
+        if (empty) {
+            return;
+        }
+        int nbClauses = clauses.size();
+        ClauseKind[] kinds = new ClauseKind[nbClauses];
+        long[] operands = new long[nbClauses];
+        for (int k = 0; k < nbClauses; k++) {
+            kinds[k] = clauses.get(k).kind();
+            operands[k] = clauses.get(k).operand();
+        }
+
+        positions:
+        for (int p = start; p < end; p++) {
+            for (int k = 0; k < nbClauses; k++) {
+                boolean match = switch (kinds[k]) {
+                    case ACCOUNT -> columns.accountIndexes[p] == operands[k];
+                    case CATEGORY -> columns.categories[p] == operands[k];
+                    case NEW, DUPLICATE -> (columns.flags[p] & operands[k]) != 0;
+                    case MIN_AMOUNT -> columns.values[p] >= operands[k];
+                    case MAX_AMOUNT -> columns.values[p] <= operands[k];
+                    case LABEL -> columns.lowerLabels[p].contains(label);
+                };
+                if (!match) {
+                    continue positions;
+                }
+            }
+            visitor.visit(columns.idAt(p), p - start + 1);
+        }
+    }
+
+    /**
+     * @return Human readable plan, for the diagnostics.
+     */
+    public String describe() {
+        if (empty) {
+            return "empty";
+        }
+        String range = (start == 0 && end == columns.size()) ? "full scan" : "date range [%d, %d[".formatted(start, end);
+        if (clauses.isEmpty()) {
+            return range;
+        }
+        return range + " > " + clauses.stream().map(Clause::toString).collect(Collectors.joining(" > "));
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * A statement balance compared to the balance computed from the entries.
+ *
+ * @param statement The balance of the statement.
+ * @param computed  The balance in cents computed at the date of the statement.
+ */
+public record Reconciliation(StatementBalance statement, long computed) {
+
+    /**
+     * @return Amount in cents missing from the entries, 0 when they match the statement.
+     */
+    public long difference() {
+        return statement.balance() - computed;
+    }
+
+    public boolean matches() {
+        return difference() == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "%s %s: statement %s, computed %s%s".formatted(statement.account().toLabel(), statement.date(),
+                Money.format(statement.balance()), Money.format(computed),
+                matches() ? "" : ", difference " + Money.format(difference()));
+    }
+
+}
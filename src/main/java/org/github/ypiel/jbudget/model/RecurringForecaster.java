@@ -0,0 +1,308 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Detects the {@link RecurringSeries} of each account and projects the future monthly totals from them.
+ * <p>
+ * Entries are grouped by account and label, normalized without the tokens holding digits since they are usually
+ * dates or references changing at each occurrence. A group is recurring when most of the gaps between its dates
+ * match a {@link RecurringSeries.Periodicity}. The projection of a month is the expected entries of the active
+ * series, plus the seasonality of the other entries: their average total of the same calendar month over the last
+ * {@link #SEASONAL_YEARS} years.
+ * <p>
+ * Maintained from the store changes: a change only marks its group as stale, the detection runs again for the stale
+ * groups of an account when its forecast is requested. Forecasts are cached per account until one of its entries
+ * changes. Thread-safe, changes are applied by the thread modifying the store.
+ */
+public class RecurringForecaster implements EntryStoreListener {
+
+    public static final int MIN_OCCURRENCES = 3;
+    // Fraction of the gaps that must match the period
+    public static final double MIN_REGULARITY = 0.75;
+    public static final int SEASONAL_YEARS = 3;
+    // Entries used for the expected amount, the most recent ones
+    private static final int AMOUNT_WINDOW = 6;
+
+    private record GroupKey(Account account, String label) {}
+
+    /**
+     * Entries of a group, and the result of the detection while they do not change.
+     */
+    private static final class Group {
+        final Map<Integer, Entry> entries = new HashMap<>();
+        boolean stale = true;
+        // Null when the group is not recurring
+        RecurringSeries series;
+        // Total of the entries of each month, as year * 12 + month - 1
+        Map<Long, Long> monthlyTotals = Map.of();
+    }
+
+    private record CachedForecast(YearMonth first, int months, SortedMap<LocalDate, Long> totals) {}
+
+    private final EntryStore store;
+
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    private final Map<Account, Set<GroupKey>> groupsByAccount = new HashMap<>();
+    // Number of entries and total of each month of the account, months without entries are not kept
+    private final Map<Account, NavigableMap<Long, long[]>> accountTotals = new HashMap<>();
+    private final Set<Account> staleAccounts = new HashSet<>();
+    private final Map<Account, CachedForecast> forecasts = new HashMap<>();
+
+    public RecurringForecaster(final EntryStore store) {
+        this.store = store;
+        store.addListener(this);
+        refresh();
+    }
+
+    /**
+     * Groups the whole store again, needed after {@link EntryStore#clear()} which does not notify.
+     */
+    public synchronized void refresh() {
+        groups.clear();
+        groupsByAccount.clear();
+        accountTotals.clear();
+        staleAccounts.clear();
+        forecasts.clear();
+        EntryStore.Snapshot snapshot = store.snapshot();
+        for (int p = 0; p < snapshot.size(); p++) {
+            int id = snapshot.idAt(p);
+            add(id, snapshot.get(id));
+        }
+    }
+
+    @Override
+    public synchronized void onChange(final List<EntryStoreChange> changes) {
+        for (EntryStoreChange change : changes) {
+            if (change.previous() != null) {
+                remove(change.id(), change.previous());
+            }
+            if (change.current() != null) {
+                add(change.id(), change.current());
+            }
+        }
+    }
+
+    /**
+     * @param account The account, null for all the accounts.
+     * @param first   The first projected month.
+     * @param months  The number of projected months.
+     * @return The projected total in cents of each month, keyed by the last day of the month.
+     */
+    public synchronized SortedMap<LocalDate, Long> forecast(final Account account, final YearMonth first,
+                                                            final int months) {
+        if (account != null) {
+            return new TreeMap<>(accountForecast(account, first, months));
+        }
+        SortedMap<LocalDate, Long> totals = new TreeMap<>();
+        for (Account a : accountTotals.keySet()) {
+            accountForecast(a, first, months).forEach((month, total) -> totals.merge(month, total, Long::sum));
+        }
+        return totals;
+    }
+
+    private SortedMap<LocalDate, Long> accountForecast(final Account account, final YearMonth first, final int months) {
+        CachedForecast cached = forecasts.get(account);
+        if (cached != null && !staleAccounts.contains(account) && cached.first().equals(first)
+                && cached.months() == months) {
+            return cached.totals();
+        }
+
+        List<Group> recurring = detect(account);
+        LocalDate reference = lastDate(account);
+        NavigableMap<Long, long[]> totals = accountTotals.getOrDefault(account, new TreeMap<>());
+        long firstIndex = monthIndex(first);
+
+        SortedMap<LocalDate, Long> result = new TreeMap<>();
+        for (int m = 0; m < months; m++) {
+            YearMonth month = first.plusMonths(m);
+            long projected = 0;
+            for (Group group : recurring) {
+                if (group.series.isActive(reference)) {
+                    projected += group.series.expectedIn(month) * group.series.amount();
+                }
+            }
+            projected += seasonal(totals, recurring, monthIndex(month), firstIndex);
+            result.put(month.atEndOfMonth(), projected);
+        }
+
+        forecasts.put(account, new CachedForecast(first, months, result));
+        staleAccounts.remove(account);
+        return result;
+    }
+
+    /**
+     * @return The average total of the same calendar month of the previous years, recurring entries excluded.
+     */
+    private static long seasonal(final NavigableMap<Long, long[]> totals, final List<Group> recurring,
+                                 final long month, final long firstProjected) {
+        if (totals.isEmpty()) {
+            return 0;
+        }
+        long firstKnown = totals.firstKey();
+        long sum = 0;
+        int years = 0;
+        for (long past = month - 12; past >= firstKnown && years < SEASONAL_YEARS; past -= 12) {
+            if (past >= firstProjected) {
+                continue;
+            }
+            long[] known = totals.get(past);
+            long residual = known == null ? 0 : known[1];
+            for (Group group : recurring) {
+                residual -= group.monthlyTotals.getOrDefault(past, 0L);
+            }
+            sum += residual;
+            years++;
+        }
+        return years == 0 ? 0 : sum / years;
+    }
+
+    /**
+     * Runs the detection on the stale groups of the account.
+     *
+     * @return The recurring groups of the account, active or not.
+     */
+    private List<Group> detect(final Account account) {
+        List<Group> recurring = new ArrayList<>();
+        for (GroupKey key : groupsByAccount.getOrDefault(account, Set.of())) {
+            Group group = groups.get(key);
+            if (group.stale) {
+                group.series = detect(key, group.entries.values());
+                group.monthlyTotals = group.series == null ? Map.of() : monthlyTotals(group.entries.values());
+                group.stale = false;
+            }
+            if (group.series != null) {
+                recurring.add(group);
+            }
+        }
+        return recurring;
+    }
+
+    private static RecurringSeries detect(final GroupKey key, final Iterable<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>();
+        entries.forEach(sorted::add);
+        if (sorted.size() < MIN_OCCURRENCES) {
+            return null;
+        }
+        sorted.sort(Entry::compareTo);
+
+        long[] gaps = new long[sorted.size() - 1];
+        for (int i = 1; i < sorted.size(); i++) {
+            gaps[i - 1] = sorted.get(i).dateOperation().toEpochDay() - sorted.get(i - 1).dateOperation().toEpochDay();
+        }
+        long[] sortedGaps = gaps.clone();
+        Arrays.sort(sortedGaps);
+        RecurringSeries.Periodicity periodicity = RecurringSeries.Periodicity.of(sortedGaps[sortedGaps.length / 2]);
+        if (periodicity == null) {
+            return null;
+        }
+        int regular = 0;
+        for (long gap : gaps) {
+            regular += periodicity.matches(gap) ? 1 : 0;
+        }
+        if (regular < MIN_REGULARITY * gaps.length) {
+            return null;
+        }
+
+        // Median of the recent amounts: follows a rent increase, ignores a single exceptional amount
+        int from = Math.max(0, sorted.size() - AMOUNT_WINDOW);
+        long[] amounts = sorted.subList(from, sorted.size()).stream().mapToLong(Entry::value).sorted().toArray();
+        return new RecurringSeries(key.account(), key.label(), periodicity, amounts[amounts.length / 2],
+                sorted.getFirst().dateOperation(), sorted.getLast().dateOperation(), sorted.size());
+    }
+
+    private LocalDate lastDate(final Account account) {
+        NavigableMap<Long, long[]> totals = accountTotals.get(account);
+        if (totals == null || totals.isEmpty()) {
+            return LocalDate.now();
+        }
+        // End of the last month with entries: a series is not stopped by a partially imported month
+        long month = totals.lastKey();
+        return YearMonth.of((int) (month / 12), (int) (month % 12) + 1).atEndOfMonth();
+    }
+
+    private void add(final int id, final Entry entry) {
+        if (entry.duplicate()) {
+            return;
+        }
+        GroupKey key = new GroupKey(entry.account(), label(entry.label()));
+        Group group = groups.computeIfAbsent(key, _ -> new Group());
+        group.entries.put(id, entry);
+        group.stale = true;
+        groupsByAccount.computeIfAbsent(entry.account(), _ -> new HashSet<>()).add(key);
+        long[] month = accountTotals.computeIfAbsent(entry.account(), _ -> new TreeMap<>())
+                .computeIfAbsent(monthIndex(entry.dateOperation()), _ -> new long[2]);
+        month[0]++;
+        month[1] += entry.value();
+        staleAccounts.add(entry.account());
+    }
+
+    private void remove(final int id, final Entry entry) {
+        if (entry.duplicate()) {
+            return;
+        }
+        GroupKey key = new GroupKey(entry.account(), label(entry.label()));
+        Group group = groups.get(key);
+        if (group == null || group.entries.remove(id) == null) {
+            return;
+        }
+        group.stale = true;
+        if (group.entries.isEmpty()) {
+            groups.remove(key);
+            groupsByAccount.get(entry.account()).remove(key);
+        }
+        NavigableMap<Long, long[]> totals = accountTotals.get(entry.account());
+        long index = monthIndex(entry.dateOperation());
+        long[] month = totals.get(index);
+        month[0]--;
+        month[1] -= entry.value();
+        // A month without entries must not remain, it would be taken as known for the seasonality
+        if (month[0] == 0) {
+            totals.remove(index);
+        }
+        staleAccounts.add(entry.account());
+    }
+
+    private static Map<Long, Long> monthlyTotals(final Iterable<Entry> entries) {
+        Map<Long, Long> totals = new HashMap<>();
+        entries.forEach(e -> totals.merge(monthIndex(e.dateOperation()), e.value(), Long::sum));
+        return totals;
+    }
+
+    /**
+     * Normalized label without the tokens holding digits.
+     */
+    static String label(final String label) {
+        String normalized = DuplicateDetector.normalize(label);
+        StringBuilder sb = new StringBuilder(normalized.length());
+        for (String token : normalized.split(" ")) {
+            if (!token.isEmpty() && token.chars().noneMatch(Character::isDigit)) {
+                if (!sb.isEmpty()) {
+                    sb.append(' ');
+                }
+                sb.append(token);
+            }
+        }
+        return sb.isEmpty() ? normalized : sb.toString();
+    }
+
+    private static long monthIndex(final LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    private static long monthIndex(final YearMonth month) {
+        return month.getYear() * 12L + month.getMonthValue() - 1;
+    }
+
+}
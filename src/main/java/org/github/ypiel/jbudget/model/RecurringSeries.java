@@ -0,0 +1,93 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/**
+ * Entries of an account with the same label, repeated at a regular period: a salary, a rent, a subscription...
+ *
+ * @param account     The account of the entries.
+ * @param label       The normalized label shared by the entries, see {@link RecurringForecaster}.
+ * @param periodicity The period between two entries.
+ * @param amount      The expected signed amount in cents, from the most recent entries.
+ * @param firstDate   Operation date of the first entry.
+ * @param lastDate    Operation date of the last entry.
+ * @param occurrences Number of entries.
+ */
+public record RecurringSeries(Account account, String label, Periodicity periodicity, long amount,
+                              LocalDate firstDate, LocalDate lastDate, int occurrences) {
+
+    /**
+     * Supported periods, with the tolerance on the number of days between two entries.
+     */
+    public enum Periodicity {
+        WEEKLY(7, 0, 1),
+        BIWEEKLY(14, 0, 2),
+        MONTHLY(30, 1, 4),
+        QUARTERLY(91, 3, 8),
+        YEARLY(365, 12, 12);
+
+        private final int days;
+        // Calendar months of the period, 0 for a period in days
+        private final int months;
+        private final int toleranceDays;
+
+        Periodicity(final int days, final int months, final int toleranceDays) {
+            this.days = days;
+            this.months = months;
+            this.toleranceDays = toleranceDays;
+        }
+
+        public int days() {
+            return days;
+        }
+
+        boolean matches(final long gapDays) {
+            return Math.abs(gapDays - days) <= toleranceDays;
+        }
+
+        /**
+         * @return The date of the n-th next entry after the given one.
+         */
+        LocalDate next(final LocalDate date, final int n) {
+            return months > 0 ? date.plusMonths((long) months * n) : date.plusDays((long) days * n);
+        }
+
+        /**
+         * @return The periodicity matching the gap, null if none does.
+         */
+        static Periodicity of(final long gapDays) {
+            for (Periodicity p : values()) {
+                if (p.matches(gapDays)) {
+                    return p;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return False when the series stopped: no entry for more than a period at the given date.
+     */
+    public boolean isActive(final LocalDate date) {
+        return !periodicity.next(lastDate, 1).plusDays(periodicity.toleranceDays).isBefore(date);
+    }
+
+    /**
+     * @return The number of entries expected in the month, after the last one.
+     */
+    public int expectedIn(final YearMonth month) {
+        int count = 0;
+        for (int n = 1; ; n++) {
+            LocalDate next = periodicity.next(lastDate, n);
+            YearMonth nextMonth = YearMonth.from(next);
+            if (nextMonth.isAfter(month)) {
+                return count;
+            }
+            if (nextMonth.equals(month)) {
+                count++;
+            }
+        }
+    }
+
+}
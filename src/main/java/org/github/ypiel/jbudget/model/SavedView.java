@@ -0,0 +1,93 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A named query whose result is kept up to date with the store: the ids of the matching entries, their number and
+ * their total. Maintained by {@link SavedViews}, possibly from another thread than the readers.
+ */
+public final class SavedView {
+
+    private final String name;
+    private final EntryQuery query;
+
+    private final BitSet ids = new BitSet();
+    private int count;
+    // In cents, duplicates excluded
+    private long total;
+
+    SavedView(final String name, final EntryQuery query) {
+        this.name = name;
+        this.query = query;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public EntryQuery query() {
+        return query;
+    }
+
+    public synchronized int count() {
+        return count;
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * @return The ids of the result, in the natural order of the entries. Only the ids of the view are visited: their
+     * positions are sorted, not the whole store.
+     */
+    public int[] ids(final EntryStore.Snapshot snapshot) {
+        int[] viewIds;
+        synchronized (this) {
+            viewIds = ids.stream().toArray();
+        }
+        // Entries of the view may be missing from an older snapshot, their positions are skipped
+        int[] positions = snapshot.columns().positions(viewIds);
+        Arrays.sort(positions);
+        int[] result = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            result[i] = snapshot.idAt(positions[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Runs the query on the whole snapshot.
+     */
+    synchronized void materialize(final EntryStore.Snapshot snapshot) {
+        ids.clear();
+        count = 0;
+        total = 0;
+        for (int id : query.compile(snapshot.columns()).execute()) {
+            add(id, snapshot.get(id));
+        }
+    }
+
+    synchronized void apply(final EntryStoreChange change) {
+        if (change.previous() != null && ids.get(change.id())) {
+            ids.clear(change.id());
+            count--;
+            total -= counted(change.previous());
+        }
+        if (change.current() != null && query.matches(change.current())) {
+            add(change.id(), change.current());
+        }
+    }
+
+    private void add(final int id, final Entry entry) {
+        ids.set(id);
+        count++;
+        total += counted(entry);
+    }
+
+    private static long counted(final Entry entry) {
+        return entry.duplicate() ? 0 : entry.value();
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.github.ypiel.jbudget.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The saved views, updated on each store change: a change costs a test of the entry per view, the queries are never
+ * run again on the whole store. Thread-safe, changes are applied by the thread modifying the store.
+ */
+public class SavedViews implements EntryStoreListener {
+
+    private final EntryStore store;
+    private final List<SavedView> views = new ArrayList<>();
+
+    public SavedViews(final EntryStore store) {
+        this.store = store;
+        store.addListener(this);
+    }
+
+    /**
+     * Adds a view, or replaces the one with the same name.
+     */
+    public SavedView add(final String name, final EntryQuery query) {
+        // Materialized and added while no change is published, a change is thus applied once to the view
+        return store.withSnapshot(snapshot -> {
+            synchronized (this) {
+                SavedView view = new SavedView(name, query);
+                view.materialize(snapshot);
+                int index = indexOf(name);
+                if (index < 0) {
+                    views.add(view);
+                } else {
+                    views.set(index, view);
+                }
+                return view;
+            }
+        });
+    }
+
+    public synchronized void remove(final SavedView view) {
+        views.remove(view);
+    }
+
+    public synchronized List<SavedView> views() {
+        return List.copyOf(views);
+    }
+
+    /**
+     * Runs all the queries again, needed after {@link EntryStore#clear()} which does not notify.
+     */
+    public void refresh() {
+        store.withSnapshot(snapshot -> {
+            synchronized (this) {
+                views.forEach(v -> v.materialize(snapshot));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void onChange(final List<EntryStoreChange> changes) {
+        for (EntryStoreChange change : changes) {
+            for (SavedView view : views) {
+                view.apply(change);
+            }
+        }
+    }
+
+    private int indexOf(final String name) {
+        for (int i = 0; i < views.size(); i++) {
+            if (views.get(i).name().equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,59 @@
+package org.github.ypiel.jbudget.model;
+
+/**
+ * Plain loops, used when the Vector API is not available.
+ */
+class ScalarAmountKernels implements AmountKernels {
+
+    @Override
+    public long sum(final long[] values, final int from, final int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public long sumWhereEquals(final long[] values, final long[] keys, final long key, final int from, final int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            if (keys[i] == key) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long sumGatheredWhereEquals(final long[] values, final long[] keys, final long key, final int[] indexes,
+                                       final int from, final int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int index = indexes[i];
+            if (keys[index] == key) {
+                sum += values[index];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long min(final long[] values, final int from, final int to) {
+        long min = Long.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public long max(final long[] values, final int from, final int to) {
+        long max = Long.MIN_VALUE;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+}
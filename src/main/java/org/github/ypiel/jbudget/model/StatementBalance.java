@@ -0,0 +1,29 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Balance of an account read on a bank statement, to check the imported entries against, see
+ * {@link BalanceIndex#reconcile(java.util.List)}.
+ *
+ * @param account The account of the statement.
+ * @param date    Date of the balance, at the end of the day.
+ * @param balance Balance in cents.
+ */
+public record StatementBalance(Account account, LocalDate date,
+                               @JsonSerialize(using = Money.CentsSerializer.class)
+                               @JsonDeserialize(using = Money.CentsDeserializer.class) long balance) {
+
+    public StatementBalance {
+        if (account == null) {
+            throw new IllegalArgumentException("Account cannot be null");
+        }
+        if (date == null) {
+            throw new IllegalArgumentException("Date cannot be null");
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.github.ypiel.jbudget.model;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels processing as many longs per instruction as the CPU allows, the tail of each range is done scalar.
+ * Only instantiated by {@link AmountKernels#instance()}, by reflection.
+ */
+class VectorAmountKernels implements AmountKernels {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public long sum(final long[] values, final int from, final int to) {
+        LongVector acc = LongVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            acc = acc.add(LongVector.fromArray(SPECIES, values, i));
+        }
+        long sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public long sumWhereEquals(final long[] values, final long[] keys, final long key, final int from, final int to) {
+        LongVector acc = LongVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Long> mask = LongVector.fromArray(SPECIES, keys, i).compare(VectorOperators.EQ, key);
+            acc = acc.add(LongVector.fromArray(SPECIES, values, i), mask);
+        }
+        long sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            if (keys[i] == key) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long sumGatheredWhereEquals(final long[] values, final long[] keys, final long key, final int[] indexes,
+                                       final int from, final int to) {
+        LongVector acc = LongVector.zero(SPECIES);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            VectorMask<Long> mask = LongVector.fromArray(SPECIES, keys, 0, indexes, i).compare(VectorOperators.EQ, key);
+            acc = acc.add(LongVector.fromArray(SPECIES, values, 0, indexes, i), mask);
+        }
+        long sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < to; i++) {
+            if (keys[indexes[i]] == key) {
+                sum += values[indexes[i]];
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public long min(final long[] values, final int from, final int to) {
+        LongVector acc = LongVector.broadcast(SPECIES, Long.MAX_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            acc = acc.min(LongVector.fromArray(SPECIES, values, i));
+        }
+        long min = acc.reduceLanes(VectorOperators.MIN);
+        for (; i < to; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    @Override
+    public long max(final long[] values, final int from, final int to) {
+        LongVector acc = LongVector.broadcast(SPECIES, Long.MIN_VALUE);
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            acc = acc.max(LongVector.fromArray(SPECIES, values, i));
+        }
+        long max = acc.reduceLanes(VectorOperators.MAX);
+        for (; i < to; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AtomicFilesTest {
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void rotatesTheBackupsMostRecentFirst() throws IOException {
+        Path file = folder.resolve("jbudget-2024.json");
+        for (int version = 1; version <= 4; version++) {
+            write(file, 2, "v" + version);
+        }
+
+        assertEquals("v4", Files.readString(file));
+        assertEquals("v3", Files.readString(AtomicFiles.backup(file, 1)));
+        assertEquals("v2", Files.readString(AtomicFiles.backup(file, 2)));
+        assertFalse(Files.exists(AtomicFiles.backup(file, 3)));
+    }
+
+    @Test
+    void keepsThePreviousFileWhenTheWriteFails() throws IOException {
+        Path file = folder.resolve("jbudget-2024.json");
+        write(file, 2, "v1");
+
+        assertThrows(IOException.class, () -> AtomicFiles.write(file, 2, out -> {
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("Disk full");
+        }));
+
+        assertEquals("v1", Files.readString(file));
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+        assertFalse(Files.exists(AtomicFiles.backup(file, 1)));
+    }
+
+    private static void write(final Path file, final int backups, final String content) throws IOException {
+        AtomicFiles.write(file, backups, out -> out.write(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,74 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.github.ypiel.jbudget.model.EntryStore;
+
+class AutosaveServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+
+    @TempDir
+    private Path folder;
+
+    private final EntryStore store = new EntryStore();
+    private final AtomicInteger saves = new AtomicInteger();
+
+    @Test
+    void savesABurstOfChangesOnce() throws InterruptedException {
+        try (AutosaveService _ = autosave(Duration.ofMillis(200), Duration.ofMinutes(1))) {
+            for (int i = 0; i < 20; i++) {
+                store.add(entry(CHECKING, DATE, "PAYMENT " + i, -100));
+            }
+            assertEquals(0, saves.get());
+            Thread.sleep(800);
+            assertEquals(1, saves.get());
+        }
+    }
+
+    @Test
+    void savesAfterTheMaxDelayWhenModifiedContinuously() throws InterruptedException {
+        try (AutosaveService _ = autosave(Duration.ofMillis(300), Duration.ofMillis(500))) {
+            // A change every 50 ms, the quiet period is never reached
+            for (int i = 0; i < 30; i++) {
+                store.add(entry(CHECKING, DATE, "PAYMENT " + i, -100));
+                Thread.sleep(50);
+            }
+            assertTrue(saves.get() >= 2, "saves: " + saves.get());
+        }
+    }
+
+    @Test
+    void closeSavesThePendingChanges() {
+        AutosaveService autosave = autosave(Duration.ofMinutes(1), Duration.ofMinutes(5));
+        store.add(entry(CHECKING, DATE, "PAYMENT", -100));
+        assertEquals(0, saves.get());
+
+        autosave.close();
+        assertEquals(1, saves.get());
+    }
+
+    private AutosaveService autosave(final Duration quietPeriod, final Duration maxDelay) {
+        EntryRepository repository = new EntryPartitionController(folder, store, UnaryOperator.identity()) {
+            @Override
+            public void save() {
+                saves.incrementAndGet();
+            }
+        };
+        return new AutosaveService(store, repository, e -> {
+        }, quietPeriod, maxDelay);
+    }
+
+}
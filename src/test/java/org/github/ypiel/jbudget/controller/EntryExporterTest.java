@@ -0,0 +1,98 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.opencsv.exceptions.CsvValidationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.github.ypiel.jbudget.metrics.PerformanceEvents.ImportEvent;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.QueryPlan;
+
+class EntryExporterTest {
+
+    private static final EntryQuery ALL = new EntryQuery(null, "", EntryCategory.ALL, null, null, false, false, null,
+            null);
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void csvIsReadBackByTheImport() throws IOException, CsvValidationException {
+        List<Entry> entries = entries();
+        Path file = folder.resolve("export.csv");
+        export(file, EntryExporter.Format.CSV, entries);
+
+        ImportEvent event = new ImportEvent();
+        List<Entry> imported;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            imported = EntryCsvParser.parse(reader, CHECKING, EntryExporter.DEFAULT_CSV_FORMAT, event);
+        }
+
+        assertEquals(0, event.rejectedLines);
+        // The import reads the columns of the layout only, as new entries in MISC. A quoted carriage return stays in
+        // its row, read back as a line feed by the CSV reader like any line break
+        List<Entry> expected = entries.stream()
+                .map(e -> new Entry(e.account(), e.dateOperation(), e.dateValue(), e.label().replace('\r', '\n'), "",
+                        e.debit(), e.credit(), EntryCategory.MISC, true, false))
+                .toList();
+        assertEquals(expected, imported);
+    }
+
+    @Test
+    void jsonLinesAreReadBackAsEntries() throws IOException {
+        List<Entry> entries = entries();
+        Path file = folder.resolve("export.jsonl");
+        export(file, EntryExporter.Format.JSONL, entries);
+
+        List<Entry> read = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            read.add(EntryJsonController.objectMapper().readValue(line, Entry.class));
+        }
+        assertEquals(entries, read);
+    }
+
+    private static void export(final Path file, final EntryExporter.Format format, final List<Entry> entries)
+            throws IOException {
+        EntryStore store = new EntryStore();
+        store.addAll(entries);
+        EntryStore.Snapshot snapshot = store.snapshot();
+        QueryPlan plan = ALL.compile(snapshot.columns());
+        long rows = EntryExporter.export(file, format, EntryExporter.DEFAULT_CSV_FORMAT, snapshot, plan,
+                (r, scanned, scanSize) -> {
+                }, () -> false);
+        assertEquals(entries.size(), rows);
+    }
+
+    /**
+     * @return Entries in their natural order, with the characters to quote in their label and description.
+     */
+    private static List<Entry> entries() {
+        LocalDate date = LocalDate.of(2024, 3, 1);
+        List<Entry> entries = new ArrayList<>();
+        entries.add(entry(CHECKING, date, "PLAIN", -1234));
+        entries.add(entry(CHECKING, date.plusDays(1), "RENT; MARCH", -80_000));
+        entries.add(entry(CHECKING, date.plusDays(2), "SHOP \"CORNER\"", -999));
+        entries.add(entry(CHECKING, date.plusDays(3), "LINE\nFEED", 5000));
+        entries.add(entry(CHECKING, date.plusDays(4), "CARRIAGE\rRETURN", 1));
+        entries.add(new Entry(CHECKING, date.plusDays(5), date.plusDays(7), "SALARY", "Bonus;\r\n\"Q1\"", 0, 250_000,
+                EntryCategory.INCOME, true, false));
+        return entries;
+    }
+
+}
@@ -0,0 +1,66 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+
+class EntryIdListTest {
+
+    private static final LocalDate DATE = LocalDate.of(2024, 3, 1);
+    private static final Comparator<Entry> BY_LABEL = Comparator.comparing(Entry::label);
+
+    private final EntryStore store = new EntryStore();
+    private final EntryIdList list = new EntryIdList(store);
+
+    @BeforeEach
+    void fillStore() {
+        store.addAll(List.of(
+                entry(CHECKING, DATE, "RENT", -80_000),
+                entry(CHECKING, DATE.plusDays(1), "GROCERIES", -4500),
+                entry(CHECKING, DATE.plusDays(2), "SALARY", 250_000)));
+    }
+
+    @Test
+    void keepsShowingTheEntriesRemovedByAnUndo() {
+        store.checkpoint("Import");
+        store.add(entry(CHECKING, DATE.plusDays(3), "BONUS", 10_000));
+        list.setIds(store.ids(), null);
+
+        store.undo();
+        for (int i = 0; i < list.size(); i++) {
+            assertNotNull(list.get(i), "row " + i);
+        }
+        assertTrue(list.sortIds(BY_LABEL));
+        assertEquals("BONUS", list.get(0).label());
+    }
+
+    @Test
+    void skipsTheRemovedIdsOfANewResult() {
+        int[] ids = store.ids();
+        store.checkpoint("Import");
+        store.add(entry(CHECKING, DATE.plusDays(3), "BONUS", 10_000));
+        int[] withBonus = store.ids();
+        store.undo();
+
+        list.setIds(withBonus, BY_LABEL);
+        assertEquals(store.size(), list.size());
+        assertEquals(List.of("GROCERIES", "RENT", "SALARY"), list.stream().map(Entry::label).toList());
+
+        list.sortIds(null);
+        assertArrayEquals(ids, list.ids());
+    }
+
+}
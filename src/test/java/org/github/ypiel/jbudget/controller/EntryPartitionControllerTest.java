@@ -0,0 +1,165 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryStore;
+
+class EntryPartitionControllerTest {
+
+    private static final int THIS_YEAR = LocalDate.now().getYear();
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void splitsTheLegacyFileInPartitions() throws IOException {
+        List<Entry> entries = yearly(THIS_YEAR - 3, THIS_YEAR);
+        EntryJsonController.saveEntriesToFile(entries, folder.resolve("jbudget.json").toString());
+
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        assertEquals(new HashSet<>(entries), Set.copyOf(store.snapshot().entries()));
+        for (int year = THIS_YEAR - 3; year <= THIS_YEAR; year++) {
+            assertTrue(Files.isRegularFile(partitionFile(year)), "partition of " + year);
+        }
+        assertTrue(Files.isRegularFile(folder.resolve("jbudget-manifest.json")));
+
+        // Opened again from the partitions, only the recent years are loaded
+        EntryStore reopened = new EntryStore();
+        repository = open(reopened);
+        assertEquals(2 * EntryPartitionController.RECENT_YEARS, reopened.size());
+        assertEquals(4, repository.coldEntryCount());
+        repository.ensureAllLoaded();
+        assertEquals(new HashSet<>(entries), Set.copyOf(reopened.snapshot().entries()));
+    }
+
+    @Test
+    void onlyRewritesTheModifiedYears() throws IOException {
+        save(yearly(THIS_YEAR - 3, THIS_YEAR));
+        FileTime old = FileTime.fromMillis(0);
+        for (int year = THIS_YEAR - 3; year <= THIS_YEAR; year++) {
+            Files.setLastModifiedTime(partitionFile(year), old);
+        }
+
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        repository.ensureAllLoaded();
+        store.add(entry(CHECKING, LocalDate.of(THIS_YEAR - 2, 5, 1), "REFUND", 500));
+        repository.save();
+
+        for (int year = THIS_YEAR - 3; year <= THIS_YEAR; year++) {
+            assertEquals(year == THIS_YEAR - 2, !old.equals(Files.getLastModifiedTime(partitionFile(year))),
+                    "partition of " + year);
+        }
+    }
+
+    @Test
+    void deletesThePartitionOfAnEmptiedYear() throws IOException {
+        save(yearly(THIS_YEAR - 3, THIS_YEAR));
+
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        int year = THIS_YEAR - 3;
+        repository.ensureLoaded(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        EntryStore.Snapshot snapshot = store.snapshot();
+        store.removeAll(Arrays.stream(snapshot.ids())
+                .filter(id -> snapshot.get(id).dateOperation().getYear() == year)
+                .toArray());
+        repository.save();
+
+        assertFalse(Files.exists(partitionFile(year)));
+        EntryStore reopened = new EntryStore();
+        repository = open(reopened);
+        repository.ensureAllLoaded();
+        assertEquals(2 * (THIS_YEAR - year), reopened.size());
+    }
+
+    @Test
+    void keepsTheUndoHistoryWhenLoadingAYear() throws IOException {
+        save(yearly(THIS_YEAR - 3, THIS_YEAR));
+
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        store.checkpoint("Add");
+        Entry added = entry(CHECKING, LocalDate.of(THIS_YEAR, 6, 1), "REFUND", 500);
+        store.add(added);
+
+        repository.ensureAllLoaded();
+        assertTrue(store.canUndo());
+        assertEquals("Add", store.undo());
+        // The loaded years are kept, only the added entry is undone
+        assertEquals(Set.copyOf(yearly(THIS_YEAR - 3, THIS_YEAR)), Set.copyOf(store.snapshot().entries()));
+        assertEquals("Add", store.redo());
+        assertTrue(store.snapshot().entries().contains(added));
+    }
+
+    @Test
+    void sumsTheColdYearsBetweenLoadedYears() throws IOException {
+        save(yearly(THIS_YEAR - 5, THIS_YEAR));
+
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        int year = THIS_YEAR - 3;
+        repository.ensureLoaded(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+        assertEquals(year, repository.firstLoadedYear());
+
+        // Cold years on both sides of the loaded one
+        assertEquals(amount(THIS_YEAR - 5) + amount(THIS_YEAR - 4) + amount(THIS_YEAR - 2), repository.coldTotal());
+        assertEquals(amount(THIS_YEAR - 5) + amount(THIS_YEAR - 4), repository.coldTotalBefore(year));
+    }
+
+    private EntryPartitionController open(final EntryStore store) throws IOException {
+        EntryPartitionController repository = new EntryPartitionController(folder, store, UnaryOperator.identity());
+        repository.open();
+        return repository;
+    }
+
+    private Path partitionFile(final int year) {
+        return folder.resolve("jbudget-" + year + ".json");
+    }
+
+    private void save(final List<Entry> entries) throws IOException {
+        EntryStore store = new EntryStore();
+        EntryPartitionController repository = open(store);
+        store.addAll(entries);
+        repository.save();
+    }
+
+    /**
+     * @return Two entries per year, summing to {@link #amount(int)}.
+     */
+    private static List<Entry> yearly(final int firstYear, final int lastYear) {
+        List<Entry> entries = new ArrayList<>();
+        for (int year = firstYear; year <= lastYear; year++) {
+            entries.add(entry(CHECKING, LocalDate.of(year, 3, 1), "SALARY " + year, amount(year) + 1000));
+            entries.add(entry(SAVINGS, LocalDate.of(year, 9, 1), "RENT " + year, -1000));
+        }
+        return entries;
+    }
+
+    private static long amount(final int year) {
+        return year * 100L;
+    }
+
+}
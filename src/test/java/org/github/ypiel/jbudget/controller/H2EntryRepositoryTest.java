@@ -0,0 +1,198 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import org.github.ypiel.jbudget.model.Account;
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+import org.github.ypiel.jbudget.model.EntryQuery;
+import org.github.ypiel.jbudget.model.EntryStore;
+import org.github.ypiel.jbudget.model.Granularity;
+
+class H2EntryRepositoryTest {
+
+    private static final int THIS_YEAR = LocalDate.now().getYear();
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void onlyLoadsTheRecentYearsOnOpen() throws IOException {
+        List<Entry> entries = entries(THIS_YEAR - 6, THIS_YEAR, 500);
+        save(entries);
+
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        long recent = entries.stream()
+                .filter(e -> e.dateOperation().getYear() > THIS_YEAR - EntryPartitionController.RECENT_YEARS)
+                .count();
+        assertEquals(recent, store.size());
+        assertFalse(repository.isFullyLoaded());
+        assertEquals(entries.size() - recent, repository.coldEntryCount());
+
+        repository.ensureAllLoaded();
+        assertTrue(repository.isFullyLoaded());
+        assertEquals(new HashSet<>(entries), Set.copyOf(store.snapshot().entries()));
+        repository.close();
+    }
+
+    @Test
+    void onlyLoadsTheColdYearsWithAMatch() throws IOException {
+        int refundYear = THIS_YEAR - 4;
+        List<Entry> entries = entries(THIS_YEAR - 6, THIS_YEAR, 300);
+        LocalDate refund = LocalDate.of(refundYear, 6, 1);
+        entries.add(new Entry(SAVINGS, refund, refund, "REFUND 42", "", 0, 1500, EntryCategory.MISC));
+        save(entries);
+
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        int before = store.size();
+        repository.ensureLoaded(new EntryQuery(null, "refund", EntryCategory.ALL, null, null, false, false, null,
+                null));
+
+        long added = entries.stream().filter(e -> e.dateOperation().getYear() == refundYear).count();
+        assertEquals(before + added, store.size());
+        assertEquals(refundYear, repository.firstLoadedYear());
+
+        // Nothing matches in the years left
+        repository.ensureLoaded(new EntryQuery(CHECKING, "refund", EntryCategory.ALL, null, null, false, false,
+                null, null));
+        assertEquals(before + added, store.size());
+        repository.close();
+    }
+
+    @Test
+    void sumsTheColdYearsInTheDatabase() throws IOException {
+        List<Entry> entries = entries(THIS_YEAR - 6, THIS_YEAR, 1000);
+        save(entries);
+
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        for (Granularity granularity : Granularity.values()) {
+            for (Account account : new Account[]{null, CHECKING, SAVINGS}) {
+                SortedMap<LocalDate, Long> expected = new TreeMap<>();
+                for (Entry e : entries) {
+                    if (e.dateOperation().getYear() < repository.firstLoadedYear()
+                            && (account == null || account.equals(e.account()))) {
+                        expected.merge(granularity.periodEnd(e.dateValue()), e.duplicate() ? 0 : e.value(),
+                                Long::sum);
+                    }
+                }
+                assertEquals(expected, repository.coldSeries(account, granularity).totals(),
+                        granularity + " " + account);
+            }
+        }
+        // The series is computed without loading
+        assertFalse(repository.isFullyLoaded());
+        repository.close();
+    }
+
+    @Test
+    void sumsTheColdYearsBetweenLoadedYears() throws IOException {
+        int refundYear = THIS_YEAR - 4;
+        List<Entry> entries = entries(THIS_YEAR - 6, THIS_YEAR, 500);
+        LocalDate refund = LocalDate.of(refundYear, 6, 1);
+        entries.add(new Entry(SAVINGS, refund, refund, "REFUND 42", "", 0, 1500, EntryCategory.MISC));
+        save(entries);
+
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        repository.ensureLoaded(new EntryQuery(null, "refund", EntryCategory.ALL, null, null, false, false, null,
+                null));
+        assertEquals(refundYear, repository.firstLoadedYear());
+
+        // Cold years on both sides of the refund year
+        Set<Integer> loaded = Set.of(refundYear, THIS_YEAR - 1, THIS_YEAR);
+        long expectedTotal = 0;
+        SortedMap<LocalDate, Long> expectedSeries = new TreeMap<>();
+        for (Entry e : entries) {
+            if (!loaded.contains(e.dateOperation().getYear())) {
+                long value = e.duplicate() ? 0 : e.value();
+                expectedTotal += value;
+                expectedSeries.merge(Granularity.MONTH.periodEnd(e.dateValue()), value, Long::sum);
+            }
+        }
+        assertEquals(expectedTotal, repository.coldTotal());
+        assertEquals(expectedSeries, repository.coldSeries(null, Granularity.MONTH).totals());
+        repository.close();
+    }
+
+    @Test
+    void importsTheJsonPartitionsWithoutWritingThem() throws IOException {
+        List<Entry> entries = entries(THIS_YEAR - 3, THIS_YEAR, 200);
+        EntryStore jsonStore = new EntryStore();
+        EntryPartitionController partitions = new EntryPartitionController(folder, jsonStore, UnaryOperator.identity());
+        partitions.open();
+        jsonStore.addAll(entries);
+        partitions.save();
+        List<Path> files;
+        try (var list = Files.list(folder)) {
+            files = list.sorted().toList();
+        }
+        List<byte[]> contents = new ArrayList<>();
+        for (Path file : files) {
+            contents.add(Files.readAllBytes(file));
+        }
+
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        assertEquals(new HashSet<>(entries), Set.copyOf(store.snapshot().entries()));
+        repository.close();
+
+        for (int i = 0; i < files.size(); i++) {
+            assertArrayEquals(contents.get(i), Files.readAllBytes(files.get(i)), files.get(i).toString());
+        }
+    }
+
+    private H2EntryRepository open(final EntryStore store) throws IOException {
+        H2EntryRepository repository = new H2EntryRepository(folder, store, UnaryOperator.identity());
+        repository.open();
+        return repository;
+    }
+
+    private void save(final List<Entry> entries) throws IOException {
+        EntryStore store = new EntryStore();
+        H2EntryRepository repository = open(store);
+        store.addAll(entries);
+        repository.save();
+        repository.close();
+    }
+
+    private static List<Entry> entries(final int firstYear, final int lastYear, final int count) {
+        Random random = new Random(42);
+        LocalDate first = LocalDate.of(firstYear, 1, 1);
+        int days = (int) (LocalDate.of(lastYear, 1, 1).toEpochDay() - first.toEpochDay());
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long amount = 1 + random.nextInt(100_000);
+            boolean debit = random.nextInt(4) != 0;
+            LocalDate date = first.plusDays(random.nextInt(days));
+            entries.add(new Entry(random.nextBoolean() ? CHECKING : SAVINGS, date, date.plusDays(random.nextInt(3)),
+                    "PAYMENT " + i, "", debit ? amount : 0, debit ? 0 : amount, EntryCategory.MISC, false,
+                    random.nextInt(20) == 0));
+        }
+        return entries;
+    }
+
+}
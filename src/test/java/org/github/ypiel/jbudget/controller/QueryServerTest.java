@@ -0,0 +1,154 @@
+package org.github.ypiel.jbudget.controller;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.github.ypiel.jbudget.model.Entry;
+import org.github.ypiel.jbudget.model.EntryCategory;
+
+class QueryServerTest {
+
+    private static final String TOKEN = "secret";
+    private static final LocalDate DAY = LocalDate.now().withDayOfMonth(1);
+
+    @TempDir
+    private Path folder;
+
+    private Ledger ledger;
+    private QueryServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        ledger = new Ledger("test", folder.resolve("import"), folder.resolve("data"),
+                Map.of(CHECKING, EntryExporter.DEFAULT_CSV_FORMAT, SAVINGS, EntryExporter.DEFAULT_CSV_FORMAT), false,
+                e -> System.err.printf("Autosave failed: %s%n", e.getMessage()));
+        ledger.open();
+        ledger.store().addAll(List.of(
+                new Entry(CHECKING, DAY, DAY, "CB SHOP", "", 1250, 0, EntryCategory.CLOTHING),
+                new Entry(CHECKING, DAY, DAY, "SALARY", "", 0, 200_000, EntryCategory.MISC),
+                new Entry(SAVINGS, DAY, DAY, "CB SHOP", "", 750, 0, EntryCategory.CLOTHING),
+                new Entry(SAVINGS, DAY, DAY, "CB SHOP", "", 750, 0, EntryCategory.CLOTHING, false, true)));
+        server = new QueryServer(0, TOKEN, List.of(ledger), (_, account) -> "Imported " + account.name());
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        client.close();
+        ledger.close();
+    }
+
+    @Test
+    void rejectsTheOtherHosts() throws IOException {
+        // The client does not let the Host header be changed, the request is written by hand
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /totals HTTP/1.1\r\nHost: attacker.example:" + server.port()
+                    + "\r\nAuthorization: Bearer " + TOKEN + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String status = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII)).readLine();
+            assertEquals("HTTP/1.1 403 Forbidden", status);
+        }
+    }
+
+    @Test
+    void requiresTheToken() throws Exception {
+        assertEquals(401, send(request("/totals").build()).statusCode());
+        assertEquals(401, send(request("/totals").header("Authorization", "Bearer wrong").build()).statusCode());
+        assertEquals(401, send(request("/totals").header("Authorization", TOKEN).build()).statusCode());
+        assertEquals(200, get("/totals").statusCode());
+    }
+
+    @Test
+    void rejectsTheWrongRequests() throws Exception {
+        HttpResponse<String> post = send(authorized("/totals").POST(HttpRequest.BodyPublishers.noBody()).build());
+        assertEquals(405, post.statusCode());
+        assertEquals(400, get("/totals?category=unknown").statusCode());
+        assertEquals(400, get("/entries?account=unknown").statusCode());
+        assertEquals(400, get("/entries?ledger=unknown").statusCode());
+    }
+
+    @Test
+    void sumsTheMatchingEntries() throws Exception {
+        JsonNode totals = json(get("/totals?category=clothing"));
+
+        assertEquals(-12.5, totals.get("accounts").get("Checking").asDouble());
+        // The duplicate is counted as an entry, not in the totals
+        assertEquals(-7.5, totals.get("accounts").get("Savings").asDouble());
+        assertEquals(-20.0, totals.get("total").asDouble());
+        assertEquals(3, totals.get("entries").asInt());
+    }
+
+    @Test
+    void listsTheEntriesAndTheMonths() throws Exception {
+        JsonNode entries = json(get("/entries?account=Checking&label=shop"));
+        assertEquals(1, entries.size());
+        assertEquals(12.5, entries.get(0).get("debit").asDouble());
+
+        JsonNode monthly = json(get("/monthly"));
+        assertEquals(1, monthly.size());
+        assertEquals(DAY.toString().substring(0, 7), monthly.get(0).get("month").asText());
+        assertEquals(3, monthly.get(0).get("count").asInt());
+        assertEquals(1980.0, monthly.get(0).get("total").asDouble());
+    }
+
+    @Test
+    void importsThroughTheImporter() throws Exception {
+        JsonNode result = json(send(authorized("/import?account=Savings")
+                .POST(HttpRequest.BodyPublishers.noBody()).build()));
+
+        assertEquals("Imported Savings", result.get("message").asText());
+    }
+
+    private HttpRequest.Builder request(final String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path));
+    }
+
+    private HttpRequest.Builder authorized(final String path) {
+        return request(path).header("Authorization", "Bearer " + TOKEN);
+    }
+
+    private HttpResponse<String> get(final String path) throws IOException, InterruptedException {
+        return send(authorized(path).build());
+    }
+
+    private HttpResponse<String> send(final HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JsonNode json(final HttpResponse<String> response) throws IOException {
+        assertEquals(200, response.statusCode(), response.body());
+        return new ObjectMapper().readTree(response.body());
+    }
+
+}
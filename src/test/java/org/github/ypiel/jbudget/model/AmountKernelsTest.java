@@ -0,0 +1,61 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class AmountKernelsTest {
+
+    private static final int SIZE = 100;
+
+    private final AmountKernels scalar = new ScalarAmountKernels();
+
+    @Test
+    void vectorKernelsMatchScalarOnesWithTails() {
+        AmountKernels vector = vectorKernels();
+        assumeTrue(vector != null, "jdk.incubator.vector is not available");
+
+        Random random = new Random(42);
+        long[] values = new long[SIZE];
+        long[] keys = new long[SIZE];
+        int[] indexes = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = random.nextLong(-1_000_000, 1_000_000);
+            keys[i] = random.nextInt(4);
+            indexes[i] = random.nextInt(SIZE);
+        }
+
+        // Every length up to several lanes, from offsets which are not lane multiples either
+        for (int from = 0; from < 5; from++) {
+            for (int to = from; to <= SIZE; to++) {
+                String range = "[" + from + ".." + to + "[";
+                assertEquals(scalar.sum(values, from, to), vector.sum(values, from, to), range);
+                assertEquals(scalar.min(values, from, to), vector.min(values, from, to), range);
+                assertEquals(scalar.max(values, from, to), vector.max(values, from, to), range);
+                for (long key = 0; key < 4; key++) {
+                    assertEquals(scalar.sumWhereEquals(values, keys, key, from, to),
+                            vector.sumWhereEquals(values, keys, key, from, to), range + " " + key);
+                    assertEquals(scalar.sumGatheredWhereEquals(values, keys, key, indexes, from, to),
+                            vector.sumGatheredWhereEquals(values, keys, key, indexes, from, to), range + " " + key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The vector implementation, null when the incubator module is not in the boot layer.
+     */
+    private static AmountKernels vectorKernels() {
+        try {
+            return (AmountKernels) Class.forName("org.github.ypiel.jbudget.model.VectorAmountKernels")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.github.ypiel.jbudget.model.EntryFixtures.withInitialBalance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class BalanceIndexTest {
+
+    private static final Account CHECKING = withInitialBalance(EntryFixtures.CHECKING, 10_000);
+    private static final Account SAVINGS = withInitialBalance(EntryFixtures.SAVINGS, 50_000);
+    private static final LocalDate DAY = LocalDate.of(2024, 6, 1);
+
+    private final EntryStore store = new EntryStore();
+    private final BalanceIndex index = new BalanceIndex(store);
+
+    @Test
+    void startsFromTheInitialBalance() {
+        store.addAll(List.of(
+                entry(CHECKING, DAY, "Payment", -2000),
+                entry(CHECKING, DAY.plusDays(1), "Payment", 500),
+                entry(SAVINGS, DAY, "Payment", 1000)));
+
+        assertEquals(10_000 - 2000 + 500, index.balance(CHECKING));
+        assertEquals(10_000, index.balanceAt(CHECKING, DAY.minusDays(1)));
+        assertEquals(8000, index.balanceAt(CHECKING, DAY));
+        assertEquals(60_000, index.initialBalance(null));
+        assertEquals(60_000 - 2000 + 500 + 1000, index.balance(null));
+    }
+
+    @Test
+    void matchesARunningSumOverSeveralYears() {
+        Random random = new Random(42);
+        List<Entry> entries = new ArrayList<>();
+        // Wider than the initial range of the index, in both directions
+        for (int i = 0; i < 2000; i++) {
+            long amount = random.nextInt(10_000);
+            entries.add(entry(CHECKING, DAY.plusDays(random.nextInt(4000) - 2000), "Payment",
+                    random.nextBoolean() ? -amount : amount));
+        }
+        store.addAll(entries);
+
+        LocalDate from = DAY.minusDays(700);
+        LocalDate to = DAY.plusDays(900);
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            LocalDate day = date;
+            long balance = CHECKING.initialBalance() + entries.stream()
+                    .filter(e -> !e.dateOperation().isAfter(day)).mapToLong(Entry::value).sum();
+            assertEquals(balance, index.balanceAt(CHECKING, date));
+            min = Math.min(min, balance);
+            max = Math.max(max, balance);
+        }
+        assertEquals(new BalanceIndex.Range(min, max), index.range(CHECKING, from, to));
+    }
+
+    @Test
+    void aRangeWithoutEntriesHasTheBalanceBeforeIt() {
+        store.add(entry(CHECKING, DAY, "Payment", -2000));
+
+        assertEquals(new BalanceIndex.Range(8000, 8000), index.range(CHECKING, DAY.plusYears(10), DAY.plusYears(11)));
+        assertEquals(new BalanceIndex.Range(8000, 10_000), index.range(CHECKING, DAY.minusYears(10), DAY));
+        assertThrows(IllegalArgumentException.class, () -> index.range(CHECKING, DAY, DAY.minusDays(1)));
+    }
+
+    @Test
+    void followsTheStoreChanges() {
+        int[] ids = store.addAll(List.of(
+                entry(CHECKING, DAY, "Payment", -2000),
+                entry(SAVINGS, DAY, "Payment", -1000)));
+        store.set(ids[0], entry(CHECKING, DAY.plusDays(10), "Payment", -3000));
+        store.add(entry(CHECKING, DAY, "Payment", -9999).isDuplicate());
+
+        assertEquals(10_000, index.balanceAt(CHECKING, DAY.plusDays(9)));
+        assertEquals(7000, index.balance(CHECKING));
+
+        // The initial balance of an account only counts while it has entries
+        store.remove(ids[1]);
+        assertEquals(10_000, index.initialBalance(null));
+        assertEquals(7000, index.balance(null));
+    }
+
+    @Test
+    void reconcilesTheStatements() {
+        store.addAll(List.of(
+                entry(CHECKING, DAY, "Payment", -2000),
+                entry(CHECKING, DAY.plusDays(5), "Payment", -1000)));
+
+        List<Reconciliation> reconciliations = index.reconcile(List.of(
+                new StatementBalance(CHECKING, DAY, 8000),
+                new StatementBalance(CHECKING, DAY.plusDays(5), 7500)));
+
+        assertTrue(reconciliations.get(0).matches());
+        assertFalse(reconciliations.get(1).matches());
+        assertEquals(500, reconciliations.get(1).difference());
+    }
+
+}
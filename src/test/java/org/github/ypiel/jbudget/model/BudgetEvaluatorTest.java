@@ -0,0 +1,121 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BudgetEvaluatorTest {
+
+    private static final LocalDate MARCH = LocalDate.of(2025, 3, 10);
+
+    private static final Budget GROCERIES = new Budget(EntryCategory.GROCERIES_HOUSEHOLD, null, Budget.Period.MONTHLY,
+            10_000, null);
+    private static final Budget CHECKING_YEAR = new Budget(EntryCategory.ALL, CHECKING, Budget.Period.YEARLY,
+            50_000, List.of(50));
+
+    private final EntryStore store = new EntryStore();
+    private final BudgetEvaluator evaluator = new BudgetEvaluator(store);
+    private final List<BudgetAlert> alerts = new ArrayList<>();
+
+    @BeforeEach
+    void setBudgets() {
+        evaluator.setBudgets(List.of(GROCERIES, CHECKING_YEAR));
+        evaluator.addAlertListener(alerts::addAll);
+    }
+
+    @Test
+    void sumsTheSpentAmountOfEachPeriod() {
+        store.load(List.of(
+                saved(CHECKING, MARCH, EntryCategory.GROCERIES_HOUSEHOLD, -3000),
+                saved(SAVINGS, MARCH.plusDays(5), EntryCategory.GROCERIES_HOUSEHOLD, -2000),
+                // A refund reduces the spent amount
+                saved(CHECKING, MARCH.plusDays(6), EntryCategory.GROCERIES_HOUSEHOLD, 500),
+                saved(CHECKING, MARCH.minusMonths(1), EntryCategory.GROCERIES_HOUSEHOLD, -9000),
+                saved(CHECKING, MARCH, EntryCategory.TRAVEL, -7000),
+                saved(CHECKING, MARCH, EntryCategory.GROCERIES_HOUSEHOLD, -4000).isDuplicate()));
+
+        List<BudgetStatus> status = evaluator.status(MARCH);
+        assertEquals("2025-03", status.get(0).period());
+        assertEquals(4500, status.get(0).spent());
+        assertEquals(45, status.get(0).percent());
+        assertEquals("2025", status.get(1).period());
+        assertEquals(3000 - 500 + 9000 + 7000, status.get(1).spent());
+        assertTrue(alerts.isEmpty(), "Saved entries do not raise alerts");
+    }
+
+    @Test
+    void raisesAnAlertWhenAnImportReachesAThreshold() {
+        store.load(List.of(saved(CHECKING, MARCH, EntryCategory.GROCERIES_HOUSEHOLD, -7000)));
+
+        store.add(imported(MARCH.plusDays(1), -500));
+        assertTrue(alerts.isEmpty());
+
+        store.add(imported(MARCH.plusDays(2), -1000));
+        assertEquals(1, alerts.size());
+        assertEquals(80, alerts.getFirst().threshold());
+        assertEquals(GROCERIES, alerts.getFirst().status().budget());
+
+        // Both thresholds crossed at once: only the highest one
+        alerts.clear();
+        store.add(imported(MARCH.plusMonths(1), -12_000));
+        assertEquals(List.of(100), alerts.stream().map(BudgetAlert::threshold).toList());
+        assertEquals("2025-04", alerts.getFirst().status().period());
+    }
+
+    @Test
+    void aModificationRaisesAnAlert() {
+        int[] ids = store.load(List.of(saved(CHECKING, MARCH, EntryCategory.MISC, -26_000)));
+
+        store.set(ids[0], store.get(ids[0]).withCategory(EntryCategory.GROCERIES_HOUSEHOLD));
+
+        assertEquals(List.of(100), alerts.stream().map(BudgetAlert::threshold).toList());
+    }
+
+    @Test
+    void aRemovalLowersTheSpentAmount() {
+        int[] ids = store.load(List.of(
+                saved(CHECKING, MARCH, EntryCategory.GROCERIES_HOUSEHOLD, -3000),
+                saved(CHECKING, MARCH, EntryCategory.GROCERIES_HOUSEHOLD, -2000)));
+
+        store.remove(ids[0]);
+
+        assertEquals(2000, evaluator.status(MARCH).getFirst().spent());
+    }
+
+    @Test
+    void newBudgetsAreComputedFromTheStore() {
+        store.load(List.of(saved(CHECKING, MARCH, EntryCategory.TRAVEL, -3000)));
+
+        evaluator.setBudgets(List.of(new Budget(EntryCategory.TRAVEL, null, Budget.Period.QUARTERLY, 1000, null)));
+
+        BudgetStatus status = evaluator.status(MARCH).getFirst();
+        assertEquals("2025-Q1", status.period());
+        assertEquals(300, status.percent());
+    }
+
+    @Test
+    void rejectsANonPositiveLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Budget(EntryCategory.TRAVEL, null, Budget.Period.MONTHLY, 0, null));
+    }
+
+    private static Entry saved(final Account account, final LocalDate date, final EntryCategory category,
+                               final long amount) {
+        return entry(account, date, "Payment", amount).withCategory(category);
+    }
+
+    private static Entry imported(final LocalDate date, final long amount) {
+        return EntryFixtures.imported(CHECKING, date, "Import", amount).withCategory(EntryCategory.GROCERIES_HOUSEHOLD);
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CategoryRuleEngineTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 2);
+
+    @Test
+    void theFirstMatchingRuleWins() {
+        CategoryRuleEngine engine = CategoryRuleEngine.compile(List.of(
+                new CategoryRule("carrefour city", EntryCategory.SNACK_BAKERY),
+                new CategoryRule("CARREFOUR", EntryCategory.GROCERIES_HOUSEHOLD),
+                new CategoryRule("", SAVINGS, null, null, EntryCategory.INVESTMENT_PESO, "")));
+
+        assertEquals(EntryCategory.SNACK_BAKERY, category(engine, entry(CHECKING, DAY, "CB Carrefour City 01/05", -500)));
+        assertEquals(EntryCategory.GROCERIES_HOUSEHOLD, category(engine, entry(SAVINGS, DAY, "cb carrefour", -500)));
+        assertEquals(EntryCategory.INVESTMENT_PESO, category(engine, entry(SAVINGS, DAY, "VIR", -500)));
+        assertEquals(Optional.empty(), engine.match(entry(CHECKING, DAY, "VIR", -500)));
+    }
+
+    @Test
+    void matchesOverlappingPatterns() {
+        CategoryRuleEngine engine = CategoryRuleEngine.compile(List.of(
+                new CategoryRule("hers", EntryCategory.GIFTS),
+                new CategoryRule("she", EntryCategory.CLOTHING),
+                new CategoryRule("his", EntryCategory.SPORT)));
+
+        assertEquals(EntryCategory.GIFTS, category(engine, entry(CHECKING, DAY, "USHERS", -100)));
+        assertEquals(EntryCategory.CLOTHING, category(engine, entry(CHECKING, DAY, "ushe", -100)));
+        assertEquals(EntryCategory.SPORT, category(engine, entry(CHECKING, DAY, "this", -100)));
+        // "his", "she" and "hers" all end within the label, the order of the rules decides
+        assertEquals(EntryCategory.GIFTS, category(engine, entry(CHECKING, DAY, "thishers", -100)));
+    }
+
+    @Test
+    void checksTheAmountBounds() {
+        // Debits between 10.00 and 50.00, included
+        CategoryRuleEngine engine = CategoryRuleEngine.compile(List.of(
+                new CategoryRule("shop", null, -50.0, -10.0, EntryCategory.CLOTHING, ""),
+                new CategoryRule("shop", EntryCategory.EXTRA)));
+
+        assertEquals(EntryCategory.CLOTHING, category(engine, entry(CHECKING, DAY, "SHOP", -1000)));
+        assertEquals(EntryCategory.CLOTHING, category(engine, entry(CHECKING, DAY, "SHOP", -5000)));
+        assertEquals(EntryCategory.EXTRA, category(engine, entry(CHECKING, DAY, "SHOP", -5001)));
+        assertEquals(EntryCategory.EXTRA, category(engine, entry(CHECKING, DAY, "SHOP", -999)));
+    }
+
+    @Test
+    void matchesLikeTheRulesInTurn() {
+        Random random = new Random(42);
+        String alphabet = "abcde ";
+        // More than 64 rules, the candidates span several words
+        List<CategoryRule> rules = new ArrayList<>();
+        for (int r = 0; r < 150; r++) {
+            Account account = random.nextInt(4) == 0 ? SAVINGS : null;
+            Double max = random.nextInt(4) == 0 ? -20.0 : null;
+            rules.add(new CategoryRule(random.nextInt(30) == 0 ? "" : text(random, alphabet, 2 + random.nextInt(3)),
+                    account, null, max, EntryCategory.values()[1 + random.nextInt(EntryCategory.values().length - 1)],
+                    ""));
+        }
+        CategoryRuleEngine engine = CategoryRuleEngine.compile(rules);
+
+        for (int i = 0; i < 2000; i++) {
+            Entry entry = entry(random.nextBoolean() ? CHECKING : SAVINGS, DAY,
+                    text(random, alphabet.toUpperCase(), 12), -random.nextInt(5000));
+            Optional<CategoryRule> expected = rules.stream()
+                    .filter(r -> entry.label().toLowerCase(Locale.ROOT).contains(r.labelPattern()))
+                    .filter(r -> r.acceptsAccountAndAmount(entry))
+                    .findFirst();
+            assertEquals(expected, engine.match(entry), entry.label());
+        }
+    }
+
+    @Test
+    void onlyCategorizesTheEntriesInMisc() {
+        CategoryRuleEngine engine = CategoryRuleEngine.compile(List.of(
+                new CategoryRule("netflix", null, null, null, EntryCategory.SUBSCRIPTION, "Streaming")));
+        Entry manual = entry(CHECKING, DAY, "NETFLIX", -1399).withCategory(EntryCategory.CULTURE);
+        Entry described = entry(CHECKING, DAY, "NETFLIX", -1399).withDescription("Family plan");
+
+        List<Entry> result = engine.categorizeAll(List.of(entry(CHECKING, DAY, "NETFLIX", -1399), manual, described));
+
+        assertEquals(EntryCategory.SUBSCRIPTION, result.get(0).category());
+        assertEquals("Streaming", result.get(0).description());
+        assertSame(manual, result.get(1));
+        assertEquals("Family plan", result.get(2).description());
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new CategoryRule("shop", EntryCategory.ALL));
+        assertThrows(IllegalArgumentException.class,
+                () -> new CategoryRule("shop", null, 10.0, 5.0, EntryCategory.CLOTHING, ""));
+        assertTrue(CategoryRuleEngine.compile(List.of()).match(entry(CHECKING, DAY, "SHOP", -1)).isEmpty());
+    }
+
+    private static EntryCategory category(final CategoryRuleEngine engine, final Entry entry) {
+        return engine.categorize(entry).category();
+    }
+
+    private static String text(final Random random, final String alphabet, final int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,118 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.github.ypiel.jbudget.model.EntryFixtures.imported;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DuplicateDetectorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 10);
+
+    private final DuplicateDetector detector = new DuplicateDetector();
+
+    @Test
+    void flagsANewEntryCloseToAKnownOne() {
+        List<Entry> entries = List.of(
+                entry(CHECKING, DAY, "CB CARREFOUR 09/03", -4250),
+                imported(CHECKING, DAY.plusDays(2), "CB  CARREFOUR 09-03", -4250));
+
+        assertEquals(bits(1), detector.detect(entries));
+    }
+
+    @Test
+    void ignoresEntriesOfAnotherAccountAmountOrPeriod() {
+        List<Entry> entries = List.of(
+                entry(CHECKING, DAY, "CB CARREFOUR", -4250),
+                imported(SAVINGS, DAY, "CB CARREFOUR", -4250),
+                imported(CHECKING, DAY, "CB CARREFOUR", -4251),
+                imported(CHECKING, DAY.plusDays(DuplicateDetector.DEFAULT_DATE_WINDOW_DAYS + 1), "CB CARREFOUR",
+                        -4250));
+
+        assertTrue(detector.detect(entries).isEmpty());
+    }
+
+    @Test
+    void ignoresADifferentLabel() {
+        List<Entry> entries = List.of(
+                entry(CHECKING, DAY, "CB CARREFOUR", -4250),
+                imported(CHECKING, DAY, "VIR LOYER MARS", -4250));
+
+        assertTrue(detector.detect(entries).isEmpty());
+    }
+
+    @Test
+    void aKnownEntryOnlyExplainsOneNewEntry() {
+        // Two identical purchases imported, only one was known
+        List<Entry> entries = List.of(
+                entry(CHECKING, DAY, "CB BAKERY", -320),
+                imported(CHECKING, DAY, "CB BAKERY.", -320),
+                imported(CHECKING, DAY.plusDays(1), "CB BAKERY", -320));
+
+        assertEquals(1, detector.detect(entries).cardinality());
+    }
+
+    @Test
+    void newEntriesAreOnlyDuplicatesWhenIdentical() {
+        List<Entry> entries = List.of(
+                imported(CHECKING, DAY, "CB BAKERY", -320),
+                imported(CHECKING, DAY, "CB BAKERY", -320),
+                imported(CHECKING, DAY, "CB BAKERY 2", -320));
+
+        assertEquals(bits(1), detector.detect(entries));
+    }
+
+    @Test
+    void ignoresTheEntriesAlreadyFlagged() {
+        List<Entry> entries = List.of(
+                entry(CHECKING, DAY, "CB BAKERY", -320).isDuplicate(),
+                imported(CHECKING, DAY, "CB BAKERY", -320));
+
+        assertTrue(detector.detect(entries).isEmpty());
+    }
+
+    @Test
+    void returnsTheIndexesOfTheGivenList() {
+        // Not sorted by date, the new entry first: indexes are those of the list, as used by the import
+        List<Entry> entries = List.of(
+                imported(CHECKING, DAY.plusDays(1), "CB BAKERY", -320),
+                entry(SAVINGS, DAY, "CB BAKERY", -320),
+                entry(CHECKING, DAY, "CB BAKERY", -320),
+                imported(SAVINGS, DAY.minusDays(1), "VIR LOYER", -80_000));
+
+        assertEquals(bits(0), detector.detect(entries));
+    }
+
+    @Test
+    void normalizesTheLabels() {
+        assertEquals("CB CARREFOUR 09 03", DuplicateDetector.normalize("  cb*Carrefour 09/03 "));
+        assertEquals(1, DuplicateDetector.similarity("ABC", "ABC"));
+        assertEquals(0, DuplicateDetector.similarity("AB", "CD"));
+        // One common bigram out of three in each label
+        assertEquals(1.0 / 3, DuplicateDetector.similarity("ABCD", "ABXY"), 1e-9);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new DuplicateDetector(-1, 0.8));
+        assertThrows(IllegalArgumentException.class, () -> new DuplicateDetector(3, 1.5));
+    }
+
+    private static BitSet bits(final int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+}
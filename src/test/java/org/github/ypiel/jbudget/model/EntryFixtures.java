@@ -0,0 +1,43 @@
+package org.github.ypiel.jbudget.model;
+
+import java.time.LocalDate;
+
+/**
+ * Accounts and entries shared by the tests.
+ */
+public final class EntryFixtures {
+
+    public static final Account CHECKING = new Account("Bank", "Checking", "001", 0);
+    public static final Account SAVINGS = new Account("Bank", "Savings", "002", 0);
+
+    private EntryFixtures() {
+        // Singleton using static
+    }
+
+    /**
+     * @param initialBalance In cents.
+     * @return The account with another initial balance.
+     */
+    public static Account withInitialBalance(final Account account, final long initialBalance) {
+        return new Account(account.bank(), account.name(), account.code(), initialBalance);
+    }
+
+    /**
+     * @param amount Signed amount in cents, negative for a debit.
+     * @return An entry in MISC, valued at its operation date.
+     */
+    public static Entry entry(final Account account, final LocalDate date, final String label, final long amount) {
+        return new Entry(account, date, date, label, "", amount < 0 ? -amount : 0, amount > 0 ? amount : 0,
+                EntryCategory.MISC);
+    }
+
+    /**
+     * @param amount Signed amount in cents, negative for a debit.
+     * @return A new entry in MISC, as read from a bank file.
+     */
+    public static Entry imported(final Account account, final LocalDate date, final String label, final long amount) {
+        return new Entry(account, date, date, label, "", amount < 0 ? -amount : 0, amount > 0 ? amount : 0,
+                EntryCategory.MISC, true, false);
+    }
+
+}
@@ -0,0 +1,215 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class EntryStoreTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    private final EntryStore store = new EntryStore();
+    private final List<EntryStoreChange> changes = new ArrayList<>();
+
+    EntryStoreTest() {
+        store.addListener(changes::addAll);
+    }
+
+    @Test
+    void keepsTheEntriesInNaturalOrder() {
+        store.add(entry(CHECKING, day(5), "e", -100));
+        store.addAll(List.of(entry(CHECKING, day(3), "c", -100), entry(CHECKING, day(9), "i", -100),
+                entry(CHECKING, day(1), "a", -100)));
+        store.add(entry(CHECKING, day(4), "d", -100));
+
+        assertEquals(List.of("a", "c", "d", "e", "i"), labels(store.entries()));
+        assertEquals(5, changes.size());
+    }
+
+    @Test
+    void keepsTheOrderOnRandomMutations() {
+        Random random = new Random(42);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            int action = random.nextInt(10);
+            if (ids.isEmpty() || action < 4) {
+                ids.add(store.add(entry(CHECKING, day(random.nextInt(365)), "label " + random.nextInt(100), -100)));
+            } else if (action < 5) {
+                // Large enough to be merged instead of inserted one by one
+                List<Entry> batch = new ArrayList<>();
+                for (int b = 0; b < 200; b++) {
+                    batch.add(entry(CHECKING, day(random.nextInt(365)), "batch " + random.nextInt(100), -100));
+                }
+                for (int id : store.addAll(batch)) {
+                    ids.add(id);
+                }
+            } else if (action < 7) {
+                int id = ids.get(random.nextInt(ids.size()));
+                store.set(id, entry(CHECKING, day(random.nextInt(365)), "moved " + random.nextInt(100), -100));
+            } else if (action < 9) {
+                store.remove(ids.remove(random.nextInt(ids.size())));
+            } else {
+                int[] removed = new int[Math.min(ids.size(), 1 + random.nextInt(50))];
+                for (int r = 0; r < removed.length; r++) {
+                    removed[r] = ids.remove(random.nextInt(ids.size()));
+                }
+                store.removeAll(removed);
+            }
+        }
+
+        List<Entry> expected = new ArrayList<>();
+        ids.forEach(id -> expected.add(store.get(id)));
+        expected.sort(Comparator.naturalOrder());
+        List<Entry> entries = store.entries();
+        assertEquals(ids.size(), store.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(0, expected.get(i).compareTo(entries.get(i)), "Position " + i);
+        }
+    }
+
+    @Test
+    void neverReusesTheIdOfARemovedEntry() {
+        int first = store.add(entry(CHECKING, day(1), "a", -100));
+        store.remove(first);
+        int second = store.add(entry(CHECKING, day(1), "a", -100));
+
+        assertTrue(second > first);
+        assertNull(store.get(first));
+        assertArrayEquals(new int[]{second}, store.ids());
+    }
+
+    @Test
+    void aSnapshotIsNotModified() {
+        int id = store.add(entry(CHECKING, day(1), "a", -100));
+        EntryStore.Snapshot snapshot = store.snapshot();
+        store.set(id, entry(CHECKING, day(2), "b", -100));
+        store.add(entry(CHECKING, day(0), "c", -100));
+
+        assertEquals(1, snapshot.size());
+        assertEquals("a", snapshot.get(id).label());
+        assertEquals(List.of("c", "b"), labels(store.entries()));
+    }
+
+    @Test
+    void undoesAndRedoesTheCheckpoints() {
+        int id = store.add(entry(CHECKING, day(1), "a", -100));
+        store.checkpoint("Edit");
+        store.set(id, entry(CHECKING, day(1), "b", -100));
+        store.add(entry(CHECKING, day(2), "c", -100));
+        changes.clear();
+
+        assertEquals("Edit", store.undo());
+        assertEquals(List.of("a"), labels(store.entries()));
+        assertEquals(2, changes.size());
+        assertFalse(store.canUndo());
+
+        assertEquals("Edit", store.redo());
+        assertEquals(List.of("b", "c"), labels(store.entries()));
+        assertNull(store.redo());
+    }
+
+    @Test
+    void loadedEntriesAreKeptByUndoAndRedo() {
+        store.add(entry(CHECKING, day(10), "recent", -100));
+        store.checkpoint("Add");
+        store.add(entry(CHECKING, day(11), "added", -100));
+        store.load(List.of(entry(CHECKING, day(-400), "old", -100)));
+
+        store.undo();
+        assertEquals(List.of("old", "recent"), labels(store.entries()));
+        store.redo();
+        assertEquals(List.of("old", "recent", "added"), labels(store.entries()));
+        assertTrue(store.canUndo());
+    }
+
+    @Test
+    void derivedColumnsMatchNewColumns() {
+        Random random = new Random(7);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            entries.add(entry(i % 3 == 0 ? SAVINGS : CHECKING, day(random.nextInt(730)), "label " + i,
+                    random.nextInt(20_000) - 10_000));
+        }
+        int[] ids = store.addAll(entries);
+        store.snapshot().columns();
+        for (int i = 0; i < 100; i++) {
+            int id = ids[random.nextInt(ids.length)];
+            if (store.get(id) != null) {
+                store.set(id, entry(CHECKING, day(random.nextInt(730)), "moved " + i, -100));
+            }
+        }
+        store.remove(ids[0]);
+        store.set(ids[1], store.get(ids[1]).withCategory(EntryCategory.GROCERIES_HOUSEHOLD));
+
+        EntryStore copy = new EntryStore();
+        copy.addAll(store.entries());
+        EntryColumns expected = copy.snapshot().columns();
+        EntryColumns derived = store.snapshot().columns();
+        for (EntryCategory category : EntryCategory.values()) {
+            assertEquals(expected.total(day(100), day(500), category), derived.total(day(100), day(500), category));
+        }
+        assertEquals(expected.totalsByAccount(expected.positions(copy.snapshot().ids())),
+                derived.totalsByAccount(derived.positions(store.snapshot().ids())));
+        for (Granularity granularity : Granularity.values()) {
+            assertEquals(expected.periodTotals(Set.of(SAVINGS), null, null, null, granularity),
+                    derived.periodTotals(Set.of(SAVINGS), null, null, null, granularity));
+        }
+    }
+
+    @Test
+    void updateOnlyReplacesTheChangedEntries() {
+        int[] ids = store.addAll(List.of(entry(CHECKING, day(1), "a", -100), entry(CHECKING, day(2), "b", -100)));
+        changes.clear();
+
+        int updated = store.update(ids, e -> e.label().equals("a") ? e.withCategory(EntryCategory.TRAVEL) : e);
+
+        assertEquals(1, updated);
+        assertEquals(1, changes.size());
+        assertEquals(EntryCategory.TRAVEL, store.get(ids[0]).category());
+    }
+
+    @Test
+    void readsConsistentSnapshotsWhileAnotherThreadWrites() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            Random random = new Random(42);
+            for (int i = 0; i < 2000; i++) {
+                int id = store.add(entry(CHECKING, day(random.nextInt(365)), "label " + i, -100));
+                if (i % 3 == 0) {
+                    store.remove(id);
+                }
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            EntryStore.Snapshot snapshot = store.snapshot();
+            List<Entry> entries = snapshot.entries();
+            assertEquals(snapshot.size(), entries.size());
+            assertEquals(entries.stream().sorted().toList(), entries);
+        }
+        writer.join();
+        assertEquals(1333, store.size());
+    }
+
+    private static LocalDate day(final int day) {
+        return START.plusDays(day);
+    }
+
+    private static List<String> labels(final List<Entry> entries) {
+        return entries.stream().map(Entry::label).toList();
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class MoneyTest {
+
+    @Test
+    void convertsDecimalsToCents() {
+        assertEquals(1234, Money.toCents(new BigDecimal("12.34")));
+        assertEquals(-1234, Money.toCents(new BigDecimal("-12.34")));
+        assertEquals(1200, Money.toCents(new BigDecimal("12")));
+        // Half even
+        assertEquals(12, Money.toCents(new BigDecimal("0.125")));
+        assertEquals(14, Money.toCents(new BigDecimal("0.135")));
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("1e30")));
+    }
+
+    @Test
+    void convertsNumbersToCents() {
+        assertEquals(30, Money.toCents(0.1 + 0.2));
+        assertEquals(1999, Money.toCents(19.99));
+        assertEquals(500, Money.toCents(5));
+        assertEquals(-1, Money.toCents(new BigDecimal("-0.01")));
+    }
+
+    @Test
+    void formatsCents() {
+        assertEquals("12.34", Money.format(1234));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("0.00", Money.format(0));
+        assertEquals(new BigDecimal("1000.10"), Money.toDecimal(100_010));
+        assertEquals(12.34, Money.toDouble(1234));
+    }
+
+    @Test
+    void sumsWithoutDrift() {
+        long cents = 0;
+        double units = 0;
+        for (int i = 0; i < 1_000_000; i++) {
+            cents += Money.toCents(0.1);
+            units += 0.1;
+        }
+        assertEquals("100000.00", Money.format(cents));
+        assertNotEquals(100_000.0, units);
+    }
+
+    @Test
+    void writesAndReadsTheAmountsAsUnits() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        Entry entry = new Entry(new Account("Bank", "Checking", "001", 150_000), day, day, "CB SHOP", "", 1999, 0,
+                EntryCategory.MISC);
+
+        String json = mapper.writeValueAsString(entry);
+
+        assertTrue(json.contains("\"debit\":19.99"), json);
+        assertEquals(entry, mapper.readValue(json, Entry.class));
+        assertEquals(1999, mapper.readValue(json.replace("19.99", "19.990000000001"), Entry.class).debit());
+    }
+
+}
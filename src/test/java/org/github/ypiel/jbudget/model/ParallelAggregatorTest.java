@@ -0,0 +1,72 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelAggregatorTest {
+
+    // Split in several tasks, the last one not a power of two
+    private static final int SIZE = 5 * ParallelAggregator.SEQUENTIAL_THRESHOLD + 123;
+
+    @Test
+    void forkJoinSumsEqualTheSequentialOnes() {
+        Random random = new Random(42);
+        long[] values = new long[SIZE];
+        int[] keys = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = random.nextLong(-1_000_000, 1_000_000);
+            keys[i] = random.nextInt(3);
+        }
+
+        // Number of positions, then the sum of each key
+        long[] expected = new long[4];
+        for (int i = 0; i < SIZE; i++) {
+            expected[0]++;
+            expected[1 + keys[i]] += values[i];
+        }
+
+        long[] result = ParallelAggregator.aggregate(SIZE, (from, to) -> {
+            long[] partial = new long[4];
+            for (int i = from; i < to; i++) {
+                partial[0]++;
+                partial[1 + keys[i]] += values[i];
+            }
+            return partial;
+        });
+        assertArrayEquals(expected, result);
+    }
+
+    @Test
+    void totalsByAccountAboveTheThresholdEqualTheStreamOnes() {
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        List<Entry> entries = new ArrayList<>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            LocalDate date = start.plusDays(random.nextInt(1500));
+            long amount = random.nextInt(100_000);
+            boolean debit = random.nextInt(4) != 0;
+            entries.add(new Entry(random.nextBoolean() ? CHECKING : SAVINGS, date, date, "PAYMENT", "",
+                    debit ? amount : 0, debit ? 0 : amount, EntryCategory.MISC, false, random.nextInt(20) == 0));
+        }
+        EntryStore store = new EntryStore();
+        store.addAll(entries);
+        EntryStore.Snapshot snapshot = store.snapshot();
+        EntryColumns columns = snapshot.columns();
+
+        Map<Account, Long> expected = entries.stream().collect(Collectors.groupingBy(Entry::account,
+                Collectors.summingLong(e -> e.duplicate() ? 0 : e.value())));
+        assertEquals(expected, columns.totalsByAccount(columns.positions(snapshot.ids())));
+    }
+
+}
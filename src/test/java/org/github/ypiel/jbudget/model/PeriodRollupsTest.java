@@ -0,0 +1,93 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+class PeriodRollupsTest {
+
+    private static final LocalDate START = LocalDate.of(2020, 1, 1);
+
+    @Test
+    void eachGranularityKeepsTheTotal() {
+        SortedMap<LocalDate, Long> daily = randomDays(3000);
+        PeriodRollups rollups = PeriodRollups.of(daily);
+        long total = daily.values().stream().mapToLong(Long::longValue).sum();
+
+        for (Granularity granularity : Granularity.values()) {
+            PeriodRollups.Bars bars = rollups.bars(granularity, rollups.first(), rollups.last());
+            assertEquals(total, Arrays.stream(bars.totals()).sum(), granularity.name());
+            for (int i = 1; i < bars.ends().length; i++) {
+                assertTrue(bars.ends()[i - 1].isBefore(bars.ends()[i]));
+            }
+        }
+        assertEquals(daily.size(), rollups.bars(Granularity.DAY, rollups.first(), rollups.last()).ends().length);
+    }
+
+    @Test
+    void returnsThePeriodsOverlappingTheRange() {
+        SortedMap<LocalDate, Long> daily = new TreeMap<>();
+        daily.put(LocalDate.of(2024, 1, 31), 1L);
+        daily.put(LocalDate.of(2024, 2, 10), 10L);
+        daily.put(LocalDate.of(2024, 2, 20), 100L);
+        daily.put(LocalDate.of(2024, 4, 1), 1000L);
+        PeriodRollups rollups = PeriodRollups.of(daily);
+
+        PeriodRollups.Bars bars = rollups.bars(Granularity.MONTH, LocalDate.of(2024, 2, 15), LocalDate.of(2024, 4, 1));
+
+        assertArrayEquals(new LocalDate[]{LocalDate.of(2024, 2, 29), LocalDate.of(2024, 4, 30)}, bars.ends());
+        assertArrayEquals(new long[]{110, 1000}, bars.totals());
+        assertEquals(1111, rollups.bars(Granularity.YEAR, START, START.plusYears(10)).totals()[0]);
+    }
+
+    @Test
+    void choosesTheFinestGranularityFittingTheBars() {
+        PeriodRollups rollups = PeriodRollups.of(randomDays(3000));
+
+        assertEquals(Granularity.DAY, rollups.bars(START, START.plusDays(59), 60).granularity());
+        assertEquals(Granularity.WEEK, rollups.bars(START, START.plusDays(60), 60).granularity());
+        assertEquals(Granularity.MONTH, rollups.bars(START, START.plusYears(4), 60).granularity());
+        assertEquals(Granularity.YEAR, rollups.bars(START, START.plusYears(8), 5).granularity());
+    }
+
+    @Test
+    void anEmptySeriesHasNoBars() {
+        PeriodRollups rollups = PeriodRollups.of(new TreeMap<>());
+
+        assertNull(rollups.first());
+        assertNull(rollups.last());
+        assertEquals(0, rollups.bars(Granularity.MONTH, START, START.plusYears(1)).ends().length);
+    }
+
+    @Test
+    void labelsThePeriods() {
+        LocalDate date = LocalDate.of(2024, 2, 7);
+
+        assertEquals(LocalDate.of(2024, 2, 11), Granularity.WEEK.periodEnd(date));
+        assertEquals(LocalDate.of(2024, 3, 31), Granularity.QUARTER.periodEnd(date));
+        assertEquals("2024-W06", Granularity.WEEK.label(Granularity.WEEK.periodEnd(date)));
+        assertEquals("2024-Q1", Granularity.QUARTER.label(Granularity.QUARTER.periodEnd(date)));
+        assertEquals("2024-02", Granularity.MONTH.label(Granularity.MONTH.periodEnd(date)));
+    }
+
+    private static SortedMap<LocalDate, Long> randomDays(final int days) {
+        Random random = new Random(42);
+        SortedMap<LocalDate, Long> daily = new TreeMap<>();
+        for (int d = 0; d < days; d++) {
+            if (random.nextInt(3) != 0) {
+                daily.put(START.plusDays(d), (long) random.nextInt(20_000) - 10_000);
+            }
+        }
+        return daily;
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class PersistentIntListTest {
+
+    @Test
+    void buildsFromAnArray() {
+        int[] values = IntStream.range(0, 100_000).map(i -> i * 3).toArray();
+        PersistentIntList list = PersistentIntList.of(values);
+        assertEquals(values.length, list.size());
+        assertEquals(3 * 54_321, list.get(54_321));
+        assertArrayEquals(values, list.toArray());
+        assertEquals(0, PersistentIntList.of(new int[0]).size());
+    }
+
+    @Test
+    void matchesAnArrayListOnRandomUpdates() {
+        Random random = new Random(42);
+        List<Integer> expected = new ArrayList<>();
+        PersistentIntList list = PersistentIntList.empty();
+        for (int i = 0; i < 50_000; i++) {
+            // Grows on average, with phases of removals
+            if (expected.isEmpty() || random.nextInt(10) < (i % 20_000 < 15_000 ? 7 : 2)) {
+                int index = random.nextInt(expected.size() + 1);
+                expected.add(index, i);
+                list = list.insert(index, i);
+            } else {
+                int index = random.nextInt(expected.size());
+                expected.remove(index);
+                list = list.remove(index);
+            }
+        }
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), list.toArray());
+        for (int i = 0; i < expected.size(); i += 97) {
+            assertEquals(expected.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void updateKeepsThePreviousVersion() {
+        PersistentIntList v1 = PersistentIntList.of(IntStream.range(0, 1000).toArray());
+        PersistentIntList v2 = v1.insert(500, -1).remove(0);
+
+        assertArrayEquals(IntStream.range(0, 1000).toArray(), v1.toArray());
+        assertEquals(1000, v2.size());
+        assertEquals(-1, v2.get(499));
+    }
+
+    @Test
+    void becomesEmptyAfterTheLastRemoval() {
+        PersistentIntList list = PersistentIntList.of(IntStream.range(0, 5000).toArray());
+        for (int i = 0; i < 5000; i++) {
+            list = list.remove(list.size() / 2);
+        }
+        assertEquals(0, list.size());
+        assertArrayEquals(new int[]{7}, list.insert(0, 7).toArray());
+    }
+
+    @Test
+    void rejectsAnIndexOutOfTheList() {
+        PersistentIntList list = PersistentIntList.of(new int[]{1, 2});
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(2));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.insert(3, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.remove(-1));
+    }
+
+}
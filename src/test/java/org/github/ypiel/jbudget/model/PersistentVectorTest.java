@@ -0,0 +1,81 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+class PersistentVectorTest {
+
+    @Test
+    void appendsOverSeveralLevels() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        // 32 * 32 elements fill two levels, the next one adds a third
+        for (int i = 0; i < 40_000; i++) {
+            vector = vector.append(i);
+        }
+        assertEquals(40_000, vector.size());
+        for (int i = 0; i < 40_000; i++) {
+            assertEquals(i, vector.get(i));
+        }
+    }
+
+    @Test
+    void updateKeepsThePreviousVersion() {
+        PersistentVector<String> v1 = PersistentVector.<String>empty().append("a").append("b");
+        PersistentVector<String> v2 = v1.set(1, "c").append("d");
+        PersistentVector<String> v3 = v2.set(0, null);
+
+        assertEquals(List.of("a", "b"), elements(v1));
+        assertEquals(List.of("a", "c", "d"), elements(v2));
+        assertNull(v3.get(0));
+    }
+
+    @Test
+    void diffReportsTheChangedIndexes() {
+        PersistentVector<Integer> v1 = PersistentVector.empty();
+        for (int i = 0; i < 5000; i++) {
+            v1 = v1.append(i);
+        }
+        PersistentVector<Integer> v2 = v1.set(7, -7).set(4321, -1);
+        for (int i = 0; i < 1200; i++) {
+            v2 = v2.append(i);
+        }
+
+        TreeSet<Integer> changed = new TreeSet<>();
+        v2.diff(v1, changed::add);
+        assertTrue(changed.contains(7) && changed.contains(4321));
+        assertTrue(changed.containsAll(IntStream.range(5000, 6200).boxed().toList()));
+        // Other indexes of a changed leaf may be reported, but no index of an unchanged leaf
+        for (int index : changed) {
+            assertTrue(index < 32 || (index >= 4320 && index < 4352) || index >= 5000, "Index " + index);
+        }
+
+        TreeSet<Integer> none = new TreeSet<>();
+        v1.diff(v1, none::add);
+        assertEquals(0, none.size());
+    }
+
+    @Test
+    void rejectsAnIndexOutOfTheVector() {
+        PersistentVector<Integer> vector = PersistentVector.<Integer>empty().append(1);
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> vector.set(-1, 0));
+    }
+
+    private static <T> List<T> elements(final PersistentVector<T> vector) {
+        List<T> elements = new ArrayList<>();
+        for (int i = 0; i < vector.size(); i++) {
+            elements.add(vector.get(i));
+        }
+        return elements;
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class QueryPlanTest {
+
+    private static final LocalDate START = LocalDate.of(2023, 1, 1);
+
+    private final EntryStore store = new EntryStore();
+
+    @BeforeEach
+    void fillStore() {
+        Random random = new Random(42);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            LocalDate date = START.plusDays(random.nextInt(730));
+            long amount = random.nextInt(20_000);
+            boolean debit = random.nextInt(3) != 0;
+            entries.add(new Entry(random.nextInt(5) == 0 ? SAVINGS : CHECKING, date, date,
+                    (random.nextBoolean() ? "CB Shop " : "VIR Rent ") + random.nextInt(50), "",
+                    debit ? amount : 0, debit ? 0 : amount,
+                    EntryCategory.values()[random.nextInt(EntryCategory.values().length)],
+                    random.nextInt(10) == 0, random.nextInt(20) == 0));
+        }
+        store.addAll(entries);
+    }
+
+    @Test
+    void returnsTheMatchingEntriesInNaturalOrder() {
+        List<EntryQuery> queries = List.of(
+                query(null, "", null, null, null, false, false, null, null),
+                query(SAVINGS, "", null, null, null, false, false, null, null),
+                query(null, "shop 1", EntryCategory.values()[1], null, null, false, false, null, null),
+                query(CHECKING, "", null, START.plusMonths(3), START.plusMonths(5), false, false, null, null),
+                query(null, "", null, null, START.plusYears(1), true, false, null, null),
+                query(null, "RENT", null, START.plusYears(1), null, false, true, null, null),
+                query(null, "", null, null, null, false, false, -5000L, 5000L));
+        for (EntryQuery query : queries) {
+            int[] expected = Arrays.stream(store.ids()).filter(id -> query.matches(store.get(id))).toArray();
+            assertArrayEquals(expected, query.compile(store.snapshot().columns()).execute(), query.toString());
+        }
+    }
+
+    @Test
+    void streamsTheSameEntriesAsExecute() {
+        EntryQuery query = query(CHECKING, "cb", null, START.plusMonths(6), null, false, false, null, null);
+        QueryPlan plan = query.compile(store.snapshot().columns());
+        List<Integer> streamed = new ArrayList<>();
+        int[] lastScanned = new int[1];
+        plan.forEach((id, scanned) -> {
+            streamed.add(id);
+            assertTrue(scanned > lastScanned[0] && scanned <= plan.scanSize());
+            lastScanned[0] = scanned;
+        });
+
+        assertArrayEquals(plan.execute(), streamed.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Test
+    void restrictsTheScanToTheDateRange() {
+        EntryQuery query = query(null, "", null, START.plusMonths(1), START.plusMonths(2).minusDays(1), false, false,
+                null, null);
+        QueryPlan plan = query.compile(store.snapshot().columns());
+
+        assertEquals(plan.execute().length, plan.scanSize());
+        assertTrue(plan.describe().startsWith("date range"));
+    }
+
+    @Test
+    void testsTheLabelLast() {
+        EntryQuery query = query(SAVINGS, "shop", null, null, null, false, true, null, null);
+
+        assertTrue(query.compile(store.snapshot().columns()).describe().endsWith("label(0.10)"));
+    }
+
+    @Test
+    void anAccountWithoutEntriesGivesAnEmptyPlan() {
+        Account unknown = new Account("Other", "Card", "003", 0);
+        QueryPlan plan = query(unknown, "", null, null, null, false, false, null, null)
+                .compile(store.snapshot().columns());
+
+        assertEquals("empty", plan.describe());
+        assertEquals(0, plan.scanSize());
+        assertEquals(0, plan.execute().length);
+    }
+
+    private static EntryQuery query(final Account account, final String label, final EntryCategory category,
+                                    final LocalDate from, final LocalDate to, final boolean onlyNew,
+                                    final boolean onlyDuplicates, final Long minAmount, final Long maxAmount) {
+        return new EntryQuery(account, label, category, from, to, onlyNew, onlyDuplicates, minAmount, maxAmount);
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.github.ypiel.jbudget.model.EntryFixtures.entry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.jupiter.api.Test;
+
+class RecurringForecasterTest {
+
+    private static final YearMonth NEXT_YEAR = YearMonth.of(2025, 1);
+
+    private final EntryStore store = new EntryStore();
+    private final RecurringForecaster forecaster = new RecurringForecaster(store);
+
+    @Test
+    void projectsAMonthlySeries() {
+        store.addAll(salaries(CHECKING, 12, 300_000));
+
+        SortedMap<LocalDate, Long> forecast = forecaster.forecast(CHECKING, NEXT_YEAR, 3);
+
+        assertEquals(List.of(NEXT_YEAR.atEndOfMonth(), NEXT_YEAR.plusMonths(1).atEndOfMonth(),
+                NEXT_YEAR.plusMonths(2).atEndOfMonth()), List.copyOf(forecast.keySet()));
+        assertEquals(List.of(300_000L, 300_000L, 300_000L), List.copyOf(forecast.values()));
+    }
+
+    @Test
+    void projectsTheWeeksOfEachMonth() {
+        List<Entry> entries = new ArrayList<>();
+        // Mondays, the last one on 2024-12-30
+        for (LocalDate date = LocalDate.of(2024, 9, 2); date.getYear() == 2024; date = date.plusWeeks(1)) {
+            entries.add(entry(CHECKING, date, "CLEANING " + date, -2000));
+        }
+        store.addAll(entries);
+
+        SortedMap<LocalDate, Long> forecast = forecaster.forecast(CHECKING, NEXT_YEAR, 2);
+
+        assertEquals(List.of(-4 * 2000L, -4 * 2000L), List.copyOf(forecast.values()));
+    }
+
+    @Test
+    void doesNotProjectAStoppedSeries() {
+        store.addAll(salaries(CHECKING, 6, 300_000));
+        store.add(entry(CHECKING, LocalDate.of(2024, 12, 20), "GIFT", -5000));
+
+        assertEquals(0L, forecaster.forecast(CHECKING, NEXT_YEAR, 1).get(NEXT_YEAR.atEndOfMonth()));
+    }
+
+    @Test
+    void addsTheSeasonalityOfTheOtherEntries() {
+        store.addAll(List.of(
+                entry(CHECKING, LocalDate.of(2022, 12, 15), "TOYS", -10_000),
+                entry(CHECKING, LocalDate.of(2023, 12, 15), "BOOKS", -20_000),
+                entry(CHECKING, LocalDate.of(2024, 12, 15), "TREE", -30_000)));
+
+        SortedMap<LocalDate, Long> forecast = forecaster.forecast(CHECKING, NEXT_YEAR, 12);
+
+        assertEquals(-20_000L, forecast.get(LocalDate.of(2025, 12, 31)));
+        assertEquals(0L, forecast.get(LocalDate.of(2025, 6, 30)));
+    }
+
+    @Test
+    void followsTheStoreChanges() {
+        int[] ids = store.addAll(salaries(CHECKING, 12, 300_000));
+        assertEquals(300_000L, forecaster.forecast(CHECKING, NEXT_YEAR, 1).get(NEXT_YEAR.atEndOfMonth()));
+
+        // The recent amounts give the expected one
+        for (int i = 6; i < ids.length; i++) {
+            Entry salary = store.get(ids[i]);
+            store.set(ids[i], entry(CHECKING, salary.dateOperation(), salary.label(), 310_000));
+        }
+        assertEquals(310_000L, forecaster.forecast(CHECKING, NEXT_YEAR, 1).get(NEXT_YEAR.atEndOfMonth()));
+
+        store.removeAll(ids);
+        assertEquals(0L, forecaster.forecast(CHECKING, NEXT_YEAR, 1).get(NEXT_YEAR.atEndOfMonth()));
+    }
+
+    @Test
+    void sumsTheAccountsAndIgnoresTheDuplicates() {
+        store.addAll(salaries(CHECKING, 12, 300_000));
+        store.addAll(salaries(SAVINGS, 12, 1_000));
+        store.addAll(salaries(SAVINGS, 12, 1_000).stream().map(Entry::isDuplicate).toList());
+
+        assertEquals(301_000L, forecaster.forecast(null, NEXT_YEAR, 1).get(NEXT_YEAR.atEndOfMonth()));
+    }
+
+    @Test
+    void groupsTheLabelsWithoutTheirReferences() {
+        assertEquals("PRLV NETFLIX", RecurringForecaster.label("PRLV Netflix 12/2024 REF123"));
+        assertEquals("2024", RecurringForecaster.label("2024"));
+    }
+
+    /**
+     * Salaries of the first months of 2024, with a reference changing each month.
+     */
+    private static List<Entry> salaries(final Account account, final int months, final long amount) {
+        List<Entry> entries = new ArrayList<>();
+        for (int m = 1; m <= months; m++) {
+            entries.add(entry(account, LocalDate.of(2024, m, 1), "SALARY %02d/2024".formatted(m), amount));
+        }
+        return entries;
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.github.ypiel.jbudget.model;
+
+import static org.github.ypiel.jbudget.model.EntryFixtures.CHECKING;
+import static org.github.ypiel.jbudget.model.EntryFixtures.SAVINGS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SavedViewsTest {
+
+    private static final LocalDate START = LocalDate.of(2023, 1, 1);
+
+    private final EntryStore store = new EntryStore();
+    private final SavedViews views = new SavedViews(store);
+    private final Random random = new Random(42);
+
+    @BeforeEach
+    void fillStore() {
+        store.addAll(entries(2000));
+        views.add("Rent", new EntryQuery(null, "rent", null, null, null, false, false, null, null));
+        views.add("Checking", new EntryQuery(CHECKING, "", null, START.plusMonths(3), START.plusYears(1), false, false,
+                null, null));
+        views.add("Large", new EntryQuery(null, "", null, null, null, false, false, null, -10_000L));
+    }
+
+    @Test
+    void appliedChangesMatchTheMaterializedViews() {
+        assertMaterialized();
+
+        store.addAll(entries(300));
+        assertMaterialized();
+
+        int[] ids = store.ids();
+        for (int i = 0; i < 300; i++) {
+            int id = ids[random.nextInt(ids.length)];
+            Entry e = store.get(id);
+            if (e != null) {
+                store.set(id, new Entry(random.nextBoolean() ? CHECKING : SAVINGS, e.dateOperation(), e.dateValue(),
+                        random.nextBoolean() ? "VIR RENT" : e.label(), "",
+                        e.credit() > 0 ? e.debit() : e.debit() + random.nextInt(5000), e.credit(), e.category(),
+                        e.newEntry(), !e.duplicate()));
+            }
+        }
+        assertMaterialized();
+
+        store.removeAll(Arrays.stream(ids).filter(id -> random.nextInt(3) == 0).toArray());
+        assertMaterialized();
+    }
+
+    @Test
+    void idsSkipTheEntriesMissingFromAnOlderSnapshot() {
+        EntryStore.Snapshot older = store.snapshot();
+        SavedView view = views.views().get(0);
+        int[] before = view.ids(older);
+
+        store.addAll(entries(100));
+        assertArrayEquals(before, view.ids(older));
+        assertEquals(view.count(), view.ids(store.snapshot()).length);
+    }
+
+    /**
+     * Compares each view, maintained from the changes, to its query run on the current version.
+     */
+    private void assertMaterialized() {
+        EntryStore.Snapshot snapshot = store.snapshot();
+        for (SavedView view : views.views()) {
+            SavedView expected = new SavedView(view.name(), view.query());
+            expected.materialize(snapshot);
+            assertArrayEquals(view.query().compile(snapshot.columns()).execute(), view.ids(snapshot), view.name());
+            assertArrayEquals(expected.ids(snapshot), view.ids(snapshot), view.name());
+            assertEquals(expected.count(), view.count(), view.name());
+            assertEquals(expected.total(), view.total(), view.name());
+        }
+    }
+
+    private List<Entry> entries(final int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate date = START.plusDays(random.nextInt(730));
+            long amount = random.nextInt(20_000);
+            boolean debit = random.nextInt(3) != 0;
+            entries.add(new Entry(random.nextInt(5) == 0 ? SAVINGS : CHECKING, date, date,
+                    (random.nextBoolean() ? "CB Shop " : "VIR Rent ") + random.nextInt(50), "",
+                    debit ? amount : 0, debit ? 0 : amount, EntryCategory.MISC, false, random.nextInt(20) == 0));
+        }
+        return entries;
+    }
+
+}